@@ -0,0 +1,84 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.osgi.framework.benchmark;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jboss.osgi.framework.bundle.BundleManager;
+import org.jboss.osgi.framework.bundle.FrameworkState;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+
+/**
+ * The base of the benchmarks, which runs a standalone framework per trial.
+ *
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+public abstract class AbstractFrameworkBenchmark
+{
+   protected BundleManager bundleManager;
+   protected BundleContext systemContext;
+
+   @Setup(Level.Trial)
+   public void setUpFramework() throws Exception
+   {
+      Map<String, Object> props = new HashMap<String, Object>();
+      props.put(Constants.FRAMEWORK_STORAGE, new File("target/osgi-store").getAbsolutePath());
+      props.put(Constants.FRAMEWORK_STORAGE_CLEAN, Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT);
+      // The system bundle registers the benchmark services, it must see their interfaces
+      props.put(Constants.FRAMEWORK_SYSTEMPACKAGES_EXTRA, AbstractFrameworkBenchmark.class.getPackage().getName());
+      props.putAll(getFrameworkProperties());
+
+      bundleManager = new BundleManager(props);
+      FrameworkState frameworkState = bundleManager.getFrameworkState();
+      frameworkState.start();
+      systemContext = bundleManager.getSystemContext();
+      setUp();
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDownFramework() throws Exception
+   {
+      FrameworkState frameworkState = bundleManager.getFrameworkState();
+      frameworkState.stop();
+      frameworkState.waitForStop(10000);
+   }
+
+   /**
+    * Additional framework properties.
+    */
+   protected Map<String, Object> getFrameworkProperties()
+   {
+      return new HashMap<String, Object>();
+   }
+
+   /**
+    * Called after the framework was started.
+    */
+   protected abstract void setUp() throws Exception;
+}
@@ -0,0 +1,121 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.osgi.framework.benchmark;
+
+import java.util.Collection;
+import java.util.Hashtable;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.osgi.framework.bundle.ServiceState;
+import org.jboss.osgi.framework.plugin.FrameworkEventsPlugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.framework.hooks.service.EventHook;
+
+/**
+ * Benchmark the delivery of service events to a given number of listeners and event hooks.
+ *
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ServiceEventBenchmark extends AbstractFrameworkBenchmark
+{
+   // The number of service listeners
+   @Param({ "1", "100", "1000" })
+   public int listeners;
+
+   // The number of event hooks
+   @Param({ "0", "10" })
+   public int hooks;
+
+   private ServiceRegistration sreg;
+   private ServiceState serviceState;
+   private FrameworkEventsPlugin eventsPlugin;
+   private int counter;
+
+   @Override
+   protected void setUp() throws Exception
+   {
+      eventsPlugin = bundleManager.getPlugin(FrameworkEventsPlugin.class);
+
+      for (int i = 0; i < hooks; i++)
+      {
+         EventHook hook = new EventHook()
+         {
+            @Override
+            public void event(ServiceEvent event, Collection<BundleContext> contexts)
+            {
+               // do nothing
+            }
+         };
+         systemContext.registerService(EventHook.class.getName(), hook, null);
+      }
+
+      // Half of the listeners match the service, the other half filter on a different objectClass
+      for (int i = 0; i < listeners; i++)
+      {
+         ServiceListener listener = new ServiceListener()
+         {
+            @Override
+            public void serviceChanged(ServiceEvent event)
+            {
+               // do nothing
+            }
+         };
+         String className = ServiceRegistryBenchmark.getClassName(i % 2);
+         systemContext.addServiceListener(listener, "(&(objectClass=" + className + ")(name=*))");
+      }
+
+      Hashtable<String, Object> props = new Hashtable<String, Object>();
+      props.put("name", "service");
+      props.put("counter", Integer.valueOf(0));
+      sreg = systemContext.registerService(ServiceRegistryBenchmark.getClassName(0), new ServiceRegistryBenchmark.ServiceImpl(), props);
+      serviceState = ServiceState.assertServiceState(sreg.getReference());
+   }
+
+   @Benchmark
+   public void setProperties()
+   {
+      Hashtable<String, Object> props = new Hashtable<String, Object>();
+      props.put("name", "service");
+      props.put("counter", Integer.valueOf(counter++));
+      sreg.setProperties(props);
+   }
+
+   @Benchmark
+   public void fireServiceEvent()
+   {
+      eventsPlugin.fireServiceEvent(serviceState.getServiceOwner(), ServiceEvent.MODIFIED, serviceState);
+   }
+}
@@ -0,0 +1,162 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.osgi.framework.benchmark;
+
+import java.util.Hashtable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * Benchmark the service registry with a given number of registered services.
+ *
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ServiceRegistryBenchmark extends AbstractFrameworkBenchmark
+{
+   // The number of services per interface
+   @Param({ "10", "1000" })
+   public int services;
+
+   // The number of interfaces the services are registered under, at most SERVICE_INTERFACES.length
+   @Param({ "1", "10" })
+   public int interfaces;
+
+   // The service interfaces, the services are registered under the first ones
+   static final Class<?>[] SERVICE_INTERFACES = new Class<?>[] { Service0.class, Service1.class, Service2.class, Service3.class, Service4.class,
+         Service5.class, Service6.class, Service7.class, Service8.class, Service9.class };
+
+   private ServiceReference sref;
+
+   @Override
+   protected void setUp() throws Exception
+   {
+      for (int i = 0; i < interfaces; i++)
+      {
+         for (int j = 0; j < services; j++)
+         {
+            Hashtable<String, Object> props = new Hashtable<String, Object>();
+            props.put("index", Integer.valueOf(j));
+            props.put("name", "service" + j);
+            systemContext.registerService(getClassName(i), new ServiceImpl(), props);
+         }
+      }
+      sref = systemContext.getServiceReference(getClassName(0));
+   }
+
+   static String getClassName(int index)
+   {
+      return SERVICE_INTERFACES[index].getName();
+   }
+
+   @Benchmark
+   public void registerService()
+   {
+      ServiceRegistration sreg = systemContext.registerService(getClassName(0), new ServiceImpl(), null);
+      sreg.unregister();
+   }
+
+   @Benchmark
+   public ServiceReference[] getServiceReferences() throws Exception
+   {
+      return systemContext.getServiceReferences(getClassName(0), null);
+   }
+
+   @Benchmark
+   public ServiceReference[] getServiceReferencesWithFilter() throws Exception
+   {
+      return systemContext.getServiceReferences(getClassName(0), "(name=service1)");
+   }
+
+   @Benchmark
+   public ServiceReference[] getServiceReferencesFilterOnly() throws Exception
+   {
+      return systemContext.getServiceReferences(null, "(&(objectClass=" + getClassName(0) + ")(index>=1))");
+   }
+
+   @Benchmark
+   public Object getUngetService()
+   {
+      Object service = systemContext.getService(sref);
+      systemContext.ungetService(sref);
+      return service;
+   }
+
+   public interface Service0
+   {
+   }
+
+   public interface Service1
+   {
+   }
+
+   public interface Service2
+   {
+   }
+
+   public interface Service3
+   {
+   }
+
+   public interface Service4
+   {
+   }
+
+   public interface Service5
+   {
+   }
+
+   public interface Service6
+   {
+   }
+
+   public interface Service7
+   {
+   }
+
+   public interface Service8
+   {
+   }
+
+   public interface Service9
+   {
+   }
+
+   /**
+    * A service that can be registered under each of the service interfaces.
+    */
+   public static class ServiceImpl implements Service0, Service1, Service2, Service3, Service4, Service5, Service6, Service7, Service8, Service9
+   {
+   }
+}
@@ -29,6 +29,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Dictionary;
 import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Locale;
@@ -95,8 +96,8 @@ public abstract class AbstractBundle implements Bundle
    private long lastModified = System.currentTimeMillis();
    private final CopyOnWriteArrayList<ServiceState> registeredServices =
          new CopyOnWriteArrayList<ServiceState>();
-   private final ConcurrentHashMap<ServiceState, AtomicInteger> usedServices =
-         new ConcurrentHashMap<ServiceState, AtomicInteger>();
+   private final ConcurrentHashMap<ServiceState, ServiceUseCount> usedServices =
+         new ConcurrentHashMap<ServiceState, ServiceUseCount>();
 
    // Cache commonly used plugins
    private FrameworkEventsPlugin eventsPlugin;
@@ -307,33 +308,68 @@ public abstract class AbstractBundle implements Bundle
       return srefs.toArray(new ServiceReference[srefs.size()]);
    }
 
+   /**
+    * Add a use of the given service by this bundle.
+    * The service also sees this bundle as a using bundle.
+    */
    public void addServiceInUse(ServiceState serviceState)
    {
-      log.debug("Add service in use [" + serviceState + "] to: " + this);
+      if (log.isDebugEnabled())
+         log.debug("Add service in use [" + serviceState + "] to: " + this);
+
+      while (true)
+      {
+         ServiceUseCount useCount = usedServices.get(serviceState);
+         if (useCount == null)
+         {
+            useCount = new ServiceUseCount();
+            ServiceUseCount otherCount = usedServices.putIfAbsent(serviceState, useCount);
+            if (otherCount != null)
+               useCount = otherCount;
+            else
+               serviceState.addUsingBundle(this, useCount);
+         }
+
+         if (useCount.increment())
+            return;
 
-      usedServices.putIfAbsent(serviceState, new AtomicInteger());
-      AtomicInteger count = usedServices.get(serviceState);
-      count.incrementAndGet();
+         // The counter was retired concurrently
+         usedServices.remove(serviceState, useCount);
+      }
    }
 
+   /**
+    * Remove a use of the given service by this bundle.
+    * @return The remaining use count or -1 if the service was not in use
+    */
    public int removeServiceInUse(ServiceState serviceState)
    {
-      log.debug("Remove service in use [" + serviceState + "] from: " + this);
+      if (log.isDebugEnabled())
+         log.debug("Remove service in use [" + serviceState + "] from: " + this);
 
-      AtomicInteger count = usedServices.get(serviceState);
-      if (count == null)
+      ServiceUseCount useCount = usedServices.get(serviceState);
+      if (useCount == null)
          return -1;
 
-      int countVal = count.decrementAndGet();
+      int countVal = useCount.decrement();
       if (countVal == 0)
-         usedServices.remove(serviceState);
+      {
+         usedServices.remove(serviceState, useCount);
+         serviceState.removeUsingBundle(this, useCount);
+      }
 
       return countVal;
    }
 
    public Set<ServiceState> getServicesInUseInternal()
    {
-      return Collections.unmodifiableSet(usedServices.keySet());
+      Set<ServiceState> result = new HashSet<ServiceState>();
+      for (Map.Entry<ServiceState, ServiceUseCount> entry : usedServices.entrySet())
+      {
+         if (entry.getValue().isInUse())
+            result.add(entry.getKey());
+      }
+      return Collections.unmodifiableSet(result);
    }
 
    @Override
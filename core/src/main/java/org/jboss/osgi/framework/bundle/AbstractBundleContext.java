@@ -48,7 +48,7 @@ import org.osgi.framework.ServiceRegistration;
  * @author thomas.diesler@jboss.com
  * @since 29-Jun-2010
  */
-public abstract class AbstractBundleContext implements BundleContext
+public abstract class AbstractBundleContext implements BundleContextExt
 {
    private BundleManager bundleManager;
    private AbstractBundle bundleState;
@@ -239,6 +239,21 @@ public abstract class AbstractBundleContext implements BundleContext
       return serviceState.getRegistration();
    }
 
+   @Override
+   @SuppressWarnings("rawtypes")
+   public ServiceRegistration[] registerServices(String[][] clazzes, Object[] services, Dictionary[] properties)
+   {
+      checkValidBundleContext();
+      ServiceManagerPlugin servicePlugin = bundleState.getServiceManagerPlugin();
+      List<ServiceState> serviceStates = servicePlugin.registerServices(bundleState, clazzes, services, properties);
+
+      ServiceRegistration[] result = new ServiceRegistration[serviceStates.size()];
+      for (int i = 0; i < result.length; i++)
+         result[i] = serviceStates.get(i).getRegistration();
+
+      return result;
+   }
+
    @Override
    public ServiceReference[] getServiceReferences(String clazz, String filter) throws InvalidSyntaxException
    {
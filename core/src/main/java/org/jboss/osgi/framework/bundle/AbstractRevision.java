@@ -23,7 +23,10 @@ package org.jboss.osgi.framework.bundle;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.jboss.logging.Logger;
 import org.jboss.modules.Module;
@@ -54,6 +57,8 @@ public abstract class AbstractRevision
    private final OSGiMetaData metadata;
    private XModule resolverModule;
    private boolean refreshAllowed;
+   // The services that cached an isAssignableTo result for this revision
+   private final Set<ServiceState> assignableCacheServices = Collections.newSetFromMap(new ConcurrentHashMap<ServiceState, Boolean>());
 
    // Cache commonly used plugins
    private final ModuleManagerPlugin moduleManager;
@@ -135,6 +140,24 @@ public abstract class AbstractRevision
       return module != null ? module.getClassLoader() : null;
    }
 
+   /**
+    * Get the services that cached an isAssignableTo result for this revision.
+    */
+   public Set<ServiceState> getAssignableCacheServices()
+   {
+      return Collections.unmodifiableSet(assignableCacheServices);
+   }
+
+   void addAssignableCacheService(ServiceState serviceState)
+   {
+      assignableCacheServices.add(serviceState);
+   }
+
+   void removeAssignableCacheService(ServiceState serviceState)
+   {
+      assignableCacheServices.remove(serviceState);
+   }
+
    BundleManager getBundleManager()
    {
       return bundleState.getBundleManager();
@@ -314,6 +314,8 @@ public abstract class AbstractUserBundle extends AbstractBundle
       // Remove the revisions from the resolver
       for (AbstractRevision rev : getRevisions())
       {
+         getServiceManagerPlugin().clearAssignableCache(rev);
+
          XModule resModule = rev.getResolverModule();
          getResolverPlugin().removeModule(resModule);
 
@@ -349,6 +351,8 @@ public abstract class AbstractUserBundle extends AbstractBundle
       ModuleManagerPlugin moduleManager = bundleManager.getPlugin(ModuleManagerPlugin.class);
       for (AbstractRevision rev : revisions)
       {
+         getServiceManagerPlugin().clearAssignableCache(rev);
+
          if (isFragment() == false)
          {
             ModuleIdentifier identifier = rev.getModuleIdentifier();
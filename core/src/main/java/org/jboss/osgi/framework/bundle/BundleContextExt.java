@@ -0,0 +1,51 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.osgi.framework.bundle;
+
+import java.util.Dictionary;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * A framework specific extension of the {@link BundleContext}.
+ * 
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+public interface BundleContextExt extends BundleContext
+{
+   /**
+    * Registers the given service objects with the given properties under the given class names in a single batch.
+    * 
+    * This is equivalent to calling {@link BundleContext#registerService(String[], Object, Dictionary)} for 
+    * every service in the given order, except that no service is registered if any of them is invalid and 
+    * that the REGISTERED events are delivered after all services have been registered.
+    * 
+    * @param clazzes The class names per service
+    * @param services The service objects or <code>ServiceFactory</code> objects.
+    * @param properties The properties per service. The array and its elements may be null. 
+    * @return The <code>ServiceRegistration</code> objects in the given order
+    */
+   @SuppressWarnings("rawtypes")
+   ServiceRegistration[] registerServices(String[][] clazzes, Object[] services, Dictionary[] properties);
+}
@@ -42,10 +42,10 @@ import org.osgi.framework.ServiceRegistration;
  * @author thomas.diesler@jboss.com
  * @since 29-Jun-2010
  */
-public class BundleContextWrapper implements BundleContext
+public class BundleContextWrapper implements BundleContextExt
 {
    /** The bundle state */
-   private BundleContext delegate;
+   private AbstractBundleContext delegate;
 
    public BundleContextWrapper(AbstractBundleContext context)
    {
@@ -136,6 +136,12 @@ public class BundleContextWrapper implements BundleContext
       return delegate.registerService(clazzes, service, properties);
    }
 
+   @SuppressWarnings("rawtypes")
+   public ServiceRegistration[] registerServices(String[][] clazzes, Object[] services, Dictionary[] properties)
+   {
+      return delegate.registerServices(clazzes, services, properties);
+   }
+
    public ServiceReference[] getServiceReferences(String clazz, String filter) throws InvalidSyntaxException
    {
       return delegate.getServiceReferences(clazz, filter);
@@ -42,6 +42,7 @@ import org.jboss.osgi.framework.plugin.BundleDeploymentPlugin;
 import org.jboss.osgi.framework.plugin.BundleStoragePlugin;
 import org.jboss.osgi.framework.plugin.DeployerServicePlugin;
 import org.jboss.osgi.framework.plugin.FrameworkEventsPlugin;
+import org.jboss.osgi.framework.plugin.FrameworkExecutorPlugin;
 import org.jboss.osgi.framework.plugin.LifecycleInterceptorPlugin;
 import org.jboss.osgi.framework.plugin.ModuleManagerPlugin;
 import org.jboss.osgi.framework.plugin.NativeCodePlugin;
@@ -56,6 +57,7 @@ import org.jboss.osgi.framework.plugin.internal.BundleDeploymentPluginImpl;
 import org.jboss.osgi.framework.plugin.internal.BundleStoragePluginImpl;
 import org.jboss.osgi.framework.plugin.internal.DeployerServicePluginImpl;
 import org.jboss.osgi.framework.plugin.internal.FrameworkEventsPluginImpl;
+import org.jboss.osgi.framework.plugin.internal.FrameworkExecutorPluginImpl;
 import org.jboss.osgi.framework.plugin.internal.LifecycleInterceptorPluginImpl;
 import org.jboss.osgi.framework.plugin.internal.ModuleManagerPluginImpl;
 import org.jboss.osgi.framework.plugin.internal.NativeCodePluginImpl;
@@ -112,6 +114,8 @@ public class BundleManager
          properties.putAll(initialProperties);
 
       // Register the framework plugins
+      // The executor plugin comes first, so that it is stopped after all other plugins
+      plugins.put(FrameworkExecutorPlugin.class, new FrameworkExecutorPluginImpl(this));
       plugins.put(BundleDeploymentPlugin.class, new BundleDeploymentPluginImpl(this));
       plugins.put(BundleStoragePlugin.class, new BundleStoragePluginImpl(this));
       plugins.put(FrameworkEventsPlugin.class, new FrameworkEventsPluginImpl(this));
@@ -30,8 +30,6 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.jboss.logging.Logger;
@@ -81,8 +79,6 @@ public class FrameworkState extends SystemBundle implements Framework
    private AtomicBoolean stopMonitor = new AtomicBoolean(false);
    // The framework stopped event
    private int stoppedEvent = FrameworkEvent.STOPPED;
-   // The framework executor
-   private Executor executor = Executors.newFixedThreadPool(10);
 
    static
    {
@@ -317,7 +313,7 @@ public class FrameworkState extends SystemBundle implements Framework
             }
          }
       };
-      executor.execute(cmd);
+      runStopCommand(cmd, "jbosgi-framework-stop");
    }
 
    @Override
@@ -363,7 +359,15 @@ public class FrameworkState extends SystemBundle implements Framework
             }
          }
       };
-      executor.execute(cmd);
+      runStopCommand(cmd, "jbosgi-framework-update");
+   }
+
+   // The stop runs on a dedicated thread, it must neither fail on a full framework executor
+   // nor run on the caller's thread, and it shuts down the framework executor
+   private void runStopCommand(Runnable cmd, String name)
+   {
+      Thread thread = new Thread(cmd, name);
+      thread.start();
    }
 
    private void stopInternal(boolean stopForUpdate)
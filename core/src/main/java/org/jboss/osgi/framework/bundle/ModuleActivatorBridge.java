@@ -21,6 +21,10 @@
 */
 package org.jboss.osgi.framework.bundle;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
 import org.jboss.modules.Module;
 import org.jboss.modules.ModuleIdentifier;
 import org.jboss.msc.service.ServiceContainer;
@@ -43,6 +47,8 @@ import org.osgi.framework.BundleContext;
 public class ModuleActivatorBridge implements BundleActivator
 {
    private BundleManager bundleManager;
+   private ServiceManagerPlugin serviceManager;
+   private AbstractBundle bundleState;
    private ModuleActivator moduleActivator;
    private ModuleContext moduleContext;
 
@@ -54,19 +60,25 @@ public class ModuleActivatorBridge implements BundleActivator
    @Override
    public void start(BundleContext context) throws Exception
    {
-      AbstractBundle bundleState = AbstractBundleContext.assertBundleContext(context).getBundleInternal();
+      bundleState = AbstractBundleContext.assertBundleContext(context).getBundleInternal();
       bundleManager = bundleState.getBundleManager();
 
       ModuleManagerPlugin moduleManager = bundleManager.getPlugin(ModuleManagerPlugin.class);
       ModuleIdentifier identifier = bundleState.getModuleIdentifier();
       Module module = moduleManager.getModule(identifier);
 
-      ServiceManagerPlugin serviceManager = bundleManager.getPlugin(ServiceManagerPlugin.class);
+      serviceManager = bundleManager.getPlugin(ServiceManagerPlugin.class);
       ServiceContainer serviceContainer = serviceManager.getServiceContainer();
       BundleContext systemContext = bundleManager.getSystemContext();
 
-      moduleContext = new ModuleContextImpl(serviceContainer, module, systemContext, context.getBundle());
+      ModuleContextImpl contextImpl = new ModuleContextImpl(serviceContainer, module, systemContext, context.getBundle());
+      moduleContext = contextImpl;
       moduleActivator.start(moduleContext);
+
+      // Bridge the xservices that the module activator may have installed or referenced.
+      // Other xservices are discovered by their prefix on lookup.
+      for (Entry<ServiceName, String> entry : contextImpl.getServiceNames().entrySet())
+         serviceManager.registerXService(entry.getKey(), entry.getValue());
    }
 
    @Override
@@ -87,6 +99,7 @@ public class ModuleActivatorBridge implements BundleActivator
       private Module module;
       private BundleContext systemContext;
       private Bundle bundle;
+      private Map<ServiceName, String> serviceNames = new LinkedHashMap<ServiceName, String>();
 
       ModuleContextImpl(ServiceContainer serviceContainer, Module module, BundleContext systemContext, Bundle bundle)
       {
@@ -111,7 +124,30 @@ public class ModuleActivatorBridge implements BundleActivator
          if (service == null)
             throw new IllegalArgumentException("Null service");
 
-         return ServiceName.of(XSERVICE_PREFIX, service.getName());
+         ServiceName serviceName = ServiceName.of(XSERVICE_PREFIX, service.getName());
+         synchronized (serviceNames)
+         {
+            serviceNames.put(serviceName, service.getName());
+         }
+         return serviceName;
+      }
+
+      @Override
+      public ServiceName exportService(Class<?> service)
+      {
+         if (service == null)
+            throw new IllegalArgumentException("Null service");
+
+         ServiceState serviceState = serviceManager.getServiceReference(bundleState, service.getName());
+         return (serviceState != null ? serviceManager.exportService(serviceState) : null);
+      }
+
+      Map<ServiceName, String> getServiceNames()
+      {
+         synchronized (serviceNames)
+         {
+            return new LinkedHashMap<ServiceName, String>(serviceNames);
+         }
       }
 
       @Override
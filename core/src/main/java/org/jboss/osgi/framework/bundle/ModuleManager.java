@@ -84,6 +84,8 @@ public class ModuleManager
    private ModuleIdentifier frameworkIdentifier;
    // The module loader for the OSGi layer
    private OSGiModuleLoader moduleLoader;
+   // The index of exported packages
+   private PackageExporterIndex exporterIndex;
 
    public ModuleManager(BundleManager bundleManager)
    {
@@ -91,7 +93,8 @@ public class ModuleManager
          throw new IllegalArgumentException("Null bundleManager");
 
       this.bundleManager = bundleManager;
-      this.moduleLoader = new OSGiModuleLoader();
+      this.exporterIndex = new PackageExporterIndex();
+      this.moduleLoader = new OSGiModuleLoader(exporterIndex);
 
       // Set the {@link ModuleLogger}
       Module.setModuleLogger(new JBossLoggingModuleLogger(Logger.getLogger(ModuleClassLoader.class)));
@@ -141,6 +144,11 @@ public class ModuleManager
       return bundleManager;
    }
 
+   public PackageExporterIndex getPackageExporterIndex()
+   {
+      return exporterIndex;
+   }
+
    public ModuleLoader getModuleLoader()
    {
       return moduleLoader;
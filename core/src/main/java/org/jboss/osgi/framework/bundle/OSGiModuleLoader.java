@@ -15,6 +15,13 @@ final class OSGiModuleLoader extends ModuleLoader
 {
    // The modules that are registered with this {@link ModuleLoader}
    private Map<ModuleIdentifier, OSGiModuleLoader.ModuleHolder> modules = Collections.synchronizedMap(new LinkedHashMap<ModuleIdentifier, OSGiModuleLoader.ModuleHolder>());
+   // The index of the packages that the registered modules export
+   private final PackageExporterIndex exporterIndex;
+
+   OSGiModuleLoader(PackageExporterIndex exporterIndex)
+   {
+      this.exporterIndex = exporterIndex;
+   }
 
    @Override
    public ModuleSpec findModule(ModuleIdentifier identifier) throws ModuleLoadException
@@ -45,6 +52,7 @@ final class OSGiModuleLoader extends ModuleLoader
       if (modules.get(identifier) != null)
          throw new IllegalStateException("Module already exists: " + identifier);
       modules.put(identifier, new ModuleHolder(bundleRev, moduleSpec));
+      exporterIndex.addModule(identifier, bundleRev);
    }
 
    Module removeModule(ModuleIdentifier identifier)
@@ -53,6 +61,8 @@ final class OSGiModuleLoader extends ModuleLoader
       if (moduleHolder == null)
          return null;
 
+      exporterIndex.removeModule(identifier);
+
       Module module = moduleHolder.module;
       unloadModuleLocal(module);
       return module;
@@ -0,0 +1,180 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.osgi.framework.bundle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.modules.ModuleIdentifier;
+import org.jboss.osgi.resolver.XModule;
+import org.jboss.osgi.resolver.XPackageCapability;
+
+/**
+ * A framework wide index of the modules that export a package.
+ *
+ * Resolved modules are indexed by the {@link OSGiModuleLoader} when their module is added or removed.
+ * The resolver modules of installed bundles are indexed when they are added to or removed from the resolver.
+ * Dynamic class loading only consults the exporters of the requested package.
+ *
+ * Every package carries a stamp that changes whenever a new exporter of the package appears.
+ * A cached lookup miss for a package is valid for as long as its stamp did not change.
+ *
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+public final class PackageExporterIndex
+{
+   // Maps the package name to the modules that export it
+   private final Map<String, Set<ModuleIdentifier>> exportingModules = new ConcurrentHashMap<String, Set<ModuleIdentifier>>();
+   // The packages that were indexed for a module
+   private final Map<ModuleIdentifier, List<String>> modulePackages = new ConcurrentHashMap<ModuleIdentifier, List<String>>();
+   // Maps the package name to the resolver modules that declare an export of it
+   private final Map<String, Set<XModule>> declaringModules = new ConcurrentHashMap<String, Set<XModule>>();
+   // Maps the package name to the stamp of the last exporter that was added
+   private final Map<String, Long> packageStamps = new ConcurrentHashMap<String, Long>();
+   // The source of package stamps
+   private final AtomicLong stampCounter = new AtomicLong();
+
+   /**
+    * Get the modules that export the given package, in the order they were added.
+    * @return The modules or an empty set
+    */
+   public Set<ModuleIdentifier> getExportingModules(String packageName)
+   {
+      Set<ModuleIdentifier> result = exportingModules.get(packageName);
+      if (result == null)
+         return Collections.emptySet();
+
+      return Collections.unmodifiableSet(result);
+   }
+
+   /**
+    * Get the resolver modules that declare an export of the given package, in the order they were added.
+    * @return The resolver modules or an empty set
+    */
+   public Set<XModule> getDeclaringModules(String packageName)
+   {
+      Set<XModule> result = declaringModules.get(packageName);
+      if (result == null)
+         return Collections.emptySet();
+
+      return Collections.unmodifiableSet(result);
+   }
+
+   /**
+    * Get the stamp of the given package, which changes whenever a new exporter of the package is added.
+    * @return The stamp or 0 if there never was an exporter of the package
+    */
+   public long getPackageStamp(String packageName)
+   {
+      Long stamp = packageStamps.get(packageName);
+      return stamp != null ? stamp.longValue() : 0;
+   }
+
+   public synchronized void addResolverModule(XModule resModule)
+   {
+      for (XPackageCapability cap : resModule.getPackageCapabilities())
+      {
+         Set<XModule> modules = declaringModules.get(cap.getName());
+         if (modules == null)
+         {
+            modules = new CopyOnWriteArraySet<XModule>();
+            declaringModules.put(cap.getName(), modules);
+         }
+         if (modules.add(resModule))
+            updatePackageStamp(cap.getName());
+      }
+   }
+
+   public synchronized void removeResolverModule(XModule resModule)
+   {
+      for (XPackageCapability cap : resModule.getPackageCapabilities())
+      {
+         Set<XModule> modules = declaringModules.get(cap.getName());
+         if (modules != null)
+         {
+            modules.remove(resModule);
+            if (modules.isEmpty())
+               declaringModules.remove(cap.getName());
+         }
+      }
+   }
+
+   synchronized void addModule(ModuleIdentifier identifier, AbstractRevision bundleRev)
+   {
+      // The packages of attached fragments are exported through the host module
+      List<XModule> resModules = new ArrayList<XModule>();
+      resModules.add(bundleRev.getResolverModule());
+      if (bundleRev instanceof HostRevision)
+      {
+         for (FragmentRevision fragRev : ((HostRevision)bundleRev).getAttachedFragments())
+            resModules.add(fragRev.getResolverModule());
+      }
+
+      List<String> packageNames = new ArrayList<String>();
+      for (XModule resModule : resModules)
+      {
+         for (XPackageCapability cap : resModule.getPackageCapabilities())
+         {
+            Set<ModuleIdentifier> modules = exportingModules.get(cap.getName());
+            if (modules == null)
+            {
+               modules = new CopyOnWriteArraySet<ModuleIdentifier>();
+               exportingModules.put(cap.getName(), modules);
+            }
+            if (modules.add(identifier))
+               updatePackageStamp(cap.getName());
+            packageNames.add(cap.getName());
+         }
+      }
+      modulePackages.put(identifier, packageNames);
+   }
+
+   private void updatePackageStamp(String packageName)
+   {
+      packageStamps.put(packageName, stampCounter.incrementAndGet());
+   }
+
+   synchronized void removeModule(ModuleIdentifier identifier)
+   {
+      List<String> packageNames = modulePackages.remove(identifier);
+      if (packageNames == null)
+         return;
+
+      for (String packageName : packageNames)
+      {
+         Set<ModuleIdentifier> modules = exportingModules.get(packageName);
+         if (modules != null)
+         {
+            modules.remove(identifier);
+            if (modules.isEmpty())
+               exportingModules.remove(packageName);
+         }
+      }
+   }
+}
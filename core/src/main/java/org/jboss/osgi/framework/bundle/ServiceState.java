@@ -33,6 +33,8 @@ import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jboss.logging.Logger;
@@ -65,22 +67,29 @@ public class ServiceState implements ServiceRegistration, ServiceReference
    private long serviceId;
    // The bundle that ownes this service
    private AbstractBundle ownerBundle;
-   // The bundles that use this service
-   private Set<AbstractBundle> usingBundles;
-   // The list of service names associated with this service
-   private List<ServiceName> serviceNames;
+   // The bundles that use this service with their use count
+   private ConcurrentMap<AbstractBundle, ServiceUseCount> usingBundles = new ConcurrentHashMap<AbstractBundle, ServiceUseCount>();
+   // The list of service names associated with this service, generated on demand
+   private volatile List<ServiceName> serviceNames;
    // The service registration
    private ServiceRegistration registration;
    // The service reference
    private ServiceReference reference;
    // The {@link ServiceFactory} value registry
-   private Map<Long, ServiceFactoryHolder> factoryValues;
+   private ConcurrentMap<Long, ServiceFactoryHolder> factoryValues = new ConcurrentHashMap<Long, ServiceFactoryHolder>();
    // The service object value
    private Object value;
+   // The isAssignableTo results per requesting revision and class name
+   private ConcurrentMap<AbstractRevision, ConcurrentMap<String, Boolean>> assignableCache = new ConcurrentHashMap<AbstractRevision, ConcurrentMap<String, Boolean>>();
 
    // The properties 
    private CaseInsensitiveDictionary prevProperties;
    private CaseInsensitiveDictionary currProperties;
+   // The properties keyed by lower case property key
+   private volatile Map<String, Object> prevPropertyMap;
+   private volatile Map<String, Object> currPropertyMap;
+   // The lower case keys whose values changed with the last modification
+   private volatile Set<String> modifiedKeys;
 
    // Cache commonly used plugins
    private ServiceManagerPlugin serviceManager;
@@ -91,8 +100,8 @@ public class ServiceState implements ServiceRegistration, ServiceReference
    {
       if (owner == null)
          throw new IllegalArgumentException("Null owner");
-      if (serviceNames == null || serviceNames.length == 0)
-         throw new IllegalArgumentException("Null names");
+      if (serviceNames != null && serviceNames.length == 0)
+         throw new IllegalArgumentException("Empty names");
       if (clazzes == null || clazzes.length == 0)
          throw new IllegalArgumentException("Null clazzes");
       if (value == null)
@@ -101,7 +110,8 @@ public class ServiceState implements ServiceRegistration, ServiceReference
       this.serviceManager = owner.getServiceManagerPlugin();
       this.eventsPlugin = owner.getFrameworkEventsPlugin();
 
-      this.serviceNames = Arrays.asList(serviceNames);
+      if (serviceNames != null)
+         this.serviceNames = Collections.unmodifiableList(Arrays.asList(serviceNames));
       this.serviceId = serviceId;
       this.ownerBundle = owner;
       this.value = value;
@@ -115,6 +125,7 @@ public class ServiceState implements ServiceRegistration, ServiceReference
       properties.put(Constants.SERVICE_ID, serviceId);
       properties.put(Constants.OBJECTCLASS, clazzes);
       this.currProperties = new CaseInsensitiveDictionary(properties);
+      this.currPropertyMap = toPropertyMap(currProperties);
 
       // Create the {@link ServiceRegistration} and {@link ServiceReference}
       this.registration = new ServiceRegistrationWrapper(this);
@@ -156,15 +167,14 @@ public class ServiceState implements ServiceRegistration, ServiceReference
       Object result = null;
       try
       {
-         if (factoryValues == null)
-            factoryValues = new HashMap<Long, ServiceFactoryHolder>();
-
          ServiceFactoryHolder factoryHolder = factoryValues.get(bundleState.getBundleId());
          if (factoryHolder == null)
          {
             ServiceFactory factory = (ServiceFactory)value;
             factoryHolder = new ServiceFactoryHolder(bundleState, factory);
-            factoryValues.put(bundleState.getBundleId(), factoryHolder);
+            ServiceFactoryHolder otherHolder = factoryValues.putIfAbsent(bundleState.getBundleId(), factoryHolder);
+            if (otherHolder != null)
+               factoryHolder = otherHolder;
          }
 
          result = factoryHolder.getService();
@@ -194,7 +204,8 @@ public class ServiceState implements ServiceRegistration, ServiceReference
          try
          {
             ServiceFactoryHolder factoryHolder = factoryValues.get(bundleState.getBundleId());
-            factoryHolder.ungetService();
+            if (factoryHolder != null)
+               factoryHolder.ungetService();
          }
          catch (RuntimeException rte)
          {
@@ -209,9 +220,28 @@ public class ServiceState implements ServiceRegistration, ServiceReference
       return registration;
    }
 
+   /**
+    * Get the MSC service names of this service. The first name is the root name, the others are aliases.
+    * Unless given at construction, the names are generated from the owner bundle, the object classes 
+    * and the service id on first access. 
+    */
    public List<ServiceName> getServiceNames()
    {
-      return Collections.unmodifiableList(serviceNames);
+      List<ServiceName> result = serviceNames;
+      if (result == null)
+      {
+         String[] clazzes = (String[])getProperty(Constants.OBJECTCLASS);
+         ServiceName[] names = new ServiceName[clazzes.length];
+         for (int i = 0; i < clazzes.length; i++)
+         {
+            String prefix = (i == 0 ? "jbosgi-service" : "jbosgi-alias");
+            String shortName = clazzes[i].substring(clazzes[i].lastIndexOf(".") + 1);
+            names[i] = ServiceName.of(prefix, ownerBundle.getSymbolicName(), shortName, new Long(serviceId).toString());
+         }
+         result = Collections.unmodifiableList(Arrays.asList(names));
+         serviceNames = result;
+      }
+      return result;
    }
 
    @Override
@@ -226,7 +256,7 @@ public class ServiceState implements ServiceRegistration, ServiceReference
    {
       assertNotUnregistered();
       serviceManager.unregisterService(this);
-      usingBundles = null;
+      usingBundles.clear();
       registration = null;
    }
 
@@ -260,6 +290,7 @@ public class ServiceState implements ServiceRegistration, ServiceReference
       // Remember the previous properties for a potential
       // delivery of the MODIFIED_ENDMATCH event
       prevProperties = currProperties;
+      prevPropertyMap = currPropertyMap;
 
       if (properties == null)
          properties = new Hashtable();
@@ -267,6 +298,11 @@ public class ServiceState implements ServiceRegistration, ServiceReference
       properties.put(Constants.SERVICE_ID, currProperties.get(Constants.SERVICE_ID));
       properties.put(Constants.OBJECTCLASS, currProperties.get(Constants.OBJECTCLASS));
       currProperties = new CaseInsensitiveDictionary(properties);
+      currPropertyMap = toPropertyMap(currProperties);
+      modifiedKeys = getModifiedKeys(prevPropertyMap, currPropertyMap);
+
+      // Reorder the service in the registry if the ranking has changed
+      serviceManager.updateService(this);
 
       // This event is synchronously delivered after the service properties have been modified. 
       eventsPlugin.fireServiceEvent(ownerBundle, ServiceEvent.MODIFIED, this);
@@ -277,6 +313,75 @@ public class ServiceState implements ServiceRegistration, ServiceReference
       return prevProperties;
    }
 
+   /**
+    * Get the current properties keyed by lower case property key.
+    */
+   public Map<String, Object> getPropertiesInternal()
+   {
+      return currPropertyMap;
+   }
+
+   /**
+    * Get the previous properties keyed by lower case property key.
+    * @return The properties or null if the properties have not been modified
+    */
+   public Map<String, Object> getPreviousPropertiesInternal()
+   {
+      return prevPropertyMap;
+   }
+
+   /**
+    * Get the lower case keys of the properties that were added, removed or changed by the last modification.
+    * A filter that references none of these keys matches the current properties exactly when it 
+    * matched the previous properties.
+    * @return The keys or null if the properties have not been modified
+    */
+   public Set<String> getModifiedKeysInternal()
+   {
+      return modifiedKeys;
+   }
+
+   private static Set<String> getModifiedKeys(Map<String, Object> prevMap, Map<String, Object> currMap)
+   {
+      Set<String> result = new HashSet<String>();
+      for (Map.Entry<String, Object> entry : currMap.entrySet())
+      {
+         Object prevValue = prevMap.get(entry.getKey());
+         if (valueEquals(prevValue, entry.getValue()) == false)
+            result.add(entry.getKey());
+      }
+      for (String key : prevMap.keySet())
+      {
+         if (currMap.containsKey(key) == false)
+            result.add(key);
+      }
+      return Collections.unmodifiableSet(result);
+   }
+
+   // Primitive arrays are compared by reference, which at worst reports a key as modified
+   private static boolean valueEquals(Object prevValue, Object currValue)
+   {
+      if (prevValue == currValue)
+         return true;
+      if (prevValue == null || currValue == null)
+         return false;
+      if (prevValue instanceof Object[] && currValue instanceof Object[])
+         return Arrays.deepEquals((Object[])prevValue, (Object[])currValue);
+      return prevValue.equals(currValue);
+   }
+
+   private static Map<String, Object> toPropertyMap(Dictionary properties)
+   {
+      Map<String, Object> result = new HashMap<String, Object>();
+      Enumeration keys = properties.keys();
+      while (keys.hasMoreElements())
+      {
+         String key = (String)keys.nextElement();
+         result.put(key.toLowerCase(), properties.get(key));
+      }
+      return Collections.unmodifiableMap(result);
+   }
+
    public AbstractBundle getServiceOwner()
    {
       return ownerBundle;
@@ -291,52 +396,40 @@ public class ServiceState implements ServiceRegistration, ServiceReference
       return ownerBundle.getBundleWrapper();
    }
 
-   public void addUsingBundle(AbstractBundle bundleState)
+   void addUsingBundle(AbstractBundle bundleState, ServiceUseCount useCount)
    {
-      synchronized (this)
-      {
-         if (usingBundles == null)
-            usingBundles = new HashSet<AbstractBundle>();
-
-         usingBundles.add(bundleState);
-      }
+      usingBundles.put(bundleState, useCount);
    }
 
-   public void removeUsingBundle(AbstractBundle bundleState)
+   void removeUsingBundle(AbstractBundle bundleState, ServiceUseCount useCount)
    {
-      synchronized (this)
-      {
-         if (usingBundles != null)
-            usingBundles.remove(bundleState);
-      }
+      usingBundles.remove(bundleState, useCount);
    }
 
    public Set<AbstractBundle> getUsingBundlesInternal()
    {
-      synchronized (this)
+      // Return an unmodifieable snapshot of the bundles that currently use the service
+      Set<AbstractBundle> result = new HashSet<AbstractBundle>();
+      for (Map.Entry<AbstractBundle, ServiceUseCount> entry : usingBundles.entrySet())
       {
-         if (usingBundles == null)
-            return Collections.emptySet();
-
-         // Return an unmodifieable snapshot of the set
-         return Collections.unmodifiableSet(new HashSet<AbstractBundle>(usingBundles));
+         if (entry.getValue().isInUse())
+            result.add(entry.getKey());
       }
+      return Collections.unmodifiableSet(result);
    }
 
    @Override
    public Bundle[] getUsingBundles()
    {
-      synchronized (this)
-      {
-         if (usingBundles == null)
-            return null;
+      Set<AbstractBundle> bundleStates = getUsingBundlesInternal();
+      if (bundleStates.isEmpty())
+         return null;
 
-         Set<Bundle> bundles = new HashSet<Bundle>();
-         for (AbstractBundle aux : usingBundles)
-            bundles.add(aux.getBundleWrapper());
+      Set<Bundle> bundles = new HashSet<Bundle>();
+      for (AbstractBundle aux : bundleStates)
+         bundles.add(aux.getBundleWrapper());
 
-         return bundles.toArray(new Bundle[bundles.size()]);
-      }
+      return bundles.toArray(new Bundle[bundles.size()]);
    }
 
    @Override
@@ -347,40 +440,87 @@ public class ServiceState implements ServiceRegistration, ServiceReference
       if (className == null)
          throw new IllegalArgumentException("Null className");
       
-      if (ownerBundle == AbstractBundle.assertBundleState(bundle))
+      AbstractBundle bundleState = AbstractBundle.assertBundleState(bundle);
+      if (ownerBundle == bundleState)
          return true;
-      
-      Class<?> targetClass = null;
-      try
-      {
-         targetClass = bundle.loadClass(className);
-      }
-      catch (ClassNotFoundException ex)
+
+      AbstractRevision revision = bundleState.getCurrentRevision();
+      ConcurrentMap<String, Boolean> assignable = assignableCache.get(revision);
+      Boolean cached = (assignable != null ? assignable.get(className) : null);
+      if (cached != null)
+         return cached.booleanValue();
+
+      Class<?> targetClass = loadClass(bundleState, className);
+      if (targetClass == null)
       {
          // If the requesting bundle does not have a wire to the 
          // service package it cannot be constraint on that package. 
-         log.warn("Requesting bundle cannot load class: " + className);
+         // This is not cached, the requester may still get wired dynamically.
+         if (log.isDebugEnabled())
+            log.debug("Requesting bundle cannot load class: " + className);
          return true;
       }
-      
-      Class<?> ownerClass = null;
-      try
+
+      boolean result;
+      Class<?> ownerClass = loadClass(ownerBundle, className);
+      if (ownerClass == null)
       {
-         ownerClass = ownerBundle.loadClass(className);
+         if (log.isDebugEnabled())
+            log.debug("Owner bundle cannot load class: " + className);
+         result = false;
       }
-      catch (ClassNotFoundException ex)
+      else if (targetClass != ownerClass)
       {
-         log.warn("Owner bundle cannot load class: " + className);
-         return false;
+         if (log.isDebugEnabled())
+            log.debug("Not assignable: " + value.getClass().getName());
+         result = false;
       }
-      
-      if (targetClass != ownerClass)
+      else
       {
-         log.debug("Not assignable: " + value.getClass().getName());
-         return false;
+         result = true;
+      }
+
+      // Both revisions were asked for the class, the result holds until one of them is refreshed
+      if (assignable == null)
+      {
+         assignable = new ConcurrentHashMap<String, Boolean>();
+         ConcurrentMap<String, Boolean> previous = assignableCache.putIfAbsent(revision, assignable);
+         if (previous != null)
+            assignable = previous;
+      }
+      assignable.put(className, Boolean.valueOf(result));
+      revision.addAssignableCacheService(this);
+      return result;
+   }
+
+   /**
+    * Clear the cached isAssignableTo results that involve the given revision.
+    */
+   public void clearAssignableCache(AbstractRevision revision)
+   {
+      if (revision.getBundleState() == ownerBundle)
+      {
+         for (AbstractRevision aux : assignableCache.keySet())
+            aux.removeAssignableCacheService(this);
+         assignableCache.clear();
+      }
+      else
+      {
+         revision.removeAssignableCacheService(this);
+         assignableCache.remove(revision);
+      }
+   }
+
+   private static Class<?> loadClass(AbstractBundle bundle, String className)
+   {
+      try
+      {
+         return bundle.loadClass(className);
+      }
+      catch (ClassNotFoundException ex)
+      {
+         return null;
       }
-      
-      return true;
    }
 
    @Override
@@ -393,7 +533,7 @@ public class ServiceState implements ServiceRegistration, ServiceReference
       return comparator.compare(this, (ServiceReference)sref);
    }
 
-   int getServiceRanking()
+   public int getServiceRanking()
    {
       Object prop = getProperty(Constants.SERVICE_RANKING);
       if (prop instanceof Integer == false)
@@ -458,12 +598,19 @@ public class ServiceState implements ServiceRegistration, ServiceReference
       return "ServiceState" + props;
    }
 
+   /**
+    * Holds the {@link ServiceFactory} value for a single bundle.
+    * 
+    * While the value is in use, get and unget only update the use count. 
+    * Creating and releasing the value is serialized on the holder, so that the factory is
+    * called once per use cycle and never concurrently for the same bundle.
+    */
    class ServiceFactoryHolder
    {
       ServiceFactory factory;
       AbstractBundle bundleState;
       AtomicInteger useCount;
-      Object value;
+      volatile Object value;
 
       ServiceFactoryHolder(AbstractBundle bundleState, ServiceFactory factory)
       {
@@ -474,12 +621,24 @@ public class ServiceState implements ServiceRegistration, ServiceReference
 
       Object getService()
       {
-         // Multiple calls to getService() return the same value
-         if (useCount.get() == 0)
+         while (true)
          {
+            // Multiple calls to getService() return the same value
+            int count = useCount.get();
+            if (count > 0)
+            {
+               if (useCount.compareAndSet(count, count + 1))
+                  return value;
+
+               continue;
+            }
+
             // The Framework must not allow this method to be concurrently called for the same bundle
-            synchronized (bundleState)
+            synchronized (this)
             {
+               if (useCount.get() > 0)
+                  continue;
+
                Object retValue = factory.getService(bundleState.getBundleWrapper(), getRegistration());
                if (retValue == null)
                   return null;
@@ -490,25 +649,38 @@ public class ServiceState implements ServiceRegistration, ServiceReference
                   return null;
 
                value = retValue;
+               useCount.set(1);
+               return retValue;
             }
          }
-
-         useCount.incrementAndGet();
-         return value;
       }
 
       void ungetService()
       {
-         if (useCount.get() == 0)
-            return;
-
-         // Call unget on the factory when done
-         if (useCount.decrementAndGet() == 0)
+         while (true)
          {
-            synchronized (bundleState)
+            int count = useCount.get();
+            if (count == 0)
+               return;
+
+            if (count > 1)
+            {
+               if (useCount.compareAndSet(count, count - 1))
+                  return;
+
+               continue;
+            }
+
+            // Call unget on the factory when done
+            synchronized (this)
             {
-               factory.ungetService(bundleState.getBundleWrapper(), getRegistration(), value);
-               value = null;
+               if (useCount.compareAndSet(1, 0))
+               {
+                  Object retValue = value;
+                  value = null;
+                  factory.ungetService(bundleState.getBundleWrapper(), getRegistration(), retValue);
+                  return;
+               }
             }
          }
       }
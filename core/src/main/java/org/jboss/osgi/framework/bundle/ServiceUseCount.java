@@ -0,0 +1,82 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.osgi.framework.bundle;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The number of times a bundle got a service and did not yet unget it.
+ * 
+ * The same counter is shared by the using bundle and the used service. Once the count 
+ * drops back to zero the counter is retired and a new counter must be created
+ * for the next use. 
+ * 
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+final class ServiceUseCount
+{
+   // The count of a counter that is no longer in use 
+   private static final int RETIRED = -1;
+
+   private final AtomicInteger count = new AtomicInteger();
+
+   /**
+    * Increment the use count.
+    * @return false if the counter is retired
+    */
+   boolean increment()
+   {
+      while (true)
+      {
+         int current = count.get();
+         if (current == RETIRED)
+            return false;
+
+         if (count.compareAndSet(current, current + 1))
+            return true;
+      }
+   }
+
+   /**
+    * Decrement the use count and retire the counter when it drops to zero.
+    * @return The remaining use count or -1 if the counter was not in use
+    */
+   int decrement()
+   {
+      while (true)
+      {
+         int current = count.get();
+         if (current <= 0)
+            return -1;
+
+         int next = (current == 1 ? RETIRED : current - 1);
+         if (count.compareAndSet(current, next))
+            return current - 1;
+      }
+   }
+
+   boolean isInUse()
+   {
+      return count.get() > 0;
+   }
+}
@@ -0,0 +1,161 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.osgi.framework.loading;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A matcher for the package name patterns of the DynamicImport-Package header.
+ *
+ * The patterns are compiled once into a character trie over the package names. A pattern 'org.foo'
+ * matches the package 'org.foo'. A pattern 'org.foo.*' matches the package 'org.foo' and its sub packages.
+ * The pattern '*' matches every package. Matching a class name does not allocate.
+ *
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+public final class DynamicImportMatcher
+{
+   // A matcher that matches nothing
+   public static final DynamicImportMatcher NONE = new DynamicImportMatcher(new Node(), false);
+
+   // The root of the pattern trie
+   private final Node root;
+   // True if the patterns contain '*'
+   private final boolean matchAll;
+
+   private DynamicImportMatcher(Node root, boolean matchAll)
+   {
+      this.root = root;
+      this.matchAll = matchAll;
+   }
+
+   /**
+    * Compile the given DynamicImport-Package patterns.
+    */
+   public static DynamicImportMatcher compile(Collection<String> patterns)
+   {
+      if (patterns == null)
+         throw new IllegalArgumentException("Null patterns");
+
+      if (patterns.isEmpty())
+         return NONE;
+
+      Node root = new Node();
+      boolean matchAll = false;
+      for (String pattern : patterns)
+      {
+         pattern = pattern.trim();
+         if (pattern.equals("*"))
+         {
+            matchAll = true;
+            continue;
+         }
+
+         boolean wildcard = pattern.endsWith(".*");
+         if (wildcard)
+            pattern = pattern.substring(0, pattern.length() - 2);
+
+         Node node = root;
+         for (int i = 0; i < pattern.length(); i++)
+            node = node.addChild(pattern.charAt(i));
+
+         if (wildcard)
+            node.wildcard = true;
+         else
+            node.exact = true;
+      }
+      return new DynamicImportMatcher(root, matchAll);
+   }
+
+   /**
+    * True if there are no patterns to match.
+    */
+   public boolean isEmpty()
+   {
+      return this == NONE;
+   }
+
+   /**
+    * True if the package of the given class name matches one of the patterns.
+    */
+   public boolean matchesClass(String className)
+   {
+      if (matchAll)
+         return true;
+
+      int packageEnd = className.lastIndexOf('.');
+      if (packageEnd <= 0)
+         return false;
+
+      Node node = root;
+      for (int i = 0; i < packageEnd; i++)
+      {
+         char ch = className.charAt(i);
+         if (ch == '.' && node.wildcard)
+            return true;
+
+         node = node.getChild(ch);
+         if (node == null)
+            return false;
+      }
+      return node.exact || node.wildcard;
+   }
+
+   /**
+    * A trie node for a single character of a package name.
+    */
+   static class Node
+   {
+      private char[] keys = new char[0];
+      private Node[] children = new Node[0];
+      // True if a pattern ends at this node
+      boolean exact;
+      // True if a pattern ending with '.*' ends at this node
+      boolean wildcard;
+
+      Node getChild(char ch)
+      {
+         for (int i = 0; i < keys.length; i++)
+         {
+            if (keys[i] == ch)
+               return children[i];
+         }
+         return null;
+      }
+
+      Node addChild(char ch)
+      {
+         Node child = getChild(ch);
+         if (child == null)
+         {
+            child = new Node();
+            keys = Arrays.copyOf(keys, keys.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            keys[keys.length - 1] = ch;
+            children[children.length - 1] = child;
+         }
+         return child;
+      }
+   }
+}
@@ -21,9 +21,10 @@
 */
 package org.jboss.osgi.framework.loading;
 
-import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -38,6 +39,7 @@ import org.jboss.osgi.framework.bundle.AbstractBundle;
 import org.jboss.osgi.framework.bundle.AbstractRevision;
 import org.jboss.osgi.framework.bundle.BundleManager;
 import org.jboss.osgi.framework.bundle.ModuleManager;
+import org.jboss.osgi.framework.bundle.PackageExporterIndex;
 import org.jboss.osgi.framework.plugin.ModuleManagerPlugin;
 import org.jboss.osgi.resolver.XModule;
 import org.jboss.osgi.resolver.XPackageRequirement;
@@ -54,16 +56,28 @@ public class ModuleClassLoaderExt implements LocalLoader, BundleReference
 {
    // Provide logging
    private static final Logger log = Logger.getLogger(ModuleClassLoaderExt.class);
+   // The maximum number of cached dynamic load misses
+   private static final int MAX_MISS_CACHE_SIZE = 256;
 
    private static ThreadLocal<Map<String, AtomicInteger>> dynamicLoadAttempts;
    private final ModuleManagerPlugin moduleManager;
-   private final BundleManager bundleManager;
    private final ModuleIdentifier id;
+   // The compiled DynamicImport-Package patterns of the module revision
+   private volatile DynamicImportMatcher dynamicImportMatcher;
+   // Maps the class name of a dynamic load miss to the stamp of its package at the time of the miss
+   private final Map<String, Long> missCache = new LinkedHashMap<String, Long>(16, 0.75f, true)
+   {
+      private static final long serialVersionUID = 1L;
 
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Long> eldest)
+      {
+         return size() > MAX_MISS_CACHE_SIZE;
+      }
+   };
 
    public ModuleClassLoaderExt(BundleManager bundleManager, ModuleIdentifier id)
    {
-      this.bundleManager = bundleManager;
       this.id= id;
 
       moduleManager = bundleManager.getPlugin(ModuleManagerPlugin.class);
@@ -81,17 +95,78 @@ public class ModuleClassLoaderExt implements LocalLoader, BundleReference
    {
 
       // Try to load the class dynamically
-      String matchingPattern = findMatchingDynamicImportPattern(className);
-      if (matchingPattern != null)
+      if (matchesDynamicImportPattern(className))
       {
+         // A previous miss is valid as long as no new exporter of the package appeared
+         String packageName = getPackageName(className);
+         if (packageName == null)
+            return null;
+
+         PackageExporterIndex exporterIndex = moduleManager.getPackageExporterIndex();
+         long packageStamp = exporterIndex.getPackageStamp(packageName);
+         if (isCachedMiss(className, packageStamp))
+         {
+            if (log.isTraceEnabled())
+               log.trace("Class [" + className + "] is a cached dynamic load miss");
+            return null;
+         }
+
          Class<? >result = loadClassDynamically(className);
          if (result != null)
             return result;
+
+         // Do not cache a miss from a recursive attempt that did not scan the exporters.
+         // An INSTALLED exporter may resolve later without a change to the package stamp.
+         if (isDynamicLoadAttempt(className) == false && hasInstalledExporter(exporterIndex, packageName) == false)
+            cacheMiss(className, packageStamp);
       }
 
       return null;
    }
 
+   private boolean isCachedMiss(String className, long packageStamp)
+   {
+      synchronized (missCache)
+      {
+         Long stamp = missCache.get(className);
+         if (stamp == null)
+            return false;
+
+         if (stamp.longValue() != packageStamp)
+         {
+            missCache.remove(className);
+            return false;
+         }
+
+         return true;
+      }
+   }
+
+   private void cacheMiss(String className, long packageStamp)
+   {
+      synchronized (missCache)
+      {
+         missCache.put(className, packageStamp);
+      }
+   }
+
+   private boolean hasInstalledExporter(PackageExporterIndex exporterIndex, String packageName)
+   {
+      for (XModule resModule : exporterIndex.getDeclaringModules(packageName))
+      {
+         AbstractRevision bundleRev = resModule.getAttachment(AbstractRevision.class);
+         if (bundleRev != null && bundleRev.getBundleState().getState() == Bundle.INSTALLED)
+            return true;
+      }
+      return false;
+   }
+
+   private boolean isDynamicLoadAttempt(String className)
+   {
+      Map<String, AtomicInteger> mapping = (dynamicLoadAttempts != null ? dynamicLoadAttempts.get() : null);
+      return mapping != null && mapping.containsKey(className);
+   }
+
    private Class<?> loadClassDynamically(String className)
    {
       Class<?> result;
@@ -142,41 +217,29 @@ public class ModuleClassLoaderExt implements LocalLoader, BundleReference
       return null;
    }
 
-   private String findMatchingDynamicImportPattern(String className)
+   private boolean matchesDynamicImportPattern(String className)
    {
-      AbstractRevision bundleRev = moduleManager.getBundleRevision(id);
-      XModule resModule = bundleRev.getResolverModule();
-      List<XPackageRequirement> dynamicRequirements = resModule.getDynamicPackageRequirements();
-      if (dynamicRequirements.isEmpty())
-         return null;
-
-      String foundMatch = null;
-
-      for (XPackageRequirement dynreq : dynamicRequirements)
+      DynamicImportMatcher matcher = dynamicImportMatcher;
+      if (matcher == null)
       {
-         String pattern = dynreq.getName();
-         if (pattern.equals("*"))
-         {
-            foundMatch = pattern;
-            break;
-         }
-
-         if (pattern.endsWith(".*"))
-            pattern = pattern.substring(0, pattern.length() - 2);
-
-         pattern = pattern.replace('.', File.separatorChar);
-         String path = ModuleManager.getPathFromClassName(className);
-         if (path.startsWith(pattern))
-         {
-            foundMatch = pattern;
-            break;
-         }
+         AbstractRevision bundleRev = moduleManager.getBundleRevision(id);
+         XModule resModule = bundleRev.getResolverModule();
+         List<String> patterns = new ArrayList<String>();
+         for (XPackageRequirement dynreq : resModule.getDynamicPackageRequirements())
+            patterns.add(dynreq.getName());
+
+         matcher = DynamicImportMatcher.compile(patterns);
+         dynamicImportMatcher = matcher;
       }
 
+      if (matcher.isEmpty())
+         return false;
+
+      boolean foundMatch = matcher.matchesClass(className);
       if (log.isTraceEnabled())
       {
-         if (foundMatch != null)
-            log.trace("Found match for class [" + className + "] with Dynamic-ImportPackage pattern: " + foundMatch);
+         if (foundMatch)
+            log.trace("Found match for class [" + className + "] with Dynamic-ImportPackage patterns");
          else
             log.trace("Class [" + className + "] does not match Dynamic-ImportPackage patterns");
       }
@@ -184,19 +247,32 @@ public class ModuleClassLoaderExt implements LocalLoader, BundleReference
       return foundMatch;
    }
 
+   private static String getPackageName(String className)
+   {
+      int index = className.lastIndexOf('.');
+      return index > 0 ? className.substring(0, index) : null;
+   }
+
    private Class<?> findInResolvedModules(String className)
    {
       boolean traceEnabled = log.isTraceEnabled();
       if (traceEnabled)
          log.trace("Attempt to find class dynamically in resolved modules ...");
 
-      // Iterate over all registered modules
-      for (ModuleIdentifier aux : moduleManager.getModuleIdentifiers())
+      String packageName = getPackageName(className);
+      if (packageName == null)
+         return null;
+
+      // Iterate over the modules that export the package
+      PackageExporterIndex exporterIndex = moduleManager.getPackageExporterIndex();
+      for (ModuleIdentifier aux : exporterIndex.getExportingModules(packageName))
       {
          // Try to load the class from the candidate
          try
          {
             Module candidate = moduleManager.getModule(aux);
+            if (candidate == null)
+               continue;
 
             if (traceEnabled)
                log.trace("Attempt to find class dynamically [" + className + "] in " + candidate + " ...");
@@ -224,20 +300,31 @@ public class ModuleClassLoaderExt implements LocalLoader, BundleReference
       if (traceEnabled)
          log.trace("Attempt to find class dynamically in unresolved modules ...");
 
-      // Iteraterate over all bundles in state INSTALLED
-      for (Bundle aux : bundleManager.getBundles())
+      String packageName = getPackageName(className);
+      if (packageName == null)
+         return null;
+
+      // Iteraterate over the bundles in state INSTALLED that declare an export of the package
+      PackageExporterIndex exporterIndex = moduleManager.getPackageExporterIndex();
+      for (XModule resModule : exporterIndex.getDeclaringModules(packageName))
       {
-         if (aux.getState() != Bundle.INSTALLED)
+         AbstractRevision bundleRev = resModule.getAttachment(AbstractRevision.class);
+         if (bundleRev == null)
+            continue;
+
+         AbstractBundle bundle = bundleRev.getBundleState();
+         if (bundle.getState() != Bundle.INSTALLED)
             continue;
 
          // Attempt to resolve the bundle
-         AbstractBundle bundle = AbstractBundle.assertBundleState(aux);
          if (bundle.ensureResolved() == false)
             continue;
 
-         // Create and load the module. This should not fail for resolved bundles.
+         // Create and load the module. This should not fail for resolved host bundles.
          ModuleIdentifier identifier = ModuleManager.getModuleIdentifier(bundle.getResolverModule());
          Module candidate = moduleManager.getModule(identifier);
+         if (candidate == null)
+            continue;
 
          // Try to load the class from the now resolved module
          try
@@ -26,14 +26,23 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.jboss.modules.ClassSpec;
 import org.jboss.modules.PackageSpec;
@@ -52,9 +61,20 @@ import org.jboss.osgi.vfs.VirtualFile;
  */
 public final class VirtualFileResourceLoader implements ResourceLoader
 {
+   // Marks a resource root that does not have a manifest
+   private static final Manifest NO_MANIFEST = new Manifest();
+   // The URL protocols whose path is the path of a physical file
+   private static final Set<String> PHYSICAL_FILE_PROTOCOLS = new HashSet<String>(Arrays.asList("file", "vfs", "vfsfile", "vfszip"));
+
    private final VirtualFile virtualFile;
    private final Set<String> localPaths;
    private final PathFilter exportFilter;
+   // Maps the package name to its package spec
+   private final ConcurrentMap<String, PackageSpec> packageSpecs = new ConcurrentHashMap<String, PackageSpec>();
+   // The parsed manifest of the resource root
+   private volatile Manifest manifest;
+   // Maps the entry paths of an archive root to their size, read on first access
+   private volatile Map<String, Long> entrySizes;
 
    public VirtualFileResourceLoader(VirtualFile virtualFile)
    {
@@ -94,13 +114,46 @@ public final class VirtualFileResourceLoader implements ResourceLoader
          return null;
 
       ClassSpec spec = new ClassSpec();
-      InputStream is = child.openStream();
+      spec.setBytes(readBytes(child, getContentSize(child, fileName)));
+      return spec;
+   }
+
+   /**
+    * Read the content of the given file. If the size is known up front, the content
+    * is read into an array of the right size.
+    */
+   private static byte[] readBytes(VirtualFile file, long size) throws IOException
+   {
+      InputStream is = file.openStream();
       try
       {
-         ByteArrayOutputStream os = new ByteArrayOutputStream(1024);
+         if (size < 0 || size > Integer.MAX_VALUE)
+         {
+            ByteArrayOutputStream os = new ByteArrayOutputStream(1024);
+            VFSUtils.copyStream(is, os);
+            return os.toByteArray();
+         }
+
+         byte[] bytes = new byte[(int)size];
+         int offset = 0;
+         while (offset < bytes.length)
+         {
+            int read = is.read(bytes, offset, bytes.length - offset);
+            if (read < 0)
+               throw new IOException("Unexpected end of content: " + file);
+            offset += read;
+         }
+
+         // The size was not accurate, copy the remaining content
+         int next = is.read();
+         if (next < 0)
+            return bytes;
+
+         ByteArrayOutputStream os = new ByteArrayOutputStream(bytes.length * 2);
+         os.write(bytes);
+         os.write(next);
          VFSUtils.copyStream(is, os);
-         spec.setBytes(os.toByteArray());
-         return spec;
+         return os.toByteArray();
       }
       finally
       {
@@ -108,17 +161,122 @@ public final class VirtualFileResourceLoader implements ResourceLoader
       }
    }
 
+   /**
+    * Get the size of the given file without opening it. The file of an exploded root
+    * is backed by a physical file. The size of an entry in an archive root comes from 
+    * the entries of the archive, which are read once.
+    * @param path The path of the file relative to the root
+    * @return The size or -1 if it is unknown
+    */
+   private long getContentSize(VirtualFile file, String path) throws IOException
+   {
+      File physicalFile = getPhysicalFile(file.toURL());
+      if (physicalFile != null)
+         return physicalFile.length();
+
+      path = path.replace(File.separatorChar, '/');
+      if (path.startsWith("/"))
+         path = path.substring(1);
+
+      Long size = getEntrySizes().get(path);
+      return size != null ? size.longValue() : -1;
+   }
+
+   private Map<String, Long> getEntrySizes() throws IOException
+   {
+      Map<String, Long> result = entrySizes;
+      if (result == null)
+      {
+         result = new HashMap<String, Long>();
+         File archiveFile = getPhysicalFile(virtualFile.toURL());
+         if (archiveFile != null)
+         {
+            ZipFile zipFile = null;
+            try
+            {
+               zipFile = new ZipFile(archiveFile);
+               Enumeration<? extends ZipEntry> entries = zipFile.entries();
+               while (entries.hasMoreElements())
+               {
+                  ZipEntry entry = entries.nextElement();
+                  if (entry.isDirectory() == false && entry.getSize() >= 0)
+                     result.put(entry.getName(), Long.valueOf(entry.getSize()));
+               }
+            }
+            catch (IOException ex)
+            {
+               // not an archive, the sizes are unknown
+            }
+            finally
+            {
+               if (zipFile != null)
+               {
+                  try
+                  {
+                     zipFile.close();
+                  }
+                  catch (IOException ex)
+                  {
+                     // ignore
+                  }
+               }
+            }
+         }
+         entrySizes = result;
+      }
+      return result;
+   }
+
+   /**
+    * Get the physical file of a file: URL or of a VFS URL to an exploded file.
+    * The VFS URL of an entry in a mounted archive does not denote an existing file.
+    */
+   private static File getPhysicalFile(URL url)
+   {
+      String protocol = url.getProtocol();
+      if (PHYSICAL_FILE_PROTOCOLS.contains(protocol) == false)
+         return null;
+
+      try
+      {
+         // The path of the URL is already encoded
+         File result = new File(new URI("file:" + url.getPath()));
+         return result.isFile() ? result : null;
+      }
+      catch (URISyntaxException ex)
+      {
+         return null;
+      }
+      catch (IllegalArgumentException ex)
+      {
+         return null;
+      }
+   }
+
    @Override
    public PackageSpec getPackageSpec(String name) throws IOException
+   {
+      PackageSpec spec = packageSpecs.get(name);
+      if (spec == null)
+      {
+         spec = createPackageSpec(name);
+         PackageSpec previous = packageSpecs.putIfAbsent(name, spec);
+         if (previous != null)
+            spec = previous;
+      }
+      return spec;
+   }
+
+   private PackageSpec createPackageSpec(String name) throws IOException
    {
       PackageSpec spec = new PackageSpec();
-      Manifest manifest = VFSUtils.getManifest(virtualFile);
+      Manifest manifest = getManifest();
       if (manifest == null)
       {
          return spec;
       }
-      Attributes mainAttribute = manifest.getAttributes(name);
-      Attributes entryAttribute = manifest.getAttributes(name);
+      Attributes mainAttribute = manifest.getMainAttributes();
+      Attributes entryAttribute = manifest.getAttributes(name.replace('.', '/') + "/");
       spec.setSpecTitle(getDefinedAttribute(Attributes.Name.SPECIFICATION_TITLE, entryAttribute, mainAttribute));
       spec.setSpecVersion(getDefinedAttribute(Attributes.Name.SPECIFICATION_VERSION, entryAttribute, mainAttribute));
       spec.setSpecVendor(getDefinedAttribute(Attributes.Name.SPECIFICATION_VENDOR, entryAttribute, mainAttribute));
@@ -132,6 +290,21 @@ public final class VirtualFileResourceLoader implements ResourceLoader
       return spec;
    }
 
+   /**
+    * Get the manifest of the resource root, which is parsed on first access.
+    * @return The manifest or null if the root does not have one
+    */
+   private Manifest getManifest() throws IOException
+   {
+      Manifest result = manifest;
+      if (result == null)
+      {
+         result = VFSUtils.getManifest(virtualFile);
+         manifest = (result != null ? result : NO_MANIFEST);
+      }
+      return result != NO_MANIFEST ? result : null;
+   }
+
    private static String getDefinedAttribute(Attributes.Name name, Attributes entryAttribute, Attributes mainAttribute)
    {
       final String value = entryAttribute == null ? null : entryAttribute.getValue(name);
@@ -147,7 +320,7 @@ public final class VirtualFileResourceLoader implements ResourceLoader
          if (child == null)
             return null;
 
-         return new VirtualResource(child);
+         return new VirtualResource(child, name);
       }
       catch (IOException ex)
       {
@@ -192,7 +365,7 @@ public final class VirtualFileResourceLoader implements ResourceLoader
       return Collections.unmodifiableSet(result);
    }
 
-   private void safeClose(final Closeable closeable)
+   private static void safeClose(final Closeable closeable)
    {
       if (closeable != null)
       {
@@ -207,15 +380,20 @@ public final class VirtualFileResourceLoader implements ResourceLoader
       }
    }
 
-   static class VirtualResource implements Resource
+   class VirtualResource implements Resource
    {
       VirtualFile child;
+      // The path of the child relative to the root
+      private final String path;
+      // The content size, obtained on first access
+      private volatile long size = -1;
 
-      VirtualResource(VirtualFile child)
+      VirtualResource(VirtualFile child, String path)
       {
          if (child == null)
             throw new IllegalArgumentException("Null child");
          this.child = child;
+         this.path = path;
       }
 
       @Override
@@ -246,7 +424,18 @@ public final class VirtualFileResourceLoader implements ResourceLoader
       @Override
       public long getSize()
       {
-         return 0;
+         if (size < 0)
+         {
+            try
+            {
+               size = Math.max(0, getContentSize(child, path));
+            }
+            catch (IOException ex)
+            {
+               size = 0;
+            }
+         }
+         return size;
       }
    }
 }
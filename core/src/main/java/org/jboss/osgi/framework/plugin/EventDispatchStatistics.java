@@ -0,0 +1,147 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.osgi.framework.plugin;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The event dispatch statistics of a listener or a bundle.
+ *
+ * The dispatch times are counted in a histogram with the upper bounds 
+ * 0.1ms, 1ms, 10ms, 100ms, 1s and a last bucket for everything above.
+ *
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+public final class EventDispatchStatistics
+{
+   // The upper bounds of the histogram buckets in nanoseconds
+   private static final long[] BUCKET_BOUNDS = new long[] { 100000L, 1000000L, 10000000L, 100000000L, 1000000000L };
+
+   private final String name;
+   private final AtomicLong eventCount = new AtomicLong();
+   private final AtomicLong totalTime = new AtomicLong();
+   private final AtomicLong maxTime = new AtomicLong();
+   private final AtomicLong slowCount = new AtomicLong();
+   private final AtomicLongArray histogram = new AtomicLongArray(BUCKET_BOUNDS.length + 1);
+
+   public EventDispatchStatistics(String name)
+   {
+      if (name == null)
+         throw new IllegalArgumentException("Null name");
+      this.name = name;
+   }
+
+   /**
+    * Record a single dispatch.
+    * @param nanos The dispatch time in nanoseconds
+    * @param slowThreshold The threshold in nanoseconds above which the dispatch is slow 
+    * @return true if this was the first slow dispatch
+    */
+   public boolean record(long nanos, long slowThreshold)
+   {
+      eventCount.incrementAndGet();
+      totalTime.addAndGet(nanos);
+
+      long max = maxTime.get();
+      while (nanos > max && maxTime.compareAndSet(max, nanos) == false)
+         max = maxTime.get();
+
+      int bucket = 0;
+      while (bucket < BUCKET_BOUNDS.length && nanos > BUCKET_BOUNDS[bucket])
+         bucket++;
+      histogram.incrementAndGet(bucket);
+
+      return nanos > slowThreshold && slowCount.incrementAndGet() == 1;
+   }
+
+   /**
+    * Discard the recorded dispatches.
+    */
+   public void reset()
+   {
+      eventCount.set(0);
+      totalTime.set(0);
+      maxTime.set(0);
+      slowCount.set(0);
+      for (int i = 0; i < histogram.length(); i++)
+         histogram.set(i, 0);
+   }
+
+   public String getName()
+   {
+      return name;
+   }
+
+   public long getEventCount()
+   {
+      return eventCount.get();
+   }
+
+   /**
+    * The total dispatch time in microseconds.
+    */
+   public long getTotalTime()
+   {
+      return totalTime.get() / 1000;
+   }
+
+   /**
+    * The maximum dispatch time in microseconds.
+    */
+   public long getMaxTime()
+   {
+      return maxTime.get() / 1000;
+   }
+
+   /**
+    * The average dispatch time in microseconds.
+    */
+   public long getAverageTime()
+   {
+      long count = eventCount.get();
+      return count > 0 ? totalTime.get() / count / 1000 : 0;
+   }
+
+   /**
+    * The number of dispatches that exceeded the slow listener threshold.
+    */
+   public long getSlowCount()
+   {
+      return slowCount.get();
+   }
+
+   public long[] getHistogram()
+   {
+      long[] result = new long[histogram.length()];
+      for (int i = 0; i < result.length; i++)
+         result[i] = histogram.get(i);
+      return result;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "EventDispatchStatistics[" + name + ",count=" + getEventCount() + ",avg=" + getAverageTime() + "us,max=" + getMaxTime() + "us]";
+   }
+}
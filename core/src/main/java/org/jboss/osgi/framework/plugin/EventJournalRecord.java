@@ -0,0 +1,134 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.osgi.framework.plugin;
+
+import org.jboss.osgi.spi.util.ConstantsHelper;
+
+/**
+ * A record in the event journal of the {@link FrameworkEventsPlugin}.
+ *
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+public final class EventJournalRecord
+{
+   /** The kind of event */
+   public enum Category
+   {
+      BUNDLE, FRAMEWORK, SERVICE
+   }
+
+   private final long sequence;
+   private final Category category;
+   private final int type;
+   private final long bundleId;
+   private final long timestamp;
+   private final String threadName;
+   private final long duration;
+
+   public EventJournalRecord(long sequence, Category category, int type, long bundleId, long timestamp, String threadName, long duration)
+   {
+      if (category == null)
+         throw new IllegalArgumentException("Null category");
+      this.sequence = sequence;
+      this.category = category;
+      this.type = type;
+      this.bundleId = bundleId;
+      this.timestamp = timestamp;
+      this.threadName = threadName;
+      this.duration = duration;
+   }
+
+   /**
+    * The number of events that were recorded before this one.
+    */
+   public long getSequence()
+   {
+      return sequence;
+   }
+
+   public Category getCategory()
+   {
+      return category;
+   }
+
+   /**
+    * The event type constant of the {@link org.osgi.framework.BundleEvent}, {@link org.osgi.framework.FrameworkEvent} 
+    * or {@link org.osgi.framework.ServiceEvent}.
+    */
+   public int getType()
+   {
+      return type;
+   }
+
+   public String getTypeName()
+   {
+      switch (category)
+      {
+         case BUNDLE:
+            return ConstantsHelper.bundleEvent(type);
+         case FRAMEWORK:
+            return ConstantsHelper.frameworkEvent(type);
+         default:
+            return ConstantsHelper.serviceEvent(type);
+      }
+   }
+
+   /**
+    * The id of the bundle that is the source of the event, or the owner of the service.
+    * This is -1 for an event without a bundle.
+    */
+   public long getBundleId()
+   {
+      return bundleId;
+   }
+
+   /**
+    * The time the event was fired in milliseconds since the epoch.
+    */
+   public long getTimestamp()
+   {
+      return timestamp;
+   }
+
+   /**
+    * The name of the thread that fired the event.
+    */
+   public String getThreadName()
+   {
+      return threadName;
+   }
+
+   /**
+    * The time in microseconds that firing the event took, which includes calling the synchronous listeners.
+    */
+   public long getDuration()
+   {
+      return duration;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "#" + sequence + " " + category + " " + getTypeName() + " bundle=" + bundleId + " time=" + timestamp + " thread=" + threadName + " duration=" + duration + "us";
+   }
+}
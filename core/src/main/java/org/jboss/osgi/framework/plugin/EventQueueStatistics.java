@@ -0,0 +1,122 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.osgi.framework.plugin;
+
+/**
+ * A snapshot of the metrics of the asynchronous event queue of a listener.
+ *
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+public final class EventQueueStatistics
+{
+   private final String name;
+   private final int depth;
+   private final int maxDepth;
+   private final long deliveredCount;
+   private final long droppedCount;
+   private final long coalescedCount;
+   private final long lastLag;
+   private final long maxLag;
+
+   public EventQueueStatistics(String name, int depth, int maxDepth, long deliveredCount, long droppedCount, long coalescedCount, long lastLag, long maxLag)
+   {
+      if (name == null)
+         throw new IllegalArgumentException("Null name");
+
+      this.name = name;
+      this.depth = depth;
+      this.maxDepth = maxDepth;
+      this.deliveredCount = deliveredCount;
+      this.droppedCount = droppedCount;
+      this.coalescedCount = coalescedCount;
+      this.lastLag = lastLag;
+      this.maxLag = maxLag;
+   }
+
+   /**
+    * The listener and the bundle that added it.
+    */
+   public String getName()
+   {
+      return name;
+   }
+
+   /**
+    * The number of pending events.
+    */
+   public int getDepth()
+   {
+      return depth;
+   }
+
+   /**
+    * The maximum number of pending events.
+    */
+   public int getMaxDepth()
+   {
+      return maxDepth;
+   }
+
+   public long getDeliveredCount()
+   {
+      return deliveredCount;
+   }
+
+   /**
+    * The number of events that were dropped because the queue was full.
+    */
+   public long getDroppedCount()
+   {
+      return droppedCount;
+   }
+
+   /**
+    * The number of pending events that were replaced by a later event.
+    */
+   public long getCoalescedCount()
+   {
+      return coalescedCount;
+   }
+
+   /**
+    * The time in milliseconds that the last delivered event was pending.
+    */
+   public long getLastLag()
+   {
+      return lastLag;
+   }
+
+   /**
+    * The maximum time in milliseconds that a delivered event was pending.
+    */
+   public long getMaxLag()
+   {
+      return maxLag;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "EventQueueStatistics[" + name + ",depth=" + depth + ",dropped=" + droppedCount + ",lag=" + lastLag + "ms]";
+   }
+}
@@ -22,6 +22,7 @@
 package org.jboss.osgi.framework.plugin;
 
 import java.util.Collection;
+import java.util.List;
 
 import org.jboss.osgi.framework.bundle.ServiceState;
 import org.osgi.framework.Bundle;
@@ -39,6 +40,17 @@ import org.osgi.framework.hooks.service.ListenerHook.ListenerInfo;
  */
 public interface FrameworkEventsPlugin extends Plugin
 {
+   /** The maximum number of pending asynchronous events per listener */
+   String PROP_JBOSS_OSGI_EVENTS_QUEUE_CAPACITY = "org.jboss.osgi.events.queue.capacity";
+   /** What happens when a listener's event queue is full: block (the default), drop-oldest or coalesce */
+   String PROP_JBOSS_OSGI_EVENTS_OVERFLOW = "org.jboss.osgi.events.overflow";
+   /** The time in milliseconds above which a listener that processes an event is logged as slow */
+   String PROP_JBOSS_OSGI_EVENTS_SLOW_THRESHOLD = "org.jboss.osgi.events.slow.threshold";
+   /** The number of recent events that are kept in the event journal, 0 disables the journal */
+   String PROP_JBOSS_OSGI_EVENTS_JOURNAL_SIZE = "org.jboss.osgi.events.journal.size";
+   /** If true, the event journal is logged when a FrameworkEvent.ERROR is fired */
+   String PROP_JBOSS_OSGI_EVENTS_JOURNAL_DUMP = "org.jboss.osgi.events.journal.dump";
+
    boolean isActive();
    
    void setActive(boolean active);
@@ -65,7 +77,32 @@ public interface FrameworkEventsPlugin extends Plugin
    
    void fireBundleEvent(Bundle bundle, int type);
 
+   /**
+    * Begin a batch in the current thread, which collects the asynchronous bundle events. 
+    * Synchronous bundle listeners are still called immediately. Batches can be nested.
+    */
+   void beginBundleEventBatch();
+
+   /**
+    * End the batch that was begun in the current thread. When the outermost batch ends, the collected 
+    * events are delivered to every asynchronous bundle listener as one ordered batch.
+    */
+   void endBundleEventBatch();
+
    void fireFrameworkEvent(Bundle bundle, int type, Throwable throwable);
 
    void fireServiceEvent(Bundle bundle, int type, ServiceState service);
+
+   /**
+    * Get the statistics of the time that listeners take to process an event. 
+    * The statistics are also registered with the platform MBeanServer.
+    */
+   FrameworkEventsStatisticsMXBean getStatistics();
+
+   /**
+    * Get the most recent events from the event journal, oldest first.
+    * @param bundle The bundle whose events are returned, or null for all events
+    * @return The records or an empty list if the journal is disabled
+    */
+   List<EventJournalRecord> getEventJournal(Bundle bundle);
 }
\ No newline at end of file
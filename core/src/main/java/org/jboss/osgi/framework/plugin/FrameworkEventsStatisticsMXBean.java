@@ -0,0 +1,71 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.osgi.framework.plugin;
+
+import java.util.List;
+
+/**
+ * The management interface of the event dispatch statistics.
+ *
+ * The time that bundle, framework and service listeners take to process an event is measured
+ * per listener and per bundle that registered the listener.
+ *
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+public interface FrameworkEventsStatisticsMXBean
+{
+   /** The object name under which the statistics are registered with the platform MBeanServer */
+   String OBJECT_NAME = "jboss.osgi:service=FrameworkEventsStatistics";
+
+   /**
+    * The dispatch time in milliseconds above which a listener is considered slow.
+    */
+   long getSlowListenerThreshold();
+
+   void setSlowListenerThreshold(long millis);
+
+   /**
+    * Get the statistics of every listener that received an event.
+    */
+   List<EventDispatchStatistics> getListenerStatistics();
+
+   /**
+    * Get the statistics of every bundle whose listeners received an event.
+    */
+   List<EventDispatchStatistics> getBundleStatistics();
+
+   /**
+    * Get the statistics of the listeners that exceeded the slow listener threshold.
+    */
+   List<EventDispatchStatistics> getSlowListeners();
+
+   /**
+    * Get the metrics of the asynchronous event queue of every listener that received an event.
+    */
+   List<EventQueueStatistics> getQueueStatistics();
+
+   /**
+    * Discard all statistics.
+    */
+   void resetStatistics();
+}
@@ -0,0 +1,72 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.osgi.framework.plugin;
+
+import java.util.concurrent.Executor;
+
+/**
+ * A plugin that runs the framework internal asynchronous work.
+ * 
+ * Depending on {@link #PROP_JBOSS_OSGI_EXECUTOR_MODE} the tasks run on a pool of platform threads
+ * or on a new virtual thread per task. The executor is shut down when the framework stops.
+ * 
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+public interface FrameworkExecutorPlugin extends Plugin
+{
+   /** The executor mode: pool (default) or virtual */
+   String PROP_JBOSS_OSGI_EXECUTOR_MODE = "org.jboss.osgi.executor.mode";
+   /** The number of platform threads in pool mode */
+   String PROP_JBOSS_OSGI_EXECUTOR_THREADS = "org.jboss.osgi.executor.threads";
+   /** The maximum number of tasks that wait for a thread in pool mode */
+   String PROP_JBOSS_OSGI_EXECUTOR_QUEUE_CAPACITY = "org.jboss.osgi.executor.queue.capacity";
+
+   /**
+    * Get the executor that runs tasks concurrently.
+    * A task that does not fit into the queue runs on the thread of the caller.
+    * The executor throws a RejectedExecutionException if the framework was stopped.
+    */
+   Executor getExecutor();
+
+   /**
+    * Create an executor that runs the tasks one at a time in the order they were submitted.
+    * The tasks are run by the shared framework executor.
+    * @param name The name used in log messages
+    */
+   Executor createSerialExecutor(String name);
+
+   /**
+    * The number of tasks that were submitted since the framework was created.
+    */
+   long getSubmittedTaskCount();
+
+   /**
+    * The number of tasks that have completed since the framework was created.
+    */
+   long getCompletedTaskCount();
+
+   /**
+    * The number of tasks that are currently running.
+    */
+   int getActiveTaskCount();
+}
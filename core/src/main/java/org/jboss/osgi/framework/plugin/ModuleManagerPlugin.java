@@ -30,6 +30,7 @@ import org.jboss.modules.ModuleSpec;
 import org.jboss.osgi.framework.bundle.AbstractBundle;
 import org.jboss.osgi.framework.bundle.AbstractRevision;
 import org.jboss.osgi.framework.bundle.ModuleManager;
+import org.jboss.osgi.framework.bundle.PackageExporterIndex;
 import org.jboss.osgi.resolver.XModule;
 
 /**
@@ -45,6 +46,11 @@ public interface ModuleManagerPlugin extends Plugin
     */
    Set<ModuleIdentifier> getModuleIdentifiers();
 
+   /**
+    * Get the index of the modules that export a package
+    */
+   PackageExporterIndex getPackageExporterIndex();
+
    /**
     * Create the module with the {@link ModuleManager}
     * @return The module identifier
@@ -26,7 +26,9 @@ import java.util.List;
 import java.util.Set;
 
 import org.jboss.msc.service.ServiceContainer;
+import org.jboss.msc.service.ServiceName;
 import org.jboss.osgi.framework.bundle.AbstractBundle;
+import org.jboss.osgi.framework.bundle.AbstractRevision;
 import org.jboss.osgi.framework.bundle.ServiceState;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.InvalidSyntaxException;
@@ -40,6 +42,11 @@ import org.osgi.framework.ServiceReference;
  */
 public interface ServiceManagerPlugin extends Plugin
 {
+   /** The comma separated list of service property keys that are indexed for filter lookups */
+   String PROP_JBOSS_OSGI_SERVICE_INDEX_KEYS = "org.jboss.osgi.service.index.keys";
+   /** If true, OSGi services are only installed in the MSC service container when they get exported */
+   String PROP_JBOSS_OSGI_SERVICE_LIGHTWEIGHT = "org.jboss.osgi.service.lightweight";
+
    /**
     * Get the next service is from the manager 
     */
@@ -64,6 +71,42 @@ public interface ServiceManagerPlugin extends Plugin
    @SuppressWarnings("rawtypes")
    ServiceState registerService(AbstractBundle bundleState, String[] clazzes, Object service, Dictionary properties);
 
+   /**
+    * Registers the given service objects in a single batch. All service states are created before anything gets 
+    * registered, so that an invalid service registers none of them. The REGISTERED events are delivered 
+    * in the given order after all services have been added to the registry.
+    * 
+    * @param clazzes The class names per service
+    * @param services The service objects or <code>ServiceFactory</code> objects.
+    * @param properties The properties per service, which may be null. 
+    * @return The service states in the given order 
+    */
+   @SuppressWarnings("rawtypes")
+   List<ServiceState> registerServices(AbstractBundle bundleState, String[][] clazzes, Object[] services, Dictionary[] properties);
+
+   /**
+    * Exports the given service to the MSC service container, so that MSC services can depend on it.
+    * In lightweight mode this installs the MSC service on first use, otherwise the service was installed
+    * at registration time already. 
+    * 
+    * A bridged xservice is never exported again.
+    * 
+    * @return The root MSC service name of the given service, or null if the service is a bridged xservice
+    */
+   ServiceName exportService(ServiceState serviceState);
+
+   /**
+    * Bridges the xservice with the given name into the OSGi service registry. 
+    * The xservice is registered under the given class name while its MSC service is up.
+    * It is owned by the bundle that defines the class of the service value.
+    * An xservice that is not installed yet is discovered on a later lookup by class name.
+    * A lookup asks the MSC container only once per class name, until this method is called again.
+    * 
+    * @param serviceName The MSC service name of the xservice
+    * @param className The class name under which the service can be located.
+    */
+   void registerXService(ServiceName serviceName, String className);
+
    /**
     * Returns a <code>ServiceReference</code> object for a service that
     * implements and was registered under the specified class.
@@ -139,6 +182,26 @@ public interface ServiceManagerPlugin extends Plugin
     */
    Set<AbstractBundle> getUsingBundles(ServiceState serviceState);
 
+   /**
+    * Get the registered service hooks of the given type in the order in which they must be called.
+    * That is, the hook service with the highest ranking number comes first.
+    * 
+    * @param hookType The FindHook, EventHook or ListenerHook type
+    * @return An unmodifiable, potentially empty list of hook instances
+    */
+   <T> List<T> getServiceHooks(Class<T> hookType);
+
+   /**
+    * Clear the cached {@link ServiceReference#isAssignableTo(Bundle, String)} results 
+    * that involve the given revision, because it was refreshed or uninstalled. 
+    */
+   void clearAssignableCache(AbstractRevision revision);
+
+   /**
+    * Notify the manager that the properties of the given service have been modified. 
+    */
+   void updateService(ServiceState reference);
+
    /**
     * Unregister the given service. 
     */
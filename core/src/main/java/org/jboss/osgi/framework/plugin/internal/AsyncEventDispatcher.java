@@ -0,0 +1,391 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.osgi.framework.plugin.internal;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.jboss.logging.Logger;
+import org.jboss.osgi.framework.plugin.EventJournalRecord.Category;
+import org.jboss.osgi.framework.plugin.EventQueueStatistics;
+import org.osgi.framework.Bundle;
+
+/**
+ * Delivers asynchronous events with one serial, bounded queue per listener, kind of listener and the bundle that added it.
+ *
+ * The queues share the threads of the framework executor. A listener receives the events of one kind in the order in 
+ * which they were dispatched and never concurrently. When a queue is full, the {@link OverflowPolicy} decides whether 
+ * the dispatching thread waits, the oldest pending event is dropped or a pending event with the same coalesce key
+ * is replaced. A delivery thread never waits for a queue. When it dispatches to a full queue that cannot drop an 
+ * event, the queue grows beyond its capacity.
+ *
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+final class AsyncEventDispatcher
+{
+   // Provide logging
+   private static final Logger log = Logger.getLogger(AsyncEventDispatcher.class);
+
+   // The maximum number of events a queue delivers before it yields its thread
+   private static final int MAX_BATCH_SIZE = 64;
+
+   // True while the current thread delivers events
+   private static final ThreadLocal<Boolean> delivering = new ThreadLocal<Boolean>();
+
+   /**
+    * What happens when an event is dispatched to a full queue.
+    */
+   enum OverflowPolicy
+   {
+      /** The dispatching thread waits until the queue has space */
+      BLOCK,
+      /** The oldest pending event is dropped */
+      DROP_OLDEST,
+      /** 
+       * A pending event with the same coalesce key is replaced, otherwise the oldest pending event that has a coalesce key 
+       * is dropped. Events without a coalesce key are never dropped, if there is no other event the dispatching thread waits.
+       */
+      COALESCE;
+
+      static OverflowPolicy parse(String value)
+      {
+         if (value == null)
+            return BLOCK;
+
+         return valueOf(value.trim().toUpperCase().replace('-', '_'));
+      }
+   }
+
+   private final Executor executor;
+   private final int capacity;
+   private final OverflowPolicy overflowPolicy;
+   // Maps the bundle, listener and kind to its queue
+   private final ConcurrentMap<ListenerKey, ListenerQueue> queues = new ConcurrentHashMap<ListenerKey, ListenerQueue>();
+
+   AsyncEventDispatcher(Executor executor, int capacity, OverflowPolicy overflowPolicy)
+   {
+      if (executor == null)
+         throw new IllegalArgumentException("Null executor");
+      if (capacity < 1)
+         throw new IllegalArgumentException("Invalid capacity: " + capacity);
+      if (overflowPolicy == null)
+         throw new IllegalArgumentException("Null overflowPolicy");
+
+      this.executor = executor;
+      this.capacity = capacity;
+      this.overflowPolicy = overflowPolicy;
+   }
+
+   /**
+    * Queue the given task for delivery to the given listener.
+    * @param bundle The bundle that added the listener 
+    * @param kind The kind of listener that receives the event 
+    * @param coalesceKey Identifies the pending events that this event supersedes, or null if the event must not be coalesced 
+    */
+   void dispatch(Bundle bundle, Object listener, Category kind, Object coalesceKey, Runnable task)
+   {
+      ListenerKey key = new ListenerKey(bundle, listener, kind);
+      ListenerQueue queue = queues.get(key);
+      if (queue == null)
+      {
+         queue = new ListenerQueue(key);
+         ListenerQueue otherQueue = queues.putIfAbsent(key, queue);
+         if (otherQueue != null)
+            queue = otherQueue;
+      }
+      queue.offer(new QueuedEvent(coalesceKey, task));
+   }
+
+   /**
+    * Remove the queue of the given kind of listener that was added by the given bundle. Pending events are discarded.
+    */
+   void removeListener(Bundle bundle, Object listener, Category kind)
+   {
+      ListenerQueue queue = queues.remove(new ListenerKey(bundle, listener, kind));
+      if (queue != null)
+         queue.close();
+   }
+
+   /**
+    * Get the metrics of the queues of all listeners that had events dispatched to them.
+    */
+   List<EventQueueStatistics> getQueueStatistics()
+   {
+      List<EventQueueStatistics> result = new ArrayList<EventQueueStatistics>();
+      for (ListenerQueue queue : queues.values())
+         result.add(queue.getStatistics());
+      return result;
+   }
+
+   /**
+    * Identifies a kind of listener together with the bundle that added it.
+    */
+   static class ListenerKey
+   {
+      private final Bundle bundle;
+      private final Object listener;
+      private final Category kind;
+
+      ListenerKey(Bundle bundle, Object listener, Category kind)
+      {
+         if (bundle == null)
+            throw new IllegalArgumentException("Null bundle");
+         if (listener == null)
+            throw new IllegalArgumentException("Null listener");
+         if (kind == null)
+            throw new IllegalArgumentException("Null kind");
+
+         this.bundle = bundle;
+         this.listener = listener;
+         this.kind = kind;
+      }
+
+      @Override
+      public int hashCode()
+      {
+         return 31 * (31 * bundle.hashCode() + listener.hashCode()) + kind.hashCode();
+      }
+
+      @Override
+      public boolean equals(Object obj)
+      {
+         if (obj instanceof ListenerKey == false)
+            return false;
+
+         ListenerKey other = (ListenerKey)obj;
+         return bundle.equals(other.bundle) && listener.equals(other.listener) && kind == other.kind;
+      }
+
+      @Override
+      public String toString()
+      {
+         return listener + " in " + bundle + " for " + kind;
+      }
+   }
+
+   static class QueuedEvent
+   {
+      private final Object coalesceKey;
+      private final Runnable task;
+      private final long timestamp;
+
+      QueuedEvent(Object coalesceKey, Runnable task)
+      {
+         this.coalesceKey = coalesceKey;
+         this.task = task;
+         this.timestamp = System.currentTimeMillis();
+      }
+   }
+
+   /**
+    * The serial event queue of a single listener.
+    */
+   final class ListenerQueue implements Runnable
+   {
+      private final ListenerKey key;
+      private final LinkedList<QueuedEvent> events = new LinkedList<QueuedEvent>();
+      private boolean scheduled;
+      private boolean closed;
+
+      // The queue metrics
+      private int maxDepth;
+      private long deliveredCount;
+      private long droppedCount;
+      private long coalescedCount;
+      private long lastLag;
+      private long maxLag;
+
+      ListenerQueue(ListenerKey key)
+      {
+         this.key = key;
+      }
+
+      synchronized EventQueueStatistics getStatistics()
+      {
+         return new EventQueueStatistics(key.toString(), events.size(), maxDepth, deliveredCount, droppedCount, coalescedCount, lastLag, maxLag);
+      }
+
+      void offer(QueuedEvent event)
+      {
+         synchronized (this)
+         {
+            if (closed == true)
+               return;
+
+            while (events.size() >= capacity)
+            {
+               if (overflowPolicy == OverflowPolicy.COALESCE && removePending(event.coalesceKey))
+               {
+                  coalescedCount++;
+               }
+               else if (overflowPolicy == OverflowPolicy.COALESCE && removeOldestCoalescable())
+               {
+                  droppedCount++;
+               }
+               else if (overflowPolicy == OverflowPolicy.DROP_OLDEST)
+               {
+                  events.removeFirst();
+                  droppedCount++;
+               }
+               else if (delivering.get() == null)
+               {
+                  try
+                  {
+                     wait();
+                  }
+                  catch (InterruptedException ex)
+                  {
+                     Thread.currentThread().interrupt();
+                     droppedCount++;
+                     return;
+                  }
+                  if (closed == true)
+                     return;
+               }
+               else
+               {
+                  // A delivery thread must not wait for a queue, which may be its own
+                  break;
+               }
+            }
+
+            events.addLast(event);
+            maxDepth = Math.max(maxDepth, events.size());
+            if (scheduled == true)
+               return;
+
+            scheduled = true;
+         }
+         schedule();
+      }
+
+      private boolean removePending(Object coalesceKey)
+      {
+         if (coalesceKey == null)
+            return false;
+
+         Iterator<QueuedEvent> it = events.iterator();
+         while (it.hasNext())
+         {
+            if (coalesceKey.equals(it.next().coalesceKey))
+            {
+               it.remove();
+               return true;
+            }
+         }
+         return false;
+      }
+
+      private boolean removeOldestCoalescable()
+      {
+         Iterator<QueuedEvent> it = events.iterator();
+         while (it.hasNext())
+         {
+            if (it.next().coalesceKey != null)
+            {
+               it.remove();
+               return true;
+            }
+         }
+         return false;
+      }
+
+      private void schedule()
+      {
+         try
+         {
+            executor.execute(this);
+         }
+         catch (RejectedExecutionException ex)
+         {
+            log.warn("Cannot deliver events to: " + key, ex);
+            synchronized (this)
+            {
+               scheduled = false;
+            }
+         }
+      }
+
+      synchronized void close()
+      {
+         closed = true;
+         events.clear();
+         notifyAll();
+      }
+
+      @Override
+      public void run()
+      {
+         delivering.set(Boolean.TRUE);
+         try
+         {
+            for (int i = 0; i < MAX_BATCH_SIZE; i++)
+            {
+               QueuedEvent event;
+               synchronized (this)
+               {
+                  if (events.isEmpty())
+                  {
+                     scheduled = false;
+                     return;
+                  }
+
+                  event = events.removeFirst();
+                  lastLag = System.currentTimeMillis() - event.timestamp;
+                  maxLag = Math.max(maxLag, lastLag);
+                  deliveredCount++;
+                  notifyAll();
+               }
+
+               try
+               {
+                  event.task.run();
+               }
+               catch (Throwable th)
+               {
+                  log.warn("Error while delivering event to: " + key, th);
+               }
+            }
+         }
+         finally
+         {
+            delivering.remove();
+         }
+
+         // Yield the thread to the other queues
+         schedule();
+      }
+
+      @Override
+      public String toString()
+      {
+         return "ListenerQueue[" + key + "]";
+      }
+   }
+}
@@ -34,6 +34,7 @@ import org.jboss.osgi.framework.bundle.BundleManager;
 import org.jboss.osgi.framework.bundle.FrameworkState;
 import org.jboss.osgi.framework.plugin.AbstractPlugin;
 import org.jboss.osgi.framework.plugin.AutoInstallPlugin;
+import org.jboss.osgi.framework.plugin.FrameworkEventsPlugin;
 import org.jboss.osgi.spi.util.StringPropertyReplacer;
 import org.jboss.osgi.spi.util.StringPropertyReplacer.PropertyProvider;
 import org.osgi.framework.Bundle;
@@ -102,6 +103,9 @@ public class AutoInstallPluginImpl extends AbstractPlugin implements AutoInstall
    @Override
    public void startPlugin()
    {
+      // Deliver the bundle events of the auto install bundles in one batch
+      FrameworkEventsPlugin eventsPlugin = getPlugin(FrameworkEventsPlugin.class);
+      eventsPlugin.beginBundleEventBatch();
       try
       {
          installBundles();
@@ -111,6 +115,10 @@ public class AutoInstallPluginImpl extends AbstractPlugin implements AutoInstall
       {
          throw new IllegalStateException("Cannot start auto install bundles", ex);
       }
+      finally
+      {
+         eventsPlugin.endBundleEventBatch();
+      }
    }
 
    @Override
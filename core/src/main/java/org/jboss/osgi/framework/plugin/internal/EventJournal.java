@@ -0,0 +1,92 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.osgi.framework.plugin.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.jboss.osgi.framework.plugin.EventJournalRecord;
+import org.jboss.osgi.framework.plugin.EventJournalRecord.Category;
+
+/**
+ * A fixed size ring buffer of the most recent events.
+ *
+ * Recording an event does not lock. A writer claims the next sequence number and 
+ * writes its record to the slot of that sequence. A reader skips the slots that were 
+ * not yet written or that were already overwritten by a newer event.
+ *
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+final class EventJournal
+{
+   private final int capacity;
+   // The slots of the ring buffer
+   private final AtomicReferenceArray<EventJournalRecord> slots;
+   // The number of events that were recorded
+   private final AtomicLong sequence = new AtomicLong();
+
+   EventJournal(int capacity)
+   {
+      if (capacity < 1)
+         throw new IllegalArgumentException("Invalid capacity: " + capacity);
+
+      this.capacity = capacity;
+      slots = new AtomicReferenceArray<EventJournalRecord>(capacity);
+   }
+
+   /**
+    * Record an event fired by the current thread.
+    * @param bundleId The id of the bundle that is the source of the event, or -1 if there is none
+    * @param duration The time in nanoseconds that firing the event took
+    */
+   void record(Category category, int type, long bundleId, long duration)
+   {
+      long seq = sequence.getAndIncrement();
+      String threadName = Thread.currentThread().getName();
+      EventJournalRecord record = new EventJournalRecord(seq, category, type, bundleId, System.currentTimeMillis(), threadName, duration / 1000);
+      slots.set((int)(seq % capacity), record);
+   }
+
+   /**
+    * Get the recorded events, oldest first.
+    * @param bundleId The id of the bundle whose events are returned, or null for all events
+    */
+   List<EventJournalRecord> getRecords(Long bundleId)
+   {
+      List<EventJournalRecord> result = new ArrayList<EventJournalRecord>();
+      long last = sequence.get();
+      long first = Math.max(0, last - capacity);
+      for (long seq = first; seq < last; seq++)
+      {
+         EventJournalRecord record = slots.get((int)(seq % capacity));
+         if (record == null || record.getSequence() != seq)
+            continue;
+
+         if (bundleId == null || record.getBundleId() == bundleId.longValue())
+            result.add(record);
+      }
+      return result;
+   }
+}
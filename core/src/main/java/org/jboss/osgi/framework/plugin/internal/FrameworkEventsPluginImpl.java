@@ -23,22 +23,27 @@ package org.jboss.osgi.framework.plugin.internal;
 
 //$Id: SystemPackagesPluginImpl.java 92858 2009-08-27 10:58:32Z thomas.diesler@jboss.com $
 
+import java.lang.management.ManagementFactory;
 import java.security.AccessControlContext;
 import java.security.AccessController;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.jboss.logging.Logger;
 import org.jboss.osgi.framework.bundle.AbstractBundle;
@@ -46,7 +51,14 @@ import org.jboss.osgi.framework.bundle.BundleManager;
 import org.jboss.osgi.framework.bundle.ServiceReferenceWrapper;
 import org.jboss.osgi.framework.bundle.ServiceState;
 import org.jboss.osgi.framework.plugin.AbstractPlugin;
+import org.jboss.osgi.framework.plugin.EventJournalRecord;
+import org.jboss.osgi.framework.plugin.EventJournalRecord.Category;
 import org.jboss.osgi.framework.plugin.FrameworkEventsPlugin;
+import org.jboss.osgi.framework.plugin.FrameworkEventsStatisticsMXBean;
+import org.jboss.osgi.framework.plugin.FrameworkExecutorPlugin;
+import org.jboss.osgi.framework.plugin.internal.AsyncEventDispatcher.OverflowPolicy;
+import org.jboss.osgi.framework.plugin.ServiceManagerPlugin;
+import org.jboss.osgi.framework.util.CompiledFilter;
 import org.jboss.osgi.framework.util.NoFilter;
 import org.jboss.osgi.framework.util.RemoveOnlyCollection;
 import org.jboss.osgi.spi.util.ConstantsHelper;
@@ -54,10 +66,10 @@ import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleEvent;
 import org.osgi.framework.BundleListener;
+import org.osgi.framework.Constants;
 import org.osgi.framework.Filter;
 import org.osgi.framework.FrameworkEvent;
 import org.osgi.framework.FrameworkListener;
-import org.osgi.framework.FrameworkUtil;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceEvent;
 import org.osgi.framework.ServiceListener;
@@ -87,18 +99,44 @@ public class FrameworkEventsPluginImpl extends AbstractPlugin implements Framewo
    private final Map<Bundle, List<FrameworkListener>> frameworkListeners = new ConcurrentHashMap<Bundle, List<FrameworkListener>>();
    /** The service listeners */
    private final Map<Bundle, List<ServiceListenerRegistration>> serviceListeners = new ConcurrentHashMap<Bundle, List<ServiceListenerRegistration>>();
-
-   /** The executor service */
-   private ExecutorService executorService;
+   /** The immutable snapshot of all bundle listeners */
+   private volatile List<ListenerRegistration<BundleListener>> bundleListenerSnapshot = Collections.emptyList();
+   /** The immutable snapshot of all framework listeners */
+   private volatile List<ListenerRegistration<FrameworkListener>> frameworkListenerSnapshot = Collections.emptyList();
+   /** The immutable snapshot of the service listeners indexed by the objectClass that their filter requires */
+   private volatile Map<String, ServiceListenerRegistration[]> serviceListenersByClass = Collections.emptyMap();
+   /** The immutable snapshot of the service listeners whose filter does not require a specific objectClass */
+   private volatile ServiceListenerRegistration[] wildcardServiceListeners = new ServiceListenerRegistration[0];
+
+   /** The dispatcher of asynchronous events */
+   private AsyncEventDispatcher eventDispatcher;
+   /** The event dispatch statistics */
+   private final FrameworkEventsStatistics statistics;
+   /** The name under which the statistics are registered with the MBeanServer */
+   private ObjectName statisticsName;
+   /** The bundle event batch of the current thread */
+   private final ThreadLocal<BundleEventBatch> bundleEventBatch = new ThreadLocal<BundleEventBatch>();
    /** The set of bundle events that are delivered to an (asynchronous) BundleListener */
    private Set<Integer> asyncBundleEvents = new HashSet<Integer>();
-   /** The set of events that are logged at INFO level */
-   private Set<String> infoEvents = new HashSet<String>();
+   /** The journal of the most recent events, or null */
+   private final EventJournal eventJournal;
+   /** True if the event journal is logged when a FrameworkEvent.ERROR is fired */
+   private final boolean dumpJournalOnError;
+
+   // Cache commonly used plugins
+   private ServiceManagerPlugin serviceManager;
 
    public FrameworkEventsPluginImpl(BundleManager bundleManager)
    {
       super(bundleManager);
-      executorService = Executors.newCachedThreadPool();
+
+      // Create the dispatcher of asynchronous events
+      int capacity = getIntProperty(PROP_JBOSS_OSGI_EVENTS_QUEUE_CAPACITY, 1000);
+      String overflow = (String)bundleManager.getProperty(PROP_JBOSS_OSGI_EVENTS_OVERFLOW);
+      FrameworkExecutorPlugin executorPlugin = getPlugin(FrameworkExecutorPlugin.class);
+      eventDispatcher = new AsyncEventDispatcher(executorPlugin.getExecutor(), capacity, OverflowPolicy.parse(overflow));
+      statistics = new FrameworkEventsStatistics(getIntProperty(PROP_JBOSS_OSGI_EVENTS_SLOW_THRESHOLD, 100), eventDispatcher);
+
       asyncBundleEvents.add(new Integer(BundleEvent.INSTALLED));
       asyncBundleEvents.add(new Integer(BundleEvent.RESOLVED));
       asyncBundleEvents.add(new Integer(BundleEvent.STARTED));
@@ -106,14 +144,66 @@ public class FrameworkEventsPluginImpl extends AbstractPlugin implements Framewo
       asyncBundleEvents.add(new Integer(BundleEvent.UPDATED));
       asyncBundleEvents.add(new Integer(BundleEvent.UNRESOLVED));
       asyncBundleEvents.add(new Integer(BundleEvent.UNINSTALLED));
-      infoEvents.add(ConstantsHelper.frameworkEvent(FrameworkEvent.PACKAGES_REFRESHED));
-      infoEvents.add(ConstantsHelper.frameworkEvent(FrameworkEvent.ERROR));
-      infoEvents.add(ConstantsHelper.frameworkEvent(FrameworkEvent.WARNING));
-      infoEvents.add(ConstantsHelper.frameworkEvent(FrameworkEvent.INFO));
-      infoEvents.add(ConstantsHelper.bundleEvent(BundleEvent.INSTALLED));
-      infoEvents.add(ConstantsHelper.bundleEvent(BundleEvent.STARTED));
-      infoEvents.add(ConstantsHelper.bundleEvent(BundleEvent.STOPPED));
-      infoEvents.add(ConstantsHelper.bundleEvent(BundleEvent.UNINSTALLED));
+
+      // Create the event journal
+      int journalSize = getIntProperty(PROP_JBOSS_OSGI_EVENTS_JOURNAL_SIZE, 1024);
+      eventJournal = (journalSize > 0 ? new EventJournal(journalSize) : null);
+      dumpJournalOnError = Boolean.parseBoolean((String)bundleManager.getProperty(PROP_JBOSS_OSGI_EVENTS_JOURNAL_DUMP));
+   }
+
+   private int getIntProperty(String key, int defaultValue)
+   {
+      Object value = getBundleManager().getProperty(key);
+      return value != null ? Integer.parseInt(value.toString().trim()) : defaultValue;
+   }
+
+   @Override
+   public void initPlugin()
+   {
+      serviceManager = getPlugin(ServiceManagerPlugin.class);
+   }
+
+   @Override
+   public void startPlugin()
+   {
+      // Expose the statistics to management clients
+      try
+      {
+         ObjectName oname = new ObjectName(FrameworkEventsStatisticsMXBean.OBJECT_NAME);
+         MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+         if (mbeanServer.isRegistered(oname) == false)
+         {
+            mbeanServer.registerMBean(statistics, oname);
+            statisticsName = oname;
+         }
+      }
+      catch (JMException ex)
+      {
+         log.warn("Cannot register event statistics", ex);
+      }
+   }
+
+   @Override
+   public void stopPlugin()
+   {
+      if (statisticsName != null)
+      {
+         try
+         {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(statisticsName);
+         }
+         catch (JMException ex)
+         {
+            log.debug("Cannot unregister event statistics", ex);
+         }
+         statisticsName = null;
+      }
+   }
+
+   @Override
+   public FrameworkEventsStatisticsMXBean getStatistics()
+   {
+      return statistics;
    }
 
    @Override
@@ -145,7 +235,12 @@ public class FrameworkEventsPluginImpl extends AbstractPlugin implements Framewo
             bundleListeners.put(bundle, listeners);
          }
          if (listeners.contains(listener) == false)
+         {
             listeners.add(listener);
+            statistics.addListener(bundle, listener, Category.BUNDLE);
+         }
+
+         updateBundleListenerSnapshot();
       }
    }
 
@@ -163,9 +258,16 @@ public class FrameworkEventsPluginImpl extends AbstractPlugin implements Framewo
          if (listeners != null)
          {
             if (listeners.size() > 1)
+            {
                listeners.remove(listener);
+               eventDispatcher.removeListener(bundle, listener, Category.BUNDLE);
+               statistics.removeListener(bundle, listener, Category.BUNDLE);
+               updateBundleListenerSnapshot();
+            }
             else
+            {
                removeBundleListeners(bundle);
+            }
          }
       }
    }
@@ -176,10 +278,32 @@ public class FrameworkEventsPluginImpl extends AbstractPlugin implements Framewo
       synchronized (bundleListeners)
       {
          bundle = assertBundle(bundle);
-         bundleListeners.remove(bundle);
+         List<BundleListener> listeners = bundleListeners.remove(bundle);
+         if (listeners != null)
+         {
+            for (BundleListener listener : listeners)
+            {
+               eventDispatcher.removeListener(bundle, listener, Category.BUNDLE);
+               statistics.removeListener(bundle, listener, Category.BUNDLE);
+            }
+
+            updateBundleListenerSnapshot();
+         }
       }
    }
 
+   // Must be called while holding the bundleListeners lock
+   private void updateBundleListenerSnapshot()
+   {
+      List<ListenerRegistration<BundleListener>> result = new ArrayList<ListenerRegistration<BundleListener>>();
+      for (Entry<Bundle, List<BundleListener>> entry : bundleListeners.entrySet())
+      {
+         for (BundleListener listener : entry.getValue())
+            result.add(new ListenerRegistration<BundleListener>(entry.getKey(), listener));
+      }
+      bundleListenerSnapshot = Collections.unmodifiableList(result);
+   }
+
    @Override
    public void addFrameworkListener(Bundle bundle, FrameworkListener listener)
    {
@@ -197,7 +321,12 @@ public class FrameworkEventsPluginImpl extends AbstractPlugin implements Framewo
             frameworkListeners.put(bundle, listeners);
          }
          if (listeners.contains(listener) == false)
+         {
             listeners.add(listener);
+            statistics.addListener(bundle, listener, Category.FRAMEWORK);
+         }
+
+         updateFrameworkListenerSnapshot();
       }
    }
 
@@ -215,9 +344,16 @@ public class FrameworkEventsPluginImpl extends AbstractPlugin implements Framewo
          if (listeners != null)
          {
             if (listeners.size() > 1)
+            {
                listeners.remove(listener);
+               eventDispatcher.removeListener(bundle, listener, Category.FRAMEWORK);
+               statistics.removeListener(bundle, listener, Category.FRAMEWORK);
+               updateFrameworkListenerSnapshot();
+            }
             else
+            {
                removeFrameworkListeners(bundle);
+            }
          }
       }
    }
@@ -228,10 +364,32 @@ public class FrameworkEventsPluginImpl extends AbstractPlugin implements Framewo
       synchronized (frameworkListeners)
       {
          bundle = assertBundle(bundle);
-         frameworkListeners.remove(bundle);
+         List<FrameworkListener> listeners = frameworkListeners.remove(bundle);
+         if (listeners != null)
+         {
+            for (FrameworkListener listener : listeners)
+            {
+               eventDispatcher.removeListener(bundle, listener, Category.FRAMEWORK);
+               statistics.removeListener(bundle, listener, Category.FRAMEWORK);
+            }
+
+            updateFrameworkListenerSnapshot();
+         }
       }
    }
 
+   // Must be called while holding the frameworkListeners lock
+   private void updateFrameworkListenerSnapshot()
+   {
+      List<ListenerRegistration<FrameworkListener>> result = new ArrayList<ListenerRegistration<FrameworkListener>>();
+      for (Entry<Bundle, List<FrameworkListener>> entry : frameworkListeners.entrySet())
+      {
+         for (FrameworkListener listener : entry.getValue())
+            result.add(new ListenerRegistration<FrameworkListener>(entry.getKey(), listener));
+      }
+      frameworkListenerSnapshot = Collections.unmodifiableList(result);
+   }
+
    @Override
    public void addServiceListener(Bundle bundle, ServiceListener listener, String filterstr) throws InvalidSyntaxException
    {
@@ -254,7 +412,7 @@ public class FrameworkEventsPluginImpl extends AbstractPlugin implements Framewo
          removeServiceListener(bundle, listener);
 
          // Create the new listener registration
-         Filter filter = (filterstr != null ? FrameworkUtil.createFilter(filterstr) : NoFilter.INSTANCE);
+         Filter filter = (filterstr != null ? CompiledFilter.compile(filterstr) : NoFilter.INSTANCE);
          ServiceListenerRegistration slreg = new ServiceListenerRegistration(bundle, listener, filter);
 
          // The {@link ListenerHook} added method is called to provide the hook implementation with information on newly added service listeners.
@@ -273,6 +431,8 @@ public class FrameworkEventsPluginImpl extends AbstractPlugin implements Framewo
 
          // Add the listener to the list
          listeners.add(slreg);
+         addIndexedServiceListener(slreg);
+         statistics.addListener(bundle, listener, Category.SERVICE);
       }
    }
 
@@ -312,6 +472,8 @@ public class FrameworkEventsPluginImpl extends AbstractPlugin implements Framewo
             if (index >= 0)
             {
                slreg = listeners.remove(index);
+               removeIndexedServiceListener(slreg);
+               statistics.removeListener(bundle, listener, Category.SERVICE);
 
                // The {@link ListenerHook} 'removed' method is called to provide the hook implementation with information on newly removed service listeners.
                // This method will be called as service listeners are removed while this hook is registered.
@@ -339,7 +501,15 @@ public class FrameworkEventsPluginImpl extends AbstractPlugin implements Framewo
       synchronized (serviceListeners)
       {
          Collection<ListenerInfo> listenerInfos = getServiceListenerInfos(bundle);
-         serviceListeners.remove(assertBundle(bundle));
+         List<ServiceListenerRegistration> listeners = serviceListeners.remove(assertBundle(bundle));
+         if (listeners != null)
+         {
+            for (ServiceListenerRegistration slreg : listeners)
+            {
+               removeIndexedServiceListener(slreg);
+               statistics.removeListener(slreg.bundle, slreg.listener, Category.SERVICE);
+            }
+         }
 
          // The {@link ListenerHook} 'removed' method is called to provide the hook implementation with information on newly removed service listeners.
          // This method will be called as service listeners are removed while this hook is registered.
@@ -357,53 +527,101 @@ public class FrameworkEventsPluginImpl extends AbstractPlugin implements Framewo
       }
    }
 
-   private List<ListenerHook> getServiceListenerHooks()
+   // Must be called while holding the serviceListeners lock
+   private void addIndexedServiceListener(ServiceListenerRegistration slreg)
    {
-      BundleContext context = getBundleManager().getSystemContext();
-      ServiceReference[] srefs = null;
-      try
+      if (slreg.objectClass == null)
       {
-         srefs = context.getServiceReferences(ListenerHook.class.getName(), null);
+         wildcardServiceListeners = addToArray(wildcardServiceListeners, slreg);
+         return;
       }
-      catch (InvalidSyntaxException e)
+
+      Map<String, ServiceListenerRegistration[]> snapshot = new HashMap<String, ServiceListenerRegistration[]>(serviceListenersByClass);
+      ServiceListenerRegistration[] listeners = snapshot.get(slreg.objectClass);
+      if (listeners == null)
+         listeners = new ServiceListenerRegistration[0];
+
+      snapshot.put(slreg.objectClass, addToArray(listeners, slreg));
+      serviceListenersByClass = Collections.unmodifiableMap(snapshot);
+   }
+
+   // Must be called while holding the serviceListeners lock
+   private void removeIndexedServiceListener(ServiceListenerRegistration slreg)
+   {
+      if (slreg.objectClass == null)
       {
-         // ignore
+         wildcardServiceListeners = removeFromArray(wildcardServiceListeners, slreg);
+         return;
       }
-      if (srefs == null)
-         return Collections.emptyList();
 
-      List<ListenerHook> hooks = new ArrayList<ListenerHook>();
-      for (ServiceReference sref : srefs)
-         hooks.add((ListenerHook)context.getService(sref));
+      ServiceListenerRegistration[] listeners = serviceListenersByClass.get(slreg.objectClass);
+      if (listeners != null)
+      {
+         Map<String, ServiceListenerRegistration[]> snapshot = new HashMap<String, ServiceListenerRegistration[]>(serviceListenersByClass);
+         listeners = removeFromArray(listeners, slreg);
+         if (listeners.length == 0)
+            snapshot.remove(slreg.objectClass);
+         else
+            snapshot.put(slreg.objectClass, listeners);
+
+         serviceListenersByClass = Collections.unmodifiableMap(snapshot);
+      }
+   }
+
+   private static ServiceListenerRegistration[] addToArray(ServiceListenerRegistration[] listeners, ServiceListenerRegistration slreg)
+   {
+      ServiceListenerRegistration[] result = new ServiceListenerRegistration[listeners.length + 1];
+      System.arraycopy(listeners, 0, result, 0, listeners.length);
+      result[listeners.length] = slreg;
+      return result;
+   }
+
+   private static ServiceListenerRegistration[] removeFromArray(ServiceListenerRegistration[] listeners, ServiceListenerRegistration slreg)
+   {
+      List<ServiceListenerRegistration> result = new ArrayList<ServiceListenerRegistration>(Arrays.asList(listeners));
+      result.remove(slreg);
+      return result.toArray(new ServiceListenerRegistration[result.size()]);
+   }
 
-      return Collections.unmodifiableList(hooks);
+   private List<ListenerHook> getServiceListenerHooks()
+   {
+      return serviceManager.getServiceHooks(ListenerHook.class);
    }
 
    @Override
-   public void fireBundleEvent(final Bundle bundle, final int type)
+   public void fireBundleEvent(Bundle bundle, int type)
    {
-      // Get a snapshot of the current listeners
-      final List<BundleListener> listeners = new ArrayList<BundleListener>();
-      synchronized (bundleListeners)
+      long startTime = System.nanoTime();
+      try
       {
-         for (Entry<Bundle, List<BundleListener>> entry : bundleListeners.entrySet())
-         {
-            for (BundleListener listener : entry.getValue())
-            {
-               listeners.add(listener);
-            }
-         }
+         fireBundleEventInternal(bundle, type);
       }
+      finally
+      {
+         recordEvent(Category.BUNDLE, type, bundle, startTime);
+
+         // Discard the dispatch statistics of an uninstalled bundle
+         if (type == BundleEvent.UNINSTALLED)
+            statistics.removeBundle(assertBundle(bundle));
+      }
+   }
+
+   private void fireBundleEventInternal(final Bundle bundle, final int type)
+   {
+      // Get the snapshot of the current listeners
+      List<ListenerRegistration<BundleListener>> listeners = bundleListenerSnapshot;
 
       // Expose the bundle wrapper not the state itself
       final BundleEvent event = new BundleEventImpl(type, assertBundle(bundle));
       final String typeName = ConstantsHelper.bundleEvent(event.getType());
 
-      if (infoEvents.contains(typeName))
-         log.info("Bundle " + typeName + ": " + bundle);
-      else
+      // The event is recorded in the journal
+      if (log.isDebugEnabled())
          log.debug("Bundle " + typeName + ": " + bundle);
 
+      // Are we running a batch
+      BundleEventBatch batch = bundleEventBatch.get();
+
       // Are we active?
       if (getBundleManager().isFrameworkActive() == false)
          return;
@@ -413,12 +631,17 @@ public class FrameworkEventsPluginImpl extends AbstractPlugin implements Framewo
          return;
 
       // Synchronous listeners first
-      for (BundleListener listener : listeners)
+      for (ListenerRegistration<BundleListener> reg : listeners)
       {
+         BundleListener listener = reg.listener;
          try
          {
             if (listener instanceof SynchronousBundleListener)
+            {
+               long startTime = System.nanoTime();
                listener.bundleChanged(event);
+               statistics.record(reg.bundle, listener, Category.BUNDLE, startTime);
+            }
          }
          catch (Throwable t)
          {
@@ -426,49 +649,142 @@ public class FrameworkEventsPluginImpl extends AbstractPlugin implements Framewo
          }
       }
 
-      Runnable runnable = new Runnable()
+      // BundleListeners are called with a BundleEvent object when a bundle has been
+      // installed, resolved, started, stopped, updated, unresolved, or uninstalled
+      if (asyncBundleEvents.contains(type) == false)
+         return;
+
+      // Collect the event if the current thread runs a batch
+      if (batch != null)
+      {
+         batch.add(event, listeners);
+         return;
+      }
+
+      // Queue the event for every asynchronous listener. Bundle events have no coalesce key, only the drop-oldest policy may drop them
+      for (final ListenerRegistration<BundleListener> reg : listeners)
+      {
+         final BundleListener listener = reg.listener;
+         if (listener instanceof SynchronousBundleListener)
+            continue;
+
+         Runnable runnable = new Runnable()
+         {
+            public void run()
+            {
+               try
+               {
+                  long startTime = System.nanoTime();
+                  listener.bundleChanged(event);
+                  statistics.record(reg.bundle, listener, Category.BUNDLE, startTime);
+               }
+               catch (Throwable t)
+               {
+                  log.warn("Error while firing " + typeName + " for bundle " + bundle, t);
+               }
+            }
+         };
+         eventDispatcher.dispatch(reg.bundle, listener, Category.BUNDLE, null, runnable);
+      }
+   }
+
+   @Override
+   public void beginBundleEventBatch()
+   {
+      BundleEventBatch batch = bundleEventBatch.get();
+      if (batch == null)
+      {
+         batch = new BundleEventBatch();
+         bundleEventBatch.set(batch);
+      }
+      batch.depth++;
+   }
+
+   @Override
+   public void endBundleEventBatch()
+   {
+      BundleEventBatch batch = bundleEventBatch.get();
+      if (batch == null)
+         throw new IllegalStateException("No bundle event batch");
+
+      if (--batch.depth > 0)
+         return;
+
+      bundleEventBatch.remove();
+      if (batch.events.isEmpty())
+         return;
+
+      log.info("Bundle events: " + batch.events.size() + " in batch");
+
+      // Collect the events for every asynchronous listener in the order they were fired
+      Map<ListenerRegistration<BundleListener>, List<BundleEvent>> eventsByListener = new LinkedHashMap<ListenerRegistration<BundleListener>, List<BundleEvent>>();
+      for (int i = 0; i < batch.events.size(); i++)
+      {
+         for (ListenerRegistration<BundleListener> reg : batch.listeners.get(i))
+         {
+            if (reg.listener instanceof SynchronousBundleListener)
+               continue;
+
+            List<BundleEvent> events = eventsByListener.get(reg);
+            if (events == null)
+            {
+               events = new ArrayList<BundleEvent>();
+               eventsByListener.put(reg, events);
+            }
+            events.add(batch.events.get(i));
+         }
+      }
+
+      // Queue the events as one batch per listener
+      for (Entry<ListenerRegistration<BundleListener>, List<BundleEvent>> entry : eventsByListener.entrySet())
       {
-         public void run()
+         final ListenerRegistration<BundleListener> reg = entry.getKey();
+         final BundleListener listener = reg.listener;
+         final List<BundleEvent> events = entry.getValue();
+         Runnable runnable = new Runnable()
          {
-            // BundleListeners are called with a BundleEvent object when a bundle has been
-            // installed, resolved, started, stopped, updated, unresolved, or uninstalled
-            if (asyncBundleEvents.contains(type))
+            public void run()
             {
-               for (BundleListener listener : listeners)
+               for (BundleEvent event : events)
                {
                   try
                   {
-                     if (listener instanceof SynchronousBundleListener == false)
-                        listener.bundleChanged(event);
+                     long startTime = System.nanoTime();
+                     listener.bundleChanged(event);
+                     statistics.record(reg.bundle, listener, Category.BUNDLE, startTime);
                   }
                   catch (Throwable t)
                   {
-                     log.warn("Error while firing " + typeName + " for bundle " + this, t);
+                     String typeName = ConstantsHelper.bundleEvent(event.getType());
+                     log.warn("Error while firing " + typeName + " for bundle " + event.getBundle(), t);
                   }
                }
             }
-         }
-      };
-
-      // Fire the event in a runnable
-      fireEvent(runnable);
+         };
+         eventDispatcher.dispatch(reg.bundle, listener, Category.BUNDLE, null, runnable);
+      }
    }
 
    @Override
-   public void fireFrameworkEvent(final Bundle bundle, final int type, final Throwable throwable)
+   public void fireFrameworkEvent(Bundle bundle, int type, Throwable throwable)
    {
-      // Get a snapshot of the current listeners
-      final ArrayList<FrameworkListener> listeners = new ArrayList<FrameworkListener>();
-      synchronized (frameworkListeners)
+      long startTime = System.nanoTime();
+      try
       {
-         for (Entry<Bundle, List<FrameworkListener>> entry : frameworkListeners.entrySet())
-         {
-            for (FrameworkListener listener : entry.getValue())
-            {
-               listeners.add(listener);
-            }
-         }
+         fireFrameworkEventInternal(bundle, type, throwable);
       }
+      finally
+      {
+         recordEvent(Category.FRAMEWORK, type, bundle, startTime);
+         if (type == FrameworkEvent.ERROR && dumpJournalOnError)
+            dumpEventJournal();
+      }
+   }
+
+   private void fireFrameworkEventInternal(final Bundle bundle, final int type, final Throwable throwable)
+   {
+      // Get the snapshot of the current listeners
+      List<ListenerRegistration<FrameworkListener>> listeners = frameworkListenerSnapshot;
 
       // Expose the wrapper not the state itself
       final FrameworkEvent event = new FrameworkEventImpl(type, assertBundle(bundle), throwable);
@@ -477,16 +793,14 @@ public class FrameworkEventsPluginImpl extends AbstractPlugin implements Framewo
       switch (event.getType())
       {
          case FrameworkEvent.ERROR:
-            log.error("Framwork " + typeName, throwable);
+            log.error("Framework " + typeName, throwable);
             break;
          case FrameworkEvent.WARNING:
-            log.warn("Framwork " + typeName, throwable);
+            log.warn("Framework " + typeName, throwable);
             break;
          default:
-            if (infoEvents.contains(typeName))
-               log.info("Framwork " + typeName, throwable);
-            else
-               log.debug("Framwork " + typeName, throwable);
+            if (log.isDebugEnabled())
+               log.debug("Framework " + typeName, throwable);
       }
 
       // Are we active?
@@ -497,16 +811,24 @@ public class FrameworkEventsPluginImpl extends AbstractPlugin implements Framewo
       if (listeners.isEmpty())
          return;
 
-      Runnable runnable = new Runnable()
+      // A pending PACKAGES_REFRESHED or STARTLEVEL_CHANGED is superseded by a later one of the same type
+      Object coalesceKey = null;
+      if (type == FrameworkEvent.PACKAGES_REFRESHED || type == FrameworkEvent.STARTLEVEL_CHANGED)
+         coalesceKey = new Integer(type);
+
+      // Queue the event for every listener
+      for (final ListenerRegistration<FrameworkListener> reg : listeners)
       {
-         public void run()
+         final FrameworkListener listener = reg.listener;
+         Runnable runnable = new Runnable()
          {
-            // Call the listeners
-            for (FrameworkListener listener : listeners)
+            public void run()
             {
                try
                {
+                  long startTime = System.nanoTime();
                   listener.frameworkEvent(event);
+                  statistics.record(reg.bundle, listener, Category.FRAMEWORK, startTime);
                }
                catch (RuntimeException ex)
                {
@@ -525,83 +847,179 @@ public class FrameworkEventsPluginImpl extends AbstractPlugin implements Framewo
                   log.warn("Error while firing " + typeName + " for framework", t);
                }
             }
-         }
-      };
-
-      // Fire the event in a runnable
-      fireEvent(runnable);
+         };
+         eventDispatcher.dispatch(reg.bundle, listener, Category.FRAMEWORK, coalesceKey, runnable);
+      }
    }
 
    @Override
-   public void fireServiceEvent(Bundle bundle, int type, final ServiceState serviceState)
+   public void fireServiceEvent(Bundle bundle, int type, ServiceState serviceState)
    {
-      // Get a snapshot of the current listeners
-      List<ServiceListenerRegistration> listeners = new ArrayList<ServiceListenerRegistration>();
-      synchronized (serviceListeners)
+      long startTime = System.nanoTime();
+      try
       {
-         for (Entry<Bundle, List<ServiceListenerRegistration>> entry : serviceListeners.entrySet())
-         {
-            for (ServiceListenerRegistration listener : entry.getValue())
-            {
-               BundleContext context = listener.getBundleContext();
-               if (context != null)
-                  listeners.add(listener);
-            }
-         }
+         fireServiceEventInternal(type, serviceState);
+      }
+      finally
+      {
+         recordEvent(Category.SERVICE, type, bundle, startTime);
       }
+   }
+
+   private void fireServiceEventInternal(int type, ServiceState serviceState)
+   {
+      // Get the snapshot of the listeners that may be interested in the service's objectClass
+      ServiceListenerRegistration[] wildcardListeners = wildcardServiceListeners;
+      Map<String, ServiceListenerRegistration[]> listenersByClass = serviceListenersByClass;
+      String[] classNames = (String[])serviceState.getProperty(Constants.OBJECTCLASS);
 
       // Expose the wrapper not the state itself
-      ServiceEvent event = new ServiceEventImpl(type, new ServiceReferenceWrapper(serviceState));
+      ServiceReference sref = new ServiceReferenceWrapper(serviceState);
+      ServiceEvent event = new ServiceEventImpl(type, sref);
       String typeName = ConstantsHelper.serviceEvent(event.getType());
 
-      if (infoEvents.contains(typeName))
-         log.info("Service " + typeName + ": " + serviceState);
-      else
+      if (log.isDebugEnabled())
          log.debug("Service " + typeName + ": " + serviceState);
 
       // Do nothing if the Framework is not active
       if (getBundleManager().isFrameworkActive() == false)
          return;
 
+      // The events are shared by all listeners
+      ServiceEventContext context = new ServiceEventContext(event, serviceState, typeName);
+      if (type == ServiceEvent.MODIFIED)
+      {
+         context.endMatchEvent = new ServiceEventImpl(ServiceEvent.MODIFIED_ENDMATCH, sref);
+         context.modifiedKeys = serviceState.getModifiedKeysInternal();
+      }
+
+      // Call the listeners directly if there are no event hooks
+      List<EventHook> eventHooks = getEventHooks();
+      if (eventHooks.isEmpty())
+      {
+         // All service events are synchronously delivered
+         deliverServiceEvent(wildcardListeners, context);
+         for (String className : classNames)
+            deliverServiceEvent(listenersByClass.get(className), context);
+         return;
+      }
+
+      List<ServiceListenerRegistration> listeners = new ArrayList<ServiceListenerRegistration>();
+      addServiceListeners(listeners, wildcardListeners);
+      for (String className : classNames)
+         addServiceListeners(listeners, listenersByClass.get(className));
+
       // Call the registered event hooks
-      listeners = processEventHooks(listeners, event);
+      listeners = processEventHooks(eventHooks, listeners, event);
 
-      // Nobody is interested
-      if (listeners.isEmpty())
+      // All service events are synchronously delivered
+      for (ServiceListenerRegistration listener : listeners)
+         deliverServiceEvent(listener, context);
+   }
+
+   @Override
+   public List<EventJournalRecord> getEventJournal(Bundle bundle)
+   {
+      if (eventJournal == null)
+         return Collections.emptyList();
+
+      Long bundleId = (bundle != null ? new Long(bundle.getBundleId()) : null);
+      return eventJournal.getRecords(bundleId);
+   }
+
+   private void recordEvent(Category category, int type, Bundle bundle, long startTime)
+   {
+      if (eventJournal != null)
+      {
+         long bundleId = (bundle != null ? bundle.getBundleId() : -1);
+         eventJournal.record(category, type, bundleId, System.nanoTime() - startTime);
+      }
+   }
+
+   private void dumpEventJournal()
+   {
+      List<EventJournalRecord> records = getEventJournal(null);
+      StringBuilder builder = new StringBuilder("Event journal (" + records.size() + " records)");
+      for (EventJournalRecord record : records)
+         builder.append("\n   ").append(record);
+      log.warn(builder.toString());
+   }
+
+   private void deliverServiceEvent(ServiceListenerRegistration[] listeners, ServiceEventContext context)
+   {
+      if (listeners == null)
          return;
 
-      // Call the listeners. All service events are synchronously delivered
       for (ServiceListenerRegistration listener : listeners)
       {
-         try
+         if (listener.getBundleContext() != null)
+            deliverServiceEvent(listener, context);
+      }
+   }
+
+   private void deliverServiceEvent(ServiceListenerRegistration listener, ServiceEventContext context)
+   {
+      try
+      {
+         ServiceEvent event = null;
+         if (listener.filter.match(context.serviceState))
          {
-            String filterstr = listener.filter.toString();
-            if (listener.filter.match(serviceState))
-            {
-               listener.listener.serviceChanged(event);
-            }
+            event = context.event;
+         }
 
-            // The MODIFIED_ENDMATCH event is synchronously delivered after the service properties have been modified.
-            // This event is only delivered to listeners which were added with a non-null filter where
-            // the filter matched the service properties prior to the modification but the filter does
-            // not match the modified service properties.
-            else if (filterstr != null && ServiceEvent.MODIFIED == event.getType())
-            {
-               if (listener.filter.match(serviceState.getPreviousProperties()))
-               {
-                  event = new ServiceEventImpl(ServiceEvent.MODIFIED_ENDMATCH, new ServiceReferenceWrapper(serviceState));
-                  listener.listener.serviceChanged(event);
-               }
-            }
+         // The MODIFIED_ENDMATCH event is synchronously delivered after the service properties have been modified.
+         // This event is only delivered to listeners which were added with a non-null filter where
+         // the filter matched the service properties prior to the modification but the filter does
+         // not match the modified service properties.
+         else if (context.endMatchEvent != null && listener.filter != NoFilter.INSTANCE)
+         {
+            if (matchPreviousProperties(listener.filter, context))
+               event = context.endMatchEvent;
          }
-         catch (Throwable t)
+
+         if (event != null)
          {
-            log.warn("Error while firing " + typeName + " for service " + serviceState, t);
+            long startTime = System.nanoTime();
+            listener.listener.serviceChanged(event);
+            statistics.record(listener.bundle, listener.listener, Category.SERVICE, startTime);
          }
       }
+      catch (Throwable t)
+      {
+         log.warn("Error while firing " + context.typeName + " for service " + context.serviceState, t);
+      }
+   }
+
+   private void addServiceListeners(List<ServiceListenerRegistration> result, ServiceListenerRegistration[] listeners)
+   {
+      if (listeners == null)
+         return;
+
+      for (ServiceListenerRegistration listener : listeners)
+      {
+         BundleContext context = listener.getBundleContext();
+         if (context != null)
+            result.add(listener);
+      }
+   }
+
+   private boolean matchPreviousProperties(Filter filter, ServiceEventContext context)
+   {
+      ServiceState serviceState = context.serviceState;
+      if (filter instanceof CompiledFilter)
+      {
+         // A filter that does not reference a modified key did not match the previous properties either
+         CompiledFilter compiledFilter = (CompiledFilter)filter;
+         if (context.modifiedKeys != null && compiledFilter.referencesAny(context.modifiedKeys) == false)
+            return false;
+
+         Map<String, Object> properties = serviceState.getPreviousPropertiesInternal();
+         return properties != null && compiledFilter.matchProperties(properties);
+      }
+      return filter.match(serviceState.getPreviousProperties());
    }
 
-   private List<ServiceListenerRegistration> processEventHooks(List<ServiceListenerRegistration> listeners, final ServiceEvent event)
+   private List<ServiceListenerRegistration> processEventHooks(List<EventHook> eventHooks, List<ServiceListenerRegistration> listeners, final ServiceEvent event)
    {
       // Collect the BundleContexts
       Collection<BundleContext> contexts = new HashSet<BundleContext>();
@@ -614,7 +1032,6 @@ public class FrameworkEventsPluginImpl extends AbstractPlugin implements Framewo
       contexts = new RemoveOnlyCollection<BundleContext>(contexts);
 
       // Call the registered event hooks
-      List<EventHook> eventHooks = getEventHooks();
       for (EventHook hook : eventHooks)
       {
          try
@@ -643,28 +1060,9 @@ public class FrameworkEventsPluginImpl extends AbstractPlugin implements Framewo
 
    private List<EventHook> getEventHooks()
    {
-      List<EventHook> hooks = new ArrayList<EventHook>();
-      BundleContext context = getBundleManager().getSystemContext();
-      ServiceReference[] srefs = null;
-      try
-      {
-         srefs = context.getServiceReferences(EventHook.class.getName(), null);
-      }
-      catch (InvalidSyntaxException e)
-      {
-         // ignore
-      }
-      if (srefs != null)
-      {
-         // The calling order of the hooks is defined by the reversed compareTo ordering of their Service
-         // Reference objects. That is, the service with the highest ranking number is called first.
-         List<ServiceReference> sortedRefs = new ArrayList<ServiceReference>(Arrays.asList(srefs));
-         Collections.reverse(sortedRefs);
-
-         for (ServiceReference sref : sortedRefs)
-            hooks.add((EventHook)context.getService(sref));
-      }
-      return hooks;
+      // The calling order of the hooks is defined by the reversed compareTo ordering of their Service
+      // Reference objects. That is, the service with the highest ranking number is called first.
+      return serviceManager.getServiceHooks(EventHook.class);
    }
 
    private static Bundle assertBundle(Bundle bundle)
@@ -679,9 +1077,74 @@ public class FrameworkEventsPluginImpl extends AbstractPlugin implements Framewo
       return bundle;
    }
 
-   private void fireEvent(Runnable runnable)
+   /**
+    * The service event and its derived state that is shared by all listeners
+    */
+   static class ServiceEventContext
+   {
+      private final ServiceEvent event;
+      private final ServiceState serviceState;
+      private final String typeName;
+      // The MODIFIED_ENDMATCH event for a MODIFIED event
+      private ServiceEvent endMatchEvent;
+      // The keys that were modified for a MODIFIED event
+      private Set<String> modifiedKeys;
+
+      ServiceEventContext(ServiceEvent event, ServiceState serviceState, String typeName)
+      {
+         this.event = event;
+         this.serviceState = serviceState;
+         this.typeName = typeName;
+      }
+   }
+
+   /**
+    * A bundle or framework listener together with the bundle that added it
+    */
+   static class ListenerRegistration<T>
+   {
+      private final Bundle bundle;
+      private final T listener;
+
+      ListenerRegistration(Bundle bundle, T listener)
+      {
+         this.bundle = bundle;
+         this.listener = listener;
+      }
+
+      @Override
+      public int hashCode()
+      {
+         return 31 * bundle.hashCode() + listener.hashCode();
+      }
+
+      @Override
+      public boolean equals(Object obj)
+      {
+         if (obj instanceof ListenerRegistration<?> == false)
+            return false;
+
+         ListenerRegistration<?> other = (ListenerRegistration<?>)obj;
+         return bundle.equals(other.bundle) && listener.equals(other.listener);
+      }
+   }
+
+   /**
+    * The asynchronous bundle events that are collected by a thread
+    */
+   static class BundleEventBatch
    {
-      executorService.execute(runnable);
+      // The nesting depth of the batch
+      private int depth;
+      // The events and the listener snapshots at the time they were fired
+      private final List<BundleEvent> events = new ArrayList<BundleEvent>();
+      private final List<List<ListenerRegistration<BundleListener>>> listeners = new ArrayList<List<ListenerRegistration<BundleListener>>>();
+
+      void add(BundleEvent event, List<ListenerRegistration<BundleListener>> snapshot)
+      {
+         events.add(event);
+         listeners.add(snapshot);
+      }
    }
 
    /**
@@ -689,10 +1152,14 @@ public class FrameworkEventsPluginImpl extends AbstractPlugin implements Framewo
     */
    static class ServiceListenerRegistration
    {
+      private static final String OBJECTCLASS_KEY = Constants.OBJECTCLASS.toLowerCase();
+
       private Bundle bundle;
       private ServiceListener listener;
       private Filter filter;
       private ListenerInfo info;
+      // The objectClass that the filter requires, or null
+      private String objectClass;
 
       // Any access control context
       AccessControlContext accessControlContext;
@@ -710,6 +1177,7 @@ public class FrameworkEventsPluginImpl extends AbstractPlugin implements Framewo
          this.listener = listener;
          this.filter = filter;
          this.info = new ListenerInfoImpl(this);
+         this.objectClass = getRequiredObjectClass(filter);
 
          if (System.getSecurityManager() != null)
             accessControlContext = AccessController.getContext();
@@ -720,6 +1188,19 @@ public class FrameworkEventsPluginImpl extends AbstractPlugin implements Framewo
          return bundle.getBundleContext();
       }
 
+      private static String getRequiredObjectClass(Filter filter)
+      {
+         if (filter instanceof CompiledFilter == false)
+            return null;
+
+         for (String[] term : ((CompiledFilter)filter).getRequiredTerms())
+         {
+            if (term[1] != null && OBJECTCLASS_KEY.equals(term[0]))
+               return term[1];
+         }
+         return null;
+      }
+
       public ListenerInfo getListenerInfo()
       {
          return info;
@@ -0,0 +1,223 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.osgi.framework.plugin.internal;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.logging.Logger;
+import org.jboss.osgi.framework.plugin.EventDispatchStatistics;
+import org.jboss.osgi.framework.plugin.EventJournalRecord.Category;
+import org.jboss.osgi.framework.plugin.EventQueueStatistics;
+import org.jboss.osgi.framework.plugin.FrameworkEventsStatisticsMXBean;
+import org.osgi.framework.Bundle;
+
+/**
+ * Collects the time that listeners take to process an event, per listener and per bundle
+ * that registered the listener.
+ *
+ * A listener is measured from the time it is added until it is removed. The same listener object that is
+ * added by different bundles, or as a different kind of listener, is measured separately. The statistics
+ * of a bundle are discarded when it is uninstalled. A listener that exceeds the slow listener threshold 
+ * is logged once.
+ *
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+final class FrameworkEventsStatistics implements FrameworkEventsStatisticsMXBean
+{
+   // Provide logging
+   private final Logger log = Logger.getLogger(FrameworkEventsStatistics.class);
+
+   // The statistics of the currently registered listeners
+   private final ConcurrentMap<ListenerKey, ListenerEntry> listenerStats = new ConcurrentHashMap<ListenerKey, ListenerEntry>();
+   // The statistics per bundle
+   private final ConcurrentMap<Bundle, EventDispatchStatistics> bundleStats = new ConcurrentHashMap<Bundle, EventDispatchStatistics>();
+   // The slow listener threshold in nanoseconds
+   private volatile long slowThreshold;
+   // The dispatcher that owns the asynchronous event queues
+   private final AsyncEventDispatcher eventDispatcher;
+
+   FrameworkEventsStatistics(long slowThresholdMillis, AsyncEventDispatcher eventDispatcher)
+   {
+      if (eventDispatcher == null)
+         throw new IllegalArgumentException("Null eventDispatcher");
+
+      this.eventDispatcher = eventDispatcher;
+      setSlowListenerThreshold(slowThresholdMillis);
+   }
+
+   void addListener(Bundle bundle, Object listener, Category kind)
+   {
+      EventDispatchStatistics bstats = bundleStats.get(bundle);
+      if (bstats == null)
+      {
+         bstats = new EventDispatchStatistics(bundle.toString());
+         EventDispatchStatistics otherStats = bundleStats.putIfAbsent(bundle, bstats);
+         if (otherStats != null)
+            bstats = otherStats;
+      }
+      ListenerKey key = new ListenerKey(bundle, listener, kind);
+      String name = listener.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(listener)) + " (" + kind + ") in " + bundle;
+      listenerStats.putIfAbsent(key, new ListenerEntry(new EventDispatchStatistics(name), bstats));
+   }
+
+   void removeListener(Bundle bundle, Object listener, Category kind)
+   {
+      listenerStats.remove(new ListenerKey(bundle, listener, kind));
+   }
+
+   /**
+    * Discard the statistics of the given bundle and its listeners.
+    */
+   void removeBundle(Bundle bundle)
+   {
+      bundleStats.remove(bundle);
+      Iterator<ListenerKey> it = listenerStats.keySet().iterator();
+      while (it.hasNext())
+      {
+         if (it.next().bundle.equals(bundle))
+            it.remove();
+      }
+   }
+
+   /**
+    * Record the dispatch of an event to the given listener
+    * @param startTime The value of {@link System#nanoTime()} before the listener was called
+    */
+   void record(Bundle bundle, Object listener, Category kind, long startTime)
+   {
+      ListenerEntry entry = listenerStats.get(new ListenerKey(bundle, listener, kind));
+      if (entry == null)
+         return;
+
+      long nanos = System.nanoTime() - startTime;
+      entry.bundleStats.record(nanos, slowThreshold);
+      if (entry.listenerStats.record(nanos, slowThreshold))
+         log.warn("Slow listener " + entry.listenerStats.getName() + " took " + TimeUnit.NANOSECONDS.toMillis(nanos) + "ms");
+   }
+
+   @Override
+   public long getSlowListenerThreshold()
+   {
+      return TimeUnit.NANOSECONDS.toMillis(slowThreshold);
+   }
+
+   @Override
+   public void setSlowListenerThreshold(long millis)
+   {
+      if (millis < 0)
+         throw new IllegalArgumentException("Invalid threshold: " + millis);
+      slowThreshold = TimeUnit.MILLISECONDS.toNanos(millis);
+   }
+
+   @Override
+   public List<EventDispatchStatistics> getListenerStatistics()
+   {
+      List<EventDispatchStatistics> result = new ArrayList<EventDispatchStatistics>();
+      for (ListenerEntry entry : listenerStats.values())
+         result.add(entry.listenerStats);
+      return result;
+   }
+
+   @Override
+   public List<EventDispatchStatistics> getBundleStatistics()
+   {
+      return new ArrayList<EventDispatchStatistics>(bundleStats.values());
+   }
+
+   @Override
+   public List<EventDispatchStatistics> getSlowListeners()
+   {
+      List<EventDispatchStatistics> result = new ArrayList<EventDispatchStatistics>();
+      for (ListenerEntry entry : listenerStats.values())
+      {
+         if (entry.listenerStats.getSlowCount() > 0)
+            result.add(entry.listenerStats);
+      }
+      return result;
+   }
+
+   @Override
+   public List<EventQueueStatistics> getQueueStatistics()
+   {
+      return eventDispatcher.getQueueStatistics();
+   }
+
+   @Override
+   public void resetStatistics()
+   {
+      for (EventDispatchStatistics bstats : bundleStats.values())
+         bstats.reset();
+      for (ListenerEntry entry : listenerStats.values())
+         entry.listenerStats.reset();
+   }
+
+   /**
+    * Identifies a listener by the bundle that added it and the kind of events it receives.
+    */
+   static class ListenerKey
+   {
+      private final Bundle bundle;
+      private final Object listener;
+      private final Category kind;
+
+      ListenerKey(Bundle bundle, Object listener, Category kind)
+      {
+         this.bundle = bundle;
+         this.listener = listener;
+         this.kind = kind;
+      }
+
+      @Override
+      public int hashCode()
+      {
+         return 31 * (31 * bundle.hashCode() + listener.hashCode()) + kind.hashCode();
+      }
+
+      @Override
+      public boolean equals(Object obj)
+      {
+         if (obj instanceof ListenerKey == false)
+            return false;
+
+         ListenerKey other = (ListenerKey)obj;
+         return kind == other.kind && bundle.equals(other.bundle) && listener.equals(other.listener);
+      }
+   }
+
+   static class ListenerEntry
+   {
+      private final EventDispatchStatistics listenerStats;
+      private final EventDispatchStatistics bundleStats;
+
+      ListenerEntry(EventDispatchStatistics listenerStats, EventDispatchStatistics bundleStats)
+      {
+         this.listenerStats = listenerStats;
+         this.bundleStats = bundleStats;
+      }
+   }
+}
@@ -0,0 +1,349 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.osgi.framework.plugin.internal;
+
+import java.lang.reflect.Method;
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.logging.Logger;
+import org.jboss.osgi.framework.bundle.BundleManager;
+import org.jboss.osgi.framework.plugin.AbstractPlugin;
+import org.jboss.osgi.framework.plugin.FrameworkExecutorPlugin;
+
+/**
+ * The framework executor plugin.
+ * 
+ * In pool mode a fixed number of platform threads takes the tasks from a bounded queue. A task that 
+ * is submitted to a full queue runs on the thread of the caller. 
+ * In virtual mode every task runs in a new virtual thread. This requires a runtime that supports
+ * virtual threads and falls back to pool mode otherwise.
+ * 
+ * The underlying executor service is created on first use and shut down when the plugin is stopped.
+ * Tasks that are submitted after the plugin was stopped are rejected until the framework is initialized again.
+ * 
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+public class FrameworkExecutorPluginImpl extends AbstractPlugin implements FrameworkExecutorPlugin
+{
+   // Provide logging
+   final Logger log = Logger.getLogger(FrameworkExecutorPluginImpl.class);
+
+   // The executor modes
+   static final String MODE_POOL = "pool";
+   static final String MODE_VIRTUAL = "virtual";
+
+   // The current executor service, created on demand
+   private ExecutorService executorService;
+   // True after the plugin was stopped, synchronized on this
+   private boolean stopped;
+   // The executor facade that is handed out to the other plugins
+   private final Executor executor;
+   // The number of created threads
+   private final AtomicInteger threadCount = new AtomicInteger();
+   // The task metrics
+   private final AtomicLong submittedTasks = new AtomicLong();
+   private final AtomicLong completedTasks = new AtomicLong();
+   private final AtomicInteger activeTasks = new AtomicInteger();
+
+   public FrameworkExecutorPluginImpl(BundleManager bundleManager)
+   {
+      super(bundleManager);
+      executor = new Executor()
+      {
+         @Override
+         public void execute(Runnable task)
+         {
+            submit(task);
+         }
+      };
+   }
+
+   @Override
+   public Executor getExecutor()
+   {
+      return executor;
+   }
+
+   @Override
+   public Executor createSerialExecutor(String name)
+   {
+      if (name == null)
+         throw new IllegalArgumentException("Null name");
+
+      return new SerialExecutor(name);
+   }
+
+   @Override
+   public long getSubmittedTaskCount()
+   {
+      return submittedTasks.get();
+   }
+
+   @Override
+   public long getCompletedTaskCount()
+   {
+      return completedTasks.get();
+   }
+
+   @Override
+   public int getActiveTaskCount()
+   {
+      return activeTasks.get();
+   }
+
+   @Override
+   public synchronized void initPlugin()
+   {
+      // The framework is initialized again after it was stopped
+      stopped = false;
+   }
+
+   @Override
+   public void stopPlugin()
+   {
+      ExecutorService service;
+      synchronized (this)
+      {
+         service = executorService;
+         executorService = null;
+         stopped = true;
+      }
+
+      // Running and queued tasks complete, the threads terminate when they are done
+      if (service != null)
+      {
+         log.debug("Shutdown framework executor, active tasks: " + activeTasks.get());
+         service.shutdown();
+      }
+   }
+
+   private void submit(final Runnable task)
+   {
+      if (task == null)
+         throw new IllegalArgumentException("Null task");
+
+      submittedTasks.incrementAndGet();
+      Runnable command = new Runnable()
+      {
+         @Override
+         public void run()
+         {
+            activeTasks.incrementAndGet();
+            try
+            {
+               task.run();
+            }
+            finally
+            {
+               activeTasks.decrementAndGet();
+               completedTasks.incrementAndGet();
+            }
+         }
+      };
+      try
+      {
+         getExecutorService().execute(command);
+      }
+      catch (RejectedExecutionException ex)
+      {
+         submittedTasks.decrementAndGet();
+         throw ex;
+      }
+   }
+
+   private synchronized ExecutorService getExecutorService()
+   {
+      if (stopped == true)
+         throw new RejectedExecutionException("Framework executor stopped");
+
+      if (executorService == null)
+      {
+         String mode = (String)getBundleManager().getProperty(PROP_JBOSS_OSGI_EXECUTOR_MODE);
+         if (MODE_VIRTUAL.equalsIgnoreCase(mode))
+            executorService = createVirtualThreadExecutor();
+         else if (mode != null && MODE_POOL.equalsIgnoreCase(mode) == false)
+            log.warn("Unsupported executor mode: " + mode);
+
+         if (executorService == null)
+            executorService = createThreadPoolExecutor();
+      }
+      return executorService;
+   }
+
+   private ExecutorService createThreadPoolExecutor()
+   {
+      int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+      Object value = getBundleManager().getProperty(PROP_JBOSS_OSGI_EXECUTOR_THREADS);
+      if (value != null)
+         threads = Integer.parseInt(value.toString().trim());
+
+      int capacity = 10000;
+      value = getBundleManager().getProperty(PROP_JBOSS_OSGI_EXECUTOR_QUEUE_CAPACITY);
+      if (value != null)
+         capacity = Integer.parseInt(value.toString().trim());
+
+      ThreadFactory threadFactory = new ThreadFactory()
+      {
+         @Override
+         public Thread newThread(Runnable run)
+         {
+            Thread thread = new Thread(run, "jbosgi-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+         }
+      };
+      // A task that does not fit into the queue runs on the thread of the caller, unless the executor was shut down
+      RejectedExecutionHandler rejectedHandler = new RejectedExecutionHandler()
+      {
+         @Override
+         public void rejectedExecution(Runnable run, ThreadPoolExecutor pool)
+         {
+            if (pool.isShutdown())
+               throw new RejectedExecutionException("Framework executor stopped");
+
+            if (log.isDebugEnabled())
+               log.debug("Framework executor queue full, running task on " + Thread.currentThread().getName());
+
+            run.run();
+         }
+      };
+      return new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(capacity), threadFactory, rejectedHandler);
+   }
+
+   // Thread.ofVirtual() is not available at compile time, it is called reflectively
+   private ExecutorService createVirtualThreadExecutor()
+   {
+      try
+      {
+         Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+         Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+         builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "jbosgi-virtual-", 1L);
+         ThreadFactory threadFactory = (ThreadFactory)builderClass.getMethod("factory").invoke(builder);
+         Method method = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+         return (ExecutorService)method.invoke(null, threadFactory);
+      }
+      catch (Exception ex)
+      {
+         log.warn("Virtual threads not supported, using a thread pool");
+         return null;
+      }
+   }
+
+   /**
+    * An executor that runs its tasks one at a time on the framework executor.
+    */
+   class SerialExecutor implements Executor
+   {
+      private final String name;
+      // The pending tasks, synchronized on this
+      private final LinkedList<Runnable> tasks = new LinkedList<Runnable>();
+      // True while a task of this executor is running, synchronized on this
+      private boolean running;
+
+      SerialExecutor(String name)
+      {
+         this.name = name;
+      }
+
+      @Override
+      public void execute(Runnable task)
+      {
+         if (task == null)
+            throw new IllegalArgumentException("Null task");
+
+         synchronized (this)
+         {
+            tasks.add(task);
+            if (running == true)
+               return;
+
+            running = true;
+         }
+
+         // Submit outside the lock, the tasks may run on this thread when the queue is full
+         try
+         {
+            submit(new Runnable()
+            {
+               @Override
+               public void run()
+               {
+                  runTasks();
+               }
+            });
+         }
+         catch (RejectedExecutionException ex)
+         {
+            synchronized (this)
+            {
+               tasks.remove(task);
+               running = false;
+            }
+            throw ex;
+         }
+      }
+
+      private void runTasks()
+      {
+         while (true)
+         {
+            Runnable task;
+            synchronized (this)
+            {
+               task = tasks.poll();
+               if (task == null)
+               {
+                  running = false;
+                  return;
+               }
+            }
+
+            try
+            {
+               task.run();
+            }
+            catch (RuntimeException ex)
+            {
+               log.error("Error running task in " + name, ex);
+            }
+         }
+      }
+
+      @Override
+      public String toString()
+      {
+         return "SerialExecutor[" + name + "]";
+      }
+   }
+}
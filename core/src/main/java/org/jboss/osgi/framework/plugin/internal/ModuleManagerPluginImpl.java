@@ -34,6 +34,7 @@ import org.jboss.osgi.framework.bundle.AbstractRevision;
 import org.jboss.osgi.framework.bundle.BundleManager;
 import org.jboss.osgi.framework.bundle.HostBundle;
 import org.jboss.osgi.framework.bundle.ModuleManager;
+import org.jboss.osgi.framework.bundle.PackageExporterIndex;
 import org.jboss.osgi.framework.plugin.AbstractPlugin;
 import org.jboss.osgi.framework.plugin.ModuleManagerPlugin;
 import org.jboss.osgi.resolver.XModule;
@@ -66,6 +67,12 @@ public class ModuleManagerPluginImpl extends AbstractPlugin implements ModuleMan
       return moduleManager.getModuleIdentifiers();
    }
 
+   @Override
+   public PackageExporterIndex getPackageExporterIndex()
+   {
+      return moduleManager.getPackageExporterIndex();
+   }
+
    @Override
    public Module getModule(ModuleIdentifier identifier)
    {
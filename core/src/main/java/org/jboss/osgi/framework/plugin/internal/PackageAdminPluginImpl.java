@@ -34,7 +34,6 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 import org.jboss.logging.Logger;
 import org.jboss.modules.ModuleClassLoader;
@@ -49,6 +48,7 @@ import org.jboss.osgi.framework.bundle.HostRevision;
 import org.jboss.osgi.framework.loading.FragmentLocalLoader;
 import org.jboss.osgi.framework.plugin.AbstractPlugin;
 import org.jboss.osgi.framework.plugin.FrameworkEventsPlugin;
+import org.jboss.osgi.framework.plugin.FrameworkExecutorPlugin;
 import org.jboss.osgi.framework.plugin.ModuleManagerPlugin;
 import org.jboss.osgi.framework.plugin.PackageAdminPlugin;
 import org.jboss.osgi.framework.plugin.ResolverPlugin;
@@ -83,13 +83,14 @@ public class PackageAdminPluginImpl extends AbstractPlugin implements PackageAdm
    // Provide logging
    final Logger log = Logger.getLogger(PackageAdminPluginImpl.class);
 
-   private Executor executor;
+   private final Executor executor;
    private ResolverPlugin resolverPlugin;
    private ServiceRegistration registration;
 
    public PackageAdminPluginImpl(BundleManager bundleManager)
    {
       super(bundleManager);
+      executor = getPlugin(FrameworkExecutorPlugin.class).createSerialExecutor("PackageAdmin");
    }
 
    @Override
@@ -238,6 +239,21 @@ public class PackageAdminPluginImpl extends AbstractPlugin implements PackageAdm
 
          @Override
          public void run()
+         {
+            // Deliver the bundle events of the refresh in one batch
+            eventsPlugin.beginBundleEventBatch();
+            try
+            {
+               refreshPackagesInternal();
+            }
+            finally
+            {
+               eventsPlugin.endBundleEventBatch();
+            }
+            eventsPlugin.fireFrameworkEvent(getBundleManager().getSystemBundle(), FrameworkEvent.PACKAGES_REFRESHED, null);
+         }
+
+         private void refreshPackagesInternal()
          {
             Bundle[] bundles = bundlesToRefresh;
             if (bundles == null)
@@ -367,18 +383,9 @@ public class PackageAdminPluginImpl extends AbstractPlugin implements PackageAdm
                   eventsPlugin.fireFrameworkEvent(hostBundle, FrameworkEvent.ERROR, th);
                }
             }
-
-            eventsPlugin.fireFrameworkEvent(getBundleManager().getSystemBundle(), FrameworkEvent.PACKAGES_REFRESHED, null);
          }
       };
-      getExecutor().execute(runner);
-   }
-
-   private Executor getExecutor()
-   {
-      if (executor == null)
-         executor = Executors.newSingleThreadExecutor();
-      return executor;
+      executor.execute(runner);
    }
 
    @Override
@@ -86,11 +86,13 @@ public class ResolverPluginImpl extends AbstractPlugin implements ResolverPlugin
    public void addModule(XModule resModule)
    {
       resolver.addModule(resModule);
+      moduleManager.getPackageExporterIndex().addResolverModule(resModule);
    }
 
    @Override
    public void removeModule(XModule resModule)
    {
+      moduleManager.getPackageExporterIndex().removeResolverModule(resModule);
       resolver.removeModule(resModule);
    }
 
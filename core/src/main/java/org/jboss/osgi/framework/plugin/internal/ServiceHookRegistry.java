@@ -0,0 +1,212 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.osgi.framework.plugin.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jboss.osgi.framework.bundle.AbstractBundle;
+import org.jboss.osgi.framework.bundle.BundleManager;
+import org.jboss.osgi.framework.bundle.ServiceState;
+import org.jboss.osgi.framework.plugin.ServiceManagerPlugin;
+import org.osgi.framework.Constants;
+import org.osgi.framework.hooks.service.EventHook;
+import org.osgi.framework.hooks.service.FindHook;
+import org.osgi.framework.hooks.service.ListenerHook;
+
+/**
+ * A registry of the {@link FindHook}, {@link EventHook} and {@link ListenerHook} services.
+ *
+ * The hook instances are kept in an immutable snapshot, with one list per hook type in the order in which
+ * the hooks must be called. The snapshot is only rebuilt when a hook service is registered, modified or
+ * unregistered. The hook instances are obtained outside of any lock, the new snapshot is published
+ * with a short synchronized swap. The instances are released when the hook service is unregistered.
+ *
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+final class ServiceHookRegistry
+{
+   // The supported hook types
+   private static final Class<?>[] HOOK_TYPES = new Class<?>[] { FindHook.class, EventHook.class, ListenerHook.class };
+
+   private final BundleManager bundleManager;
+   private final ServiceManagerPlugin serviceManager;
+   private final ServiceIndex serviceIndex;
+
+   // The hook instances per hook type in calling order
+   private volatile HookSnapshot hookSnapshot = HookSnapshot.EMPTY;
+   // The hook instances obtained through the system bundle
+   private final ConcurrentMap<ServiceState, Object> hookInstances = new ConcurrentHashMap<ServiceState, Object>();
+
+   ServiceHookRegistry(BundleManager bundleManager, ServiceManagerPlugin serviceManager, ServiceIndex serviceIndex)
+   {
+      this.bundleManager = bundleManager;
+      this.serviceManager = serviceManager;
+      this.serviceIndex = serviceIndex;
+   }
+
+   /**
+    * Get the hooks of the given type in calling order, which is the service with the highest ranking first.
+    * @return An unmodifiable, potentially empty list
+    */
+   @SuppressWarnings("unchecked")
+   <T> List<T> getHooks(Class<T> hookType)
+   {
+      return (List<T>)hookSnapshot.getHooks(hookType);
+   }
+
+   void addService(ServiceState serviceState)
+   {
+      if (isHookService(serviceState))
+      {
+         obtainHookInstance(serviceState);
+         updateHooks(serviceState, false);
+      }
+   }
+
+   void updateService(ServiceState serviceState)
+   {
+      if (isHookService(serviceState))
+         updateHooks(serviceState, false);
+   }
+
+   void removeService(ServiceState serviceState)
+   {
+      if (isHookService(serviceState))
+      {
+         updateHooks(serviceState, true);
+
+         // Release the hook instance that was obtained through the system bundle
+         if (hookInstances.remove(serviceState) != null)
+            serviceManager.ungetService(getSystemBundle(), serviceState);
+      }
+   }
+
+   private boolean isHookService(ServiceState serviceState)
+   {
+      for (String className : (String[])serviceState.getProperty(Constants.OBJECTCLASS))
+      {
+         for (Class<?> hookType : HOOK_TYPES)
+         {
+            if (hookType.getName().equals(className))
+               return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Rebuild the hook lists that the given service is registered under. Only hook instances that
+    * were already obtained are used, so that no foreign code runs while the snapshot is swapped.
+    */
+   private synchronized void updateHooks(ServiceState serviceState, boolean removed)
+   {
+      List<String> classNames = Arrays.asList((String[])serviceState.getProperty(Constants.OBJECTCLASS));
+      List<?>[] hookLists = hookSnapshot.hookLists.clone();
+      for (int i = 0; i < HOOK_TYPES.length; i++)
+      {
+         Class<?> hookType = HOOK_TYPES[i];
+         if (classNames.contains(hookType.getName()) == false)
+            continue;
+
+         // The service with the highest ranking number must be called first
+         List<ServiceState> serviceStates = new ArrayList<ServiceState>(serviceIndex.getServices(hookType.getName()));
+         if (removed)
+            serviceStates.remove(serviceState);
+         Collections.reverse(serviceStates);
+
+         List<Object> hooks = new ArrayList<Object>();
+         for (ServiceState aux : serviceStates)
+         {
+            Object hook = hookInstances.get(aux);
+            if (hookType.isInstance(hook))
+               hooks.add(hook);
+         }
+         hookLists[i] = hooks;
+      }
+      hookSnapshot = new HookSnapshot(hookLists);
+   }
+
+   private void obtainHookInstance(ServiceState serviceState)
+   {
+      // A hook that is provided by a ServiceFactory is called without holding a lock
+      AbstractBundle systemBundle = getSystemBundle();
+      Object hook = serviceManager.getService(systemBundle, serviceState);
+      if (hook != null && hookInstances.putIfAbsent(serviceState, hook) != null)
+         serviceManager.ungetService(systemBundle, serviceState);
+   }
+
+   private AbstractBundle getSystemBundle()
+   {
+      return bundleManager.getSystemBundle();
+   }
+
+   /**
+    * An immutable snapshot of the hook instances per hook type.
+    */
+   static class HookSnapshot
+   {
+      static final HookSnapshot EMPTY = new HookSnapshot(new List<?>[HOOK_TYPES.length]);
+
+      // The hook lists in the order of HOOK_TYPES
+      final List<?>[] hookLists;
+      // True if there are no hooks of any type
+      final boolean empty;
+
+      HookSnapshot(List<?>[] hookLists)
+      {
+         boolean empty = true;
+         for (int i = 0; i < hookLists.length; i++)
+         {
+            if (hookLists[i] == null || hookLists[i].isEmpty())
+            {
+               hookLists[i] = Collections.emptyList();
+            }
+            else
+            {
+               hookLists[i] = Collections.unmodifiableList(hookLists[i]);
+               empty = false;
+            }
+         }
+         this.hookLists = hookLists;
+         this.empty = empty;
+      }
+
+      List<?> getHooks(Class<?> hookType)
+      {
+         if (empty)
+            return Collections.emptyList();
+
+         for (int i = 0; i < HOOK_TYPES.length; i++)
+         {
+            if (HOOK_TYPES[i] == hookType)
+               return hookLists[i];
+         }
+         return Collections.emptyList();
+      }
+   }
+}
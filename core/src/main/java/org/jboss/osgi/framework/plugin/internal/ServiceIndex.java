@@ -0,0 +1,228 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.osgi.framework.plugin.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import org.jboss.osgi.framework.bundle.ServiceState;
+import org.osgi.framework.Constants;
+
+/**
+ * An index of registered services by objectClass.
+ *
+ * Every list in the index is kept in {@link org.jboss.osgi.framework.bundle.ServiceReferenceComparator} order,
+ * which is ascending by service ranking and descending by service id. The per-class lists are immutable snapshots
+ * that are replaced on every modification, so that readers never need to lock or sort. The set of all services
+ * is a concurrent skip list, so that a registration does not copy every registered service.
+ *
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+final class ServiceIndex
+{
+   // Maps the service interface to the sorted list of registered services
+   private final Map<String, List<ServiceState>> classIndex = new ConcurrentHashMap<String, List<ServiceState>>();
+   // Orders the services by the rankings they were indexed with
+   private final Comparator<ServiceState> indexComparator = new Comparator<ServiceState>()
+   {
+      @Override
+      public int compare(ServiceState s1, ServiceState s2)
+      {
+         if (s1 == s2)
+            return 0;
+         return ServiceIndex.this.compare(s1, rankings.get(s2), s2.getServiceId());
+      }
+   };
+   // The sorted set of all registered services
+   private final ConcurrentSkipListSet<ServiceState> allServices = new ConcurrentSkipListSet<ServiceState>(indexComparator);
+   // The service ranking each service was sorted with
+   private final Map<ServiceState, Integer> rankings = new IdentityHashMap<ServiceState, Integer>();
+
+   /**
+    * Get the sorted snapshot of services registered under the given class name,
+    * or all services if the class name is null.
+    * @return An unmodifiable, potentially empty list
+    */
+   List<ServiceState> getServices(String className)
+   {
+      if (className == null)
+         return Collections.unmodifiableList(new ArrayList<ServiceState>(allServices));
+
+      List<ServiceState> result = classIndex.get(className);
+      if (result == null)
+         return Collections.emptyList();
+
+      return result;
+   }
+
+   synchronized boolean containsService(ServiceState serviceState)
+   {
+      return rankings.containsKey(serviceState);
+   }
+
+   synchronized void addService(ServiceState serviceState)
+   {
+      int ranking = serviceState.getServiceRanking();
+      rankings.put(serviceState, ranking);
+      for (String className : getClassNames(serviceState))
+      {
+         List<ServiceState> list = getServices(className);
+         classIndex.put(className, insert(list, serviceState, ranking));
+      }
+      allServices.add(serviceState);
+   }
+
+   /**
+    * Add the given services with a single update per affected list.
+    */
+   synchronized void addServices(List<ServiceState> serviceStates)
+   {
+      Map<String, List<ServiceState>> additions = new HashMap<String, List<ServiceState>>();
+      for (ServiceState serviceState : serviceStates)
+      {
+         rankings.put(serviceState, serviceState.getServiceRanking());
+         for (String className : getClassNames(serviceState))
+         {
+            List<ServiceState> list = additions.get(className);
+            if (list == null)
+            {
+               list = new ArrayList<ServiceState>();
+               additions.put(className, list);
+            }
+            list.add(serviceState);
+         }
+      }
+      for (Map.Entry<String, List<ServiceState>> entry : additions.entrySet())
+      {
+         String className = entry.getKey();
+         classIndex.put(className, merge(getServices(className), entry.getValue()));
+      }
+      allServices.addAll(serviceStates);
+   }
+
+   synchronized void removeService(ServiceState serviceState)
+   {
+      if (rankings.containsKey(serviceState) == false)
+         return;
+
+      // The set is ordered by the indexed ranking, which must be known to remove the service
+      allServices.remove(serviceState);
+      rankings.remove(serviceState);
+      for (String className : getClassNames(serviceState))
+      {
+         List<ServiceState> list = remove(getServices(className), serviceState);
+         if (list.isEmpty())
+            classIndex.remove(className);
+         else
+            classIndex.put(className, list);
+      }
+   }
+
+   /**
+    * Reorder the given service if its ranking has changed since it was indexed.
+    */
+   synchronized void updateService(ServiceState serviceState)
+   {
+      Integer oldRanking = rankings.get(serviceState);
+      if (oldRanking == null)
+         return;
+
+      int ranking = serviceState.getServiceRanking();
+      if (oldRanking.intValue() == ranking)
+         return;
+
+      allServices.remove(serviceState);
+      rankings.put(serviceState, ranking);
+      for (String className : getClassNames(serviceState))
+      {
+         List<ServiceState> list = remove(getServices(className), serviceState);
+         classIndex.put(className, insert(list, serviceState, ranking));
+      }
+      allServices.add(serviceState);
+   }
+
+   private String[] getClassNames(ServiceState serviceState)
+   {
+      return (String[])serviceState.getProperty(Constants.OBJECTCLASS);
+   }
+
+   private List<ServiceState> insert(List<ServiceState> list, ServiceState serviceState, int ranking)
+   {
+      // Binary search for the insertion point, using the rankings the entries were indexed with
+      long serviceId = serviceState.getServiceId();
+      int low = 0;
+      int high = list.size() - 1;
+      while (low <= high)
+      {
+         int mid = (low + high) >>> 1;
+         if (compare(list.get(mid), ranking, serviceId) < 0)
+            low = mid + 1;
+         else
+            high = mid - 1;
+      }
+
+      List<ServiceState> result = new ArrayList<ServiceState>(list.size() + 1);
+      result.addAll(list.subList(0, low));
+      result.add(serviceState);
+      result.addAll(list.subList(low, list.size()));
+      return Collections.unmodifiableList(result);
+   }
+
+   private List<ServiceState> merge(List<ServiceState> list, List<ServiceState> serviceStates)
+   {
+      List<ServiceState> result = new ArrayList<ServiceState>(list.size() + serviceStates.size());
+      result.addAll(list);
+      result.addAll(serviceStates);
+      Collections.sort(result, indexComparator);
+      return Collections.unmodifiableList(result);
+   }
+
+   private List<ServiceState> remove(List<ServiceState> list, ServiceState serviceState)
+   {
+      List<ServiceState> result = new ArrayList<ServiceState>(list.size());
+      for (ServiceState aux : list)
+      {
+         if (aux != serviceState)
+            result.add(aux);
+      }
+      return Collections.unmodifiableList(result);
+   }
+
+   private int compare(ServiceState indexed, int ranking, long serviceId)
+   {
+      int indexedRanking = rankings.get(indexed);
+      if (indexedRanking != ranking)
+         return indexedRanking < ranking ? -1 : 1;
+
+      // A higher service id is less
+      long indexedId = indexed.getServiceId();
+      return indexedId > serviceId ? -1 : 1;
+   }
+}
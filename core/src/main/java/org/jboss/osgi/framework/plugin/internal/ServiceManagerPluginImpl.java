@@ -26,36 +26,36 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Dictionary;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.jboss.logging.Logger;
+import org.jboss.msc.service.AbstractServiceListener;
 import org.jboss.msc.service.BatchBuilder;
 import org.jboss.msc.service.BatchServiceBuilder;
 import org.jboss.msc.service.Service;
 import org.jboss.msc.service.ServiceContainer;
 import org.jboss.msc.service.ServiceController;
 import org.jboss.msc.service.ServiceController.Mode;
+import org.jboss.msc.service.ServiceController.State;
 import org.jboss.msc.service.ServiceName;
 import org.jboss.msc.service.ServiceRegistryException;
 import org.jboss.msc.service.StartContext;
 import org.jboss.msc.service.StartException;
 import org.jboss.msc.service.StopContext;
 import org.jboss.osgi.framework.bundle.AbstractBundle;
+import org.jboss.osgi.framework.bundle.AbstractRevision;
 import org.jboss.osgi.framework.bundle.BundleManager;
-import org.jboss.osgi.framework.bundle.ServiceReferenceComparator;
 import org.jboss.osgi.framework.bundle.ServiceState;
 import org.jboss.osgi.framework.plugin.AbstractPlugin;
 import org.jboss.osgi.framework.plugin.FrameworkEventsPlugin;
 import org.jboss.osgi.framework.plugin.PackageAdminPlugin;
 import org.jboss.osgi.framework.plugin.ServiceManagerPlugin;
+import org.jboss.osgi.framework.util.CompiledFilter;
 import org.jboss.osgi.framework.util.NoFilter;
 import org.jboss.osgi.framework.util.RemoveOnlyCollection;
 import org.jboss.osgi.modules.ModuleContext;
@@ -63,7 +63,6 @@ import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.framework.Filter;
-import org.osgi.framework.FrameworkUtil;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceEvent;
 import org.osgi.framework.ServiceFactory;
@@ -87,8 +86,22 @@ public class ServiceManagerPluginImpl extends AbstractPlugin implements ServiceM
    private AtomicLong identityGenerator = new AtomicLong();
    // The ServiceContainer
    private ServiceContainer serviceContainer;
-   // Maps the service interface to the list of registered service names
-   private Map<String, List<ServiceName>> serviceNameMap = new ConcurrentHashMap<String, List<ServiceName>>();
+   // The index of registered services by objectClass
+   private ServiceIndex serviceIndex = new ServiceIndex();
+   // The index of registered services by property value
+   private ServicePropertyIndex propertyIndex;
+   // The registry of service hooks
+   private ServiceHookRegistry hookRegistry;
+   // The services that are installed in the MSC service container
+   private Set<ServiceState> exportedServices = Collections.newSetFromMap(new ConcurrentHashMap<ServiceState, Boolean>());
+   // True if services are only installed in MSC when they get exported
+   private boolean lightweightMode;
+   // The listeners that bridge xservices by MSC service name
+   private ConcurrentMap<ServiceName, XServiceListener> xserviceListeners = new ConcurrentHashMap<ServiceName, XServiceListener>();
+   // Maps a class name to true if its prefixed xservice is bridged, or to false if there was none on lookup
+   private ConcurrentMap<String, Boolean> xserviceLookups = new ConcurrentHashMap<String, Boolean>();
+   // The bridged xservices, which are owned by their MSC service
+   private Set<ServiceState> xserviceStates = Collections.newSetFromMap(new ConcurrentHashMap<ServiceState, Boolean>());
 
    // Cache commonly used plugins
    private FrameworkEventsPlugin eventsPlugin;
@@ -101,6 +114,17 @@ public class ServiceManagerPluginImpl extends AbstractPlugin implements ServiceM
       // Get/Create the {@link ServiceContainer}
       ServiceController<?> serviceController = (ServiceController<?>)bundleManager.getProperty(ServiceController.class.getName());
       serviceContainer = serviceController != null ? serviceController.getServiceContainer() : ServiceContainer.Factory.create();
+
+      // Get the service property keys that are indexed
+      String indexKeys = (String)bundleManager.getProperty(PROP_JBOSS_OSGI_SERVICE_INDEX_KEYS);
+      if (indexKeys == null)
+         indexKeys = Constants.SERVICE_PID;
+      propertyIndex = new ServicePropertyIndex(serviceIndex, Arrays.asList(indexKeys.split(",")));
+      hookRegistry = new ServiceHookRegistry(bundleManager, this, serviceIndex);
+
+      // Get the registry mode
+      Object lightweight = bundleManager.getProperty(PROP_JBOSS_OSGI_SERVICE_LIGHTWEIGHT);
+      lightweightMode = (lightweight != null && Boolean.parseBoolean(lightweight.toString()));
    }
 
    @Override
@@ -123,36 +147,108 @@ public class ServiceManagerPluginImpl extends AbstractPlugin implements ServiceM
    }
 
    @Override
-   @SuppressWarnings({ "rawtypes", "unchecked" })
+   @SuppressWarnings("rawtypes")
    public ServiceState registerService(AbstractBundle bundleState, String[] clazzes, Object serviceValue, Dictionary properties)
    {
-      if (clazzes == null || clazzes.length == 0)
+      List<ServiceState> serviceStates = registerServices(bundleState, new String[][] { clazzes }, new Object[] { serviceValue }, new Dictionary[] { properties });
+      return serviceStates.get(0);
+   }
+
+   @Override
+   @SuppressWarnings("rawtypes")
+   public List<ServiceState> registerServices(AbstractBundle bundleState, String[][] clazzes, Object[] serviceValues, Dictionary[] properties)
+   {
+      if (clazzes == null)
          throw new IllegalArgumentException("Null service classes");
+      if (serviceValues == null || serviceValues.length != clazzes.length)
+         throw new IllegalArgumentException("Invalid service values");
+      if (properties != null && properties.length != clazzes.length)
+         throw new IllegalArgumentException("Invalid service properties");
 
       // Immediately after registration of a {@link ListenerHook}, the ListenerHook.added() method will be called
       // to provide the current collection of service listeners which had been added prior to the hook being registered.
       Collection<ListenerInfo> listenerInfos = null;
-      if (serviceValue instanceof ListenerHook)
-         listenerInfos = eventsPlugin.getServiceListenerInfos(null);
+      for (Object serviceValue : serviceValues)
+      {
+         if (serviceValue instanceof ListenerHook)
+         {
+            listenerInfos = eventsPlugin.getServiceListenerInfos(null);
+            break;
+         }
+      }
 
-      // A temporary association of the clazz and name
-      Map<ServiceName, String> associations = new HashMap<ServiceName, String>();
+      // Create all service states before anything gets installed
+      List<ServiceState> serviceStates = new ArrayList<ServiceState>(clazzes.length);
+      for (int i = 0; i < clazzes.length; i++)
+      {
+         Dictionary props = (properties != null ? properties[i] : null);
+         serviceStates.add(createServiceState(bundleState, clazzes[i], serviceValues[i], props));
+      }
+
+      // In lightweight mode the services live in the registry only
+      if (lightweightMode == true)
+      {
+         addServicesInternal(bundleState, serviceStates);
+      }
+      else
+      {
+         // Install the services with a single batch
+         BatchBuilder batchBuilder = serviceContainer.batchBuilder();
+         for (ServiceState serviceState : serviceStates)
+            addService(batchBuilder, serviceState);
+
+         try
+         {
+            batchBuilder.install();
+            exportedServices.addAll(serviceStates);
+
+            // Add the services to the index. We do this here
+            // in case anything went wrong during the install
+            addServicesInternal(bundleState, serviceStates);
+         }
+         catch (ServiceRegistryException ex)
+         {
+            log.error("Cannot register services: " + serviceStates, ex);
+         }
+      }
+
+      for (ServiceState serviceState : serviceStates)
+      {
+         // Call the newly added ListenerHook.added() method
+         Object serviceValue = serviceState.getRawValue();
+         if (serviceValue instanceof ListenerHook)
+         {
+            ListenerHook listenerHook = (ListenerHook)serviceValue;
+            listenerHook.added(listenerInfos);
+         }
+
+         // This event is synchronously delivered after the service has been registered with the Framework.
+         eventsPlugin.fireServiceEvent(bundleState, ServiceEvent.REGISTERED, serviceState);
+      }
+
+      return Collections.unmodifiableList(serviceStates);
+   }
+
+   @SuppressWarnings("rawtypes")
+   private ServiceState createServiceState(AbstractBundle bundleState, String[] clazzes, Object serviceValue, Dictionary properties)
+   {
+      if (clazzes == null || clazzes.length == 0)
+         throw new IllegalArgumentException("Null service classes");
 
-      // Generate the service names
-      long serviceId = getNextServiceId();
-      ServiceName[] serviceNames = new ServiceName[clazzes.length];
       for (int i = 0; i < clazzes.length; i++)
       {
          if (clazzes[i] == null)
             throw new IllegalArgumentException("Null service class at index: " + i);
-
-         String prefix = (i == 0 ? "jbosgi-service" : "jbosgi-alias");
-         String shortName = clazzes[i].substring(clazzes[i].lastIndexOf(".") + 1);
-         serviceNames[i] = ServiceName.of(prefix, bundleState.getSymbolicName(), shortName, new Long(serviceId).toString());
       }
 
-      final ServiceState serviceState = new ServiceState(bundleState, serviceId, serviceNames, clazzes, serviceValue, properties);
-      BatchBuilder batchBuilder = serviceContainer.batchBuilder();
+      // The service names are generated when the service gets installed in MSC
+      long serviceId = getNextServiceId();
+      return new ServiceState(bundleState, serviceId, null, clazzes, serviceValue, properties);
+   }
+
+   @SuppressWarnings({ "rawtypes", "unchecked" })
+   private void addService(BatchBuilder batchBuilder, final ServiceState serviceState)
+   {
       Service service = new Service()
       {
          @Override
@@ -173,51 +269,126 @@ public class ServiceManagerPluginImpl extends AbstractPlugin implements ServiceM
          }
       };
 
-      log.debug("Register service: " + Arrays.asList(serviceNames));
+      List<ServiceName> serviceNames = serviceState.getServiceNames();
+      if (log.isDebugEnabled())
+         log.debug("Register service: " + serviceNames);
 
-      ServiceName rootServiceName = serviceNames[0];
+      ServiceName rootServiceName = serviceNames.get(0);
       BatchServiceBuilder serviceBuilder = batchBuilder.addService(rootServiceName, service);
-      associations.put(rootServiceName, clazzes[0]);
 
       // Set the startup mode
       serviceBuilder.setInitialMode(Mode.AUTOMATIC);
 
       // Add the service aliases
-      for (int i = 1; i < serviceNames.length; i++)
+      for (int i = 1; i < serviceNames.size(); i++)
       {
-         ServiceName alias = serviceNames[i];
-         associations.put(alias, clazzes[1]);
+         ServiceName alias = serviceNames.get(i);
          serviceBuilder.addAliases(alias);
       }
+   }
+
+   @Override
+   public synchronized ServiceName exportService(ServiceState serviceState)
+   {
+      if (serviceState == null)
+         throw new IllegalArgumentException("Null serviceState");
+
+      // A bridged xservice already lives in MSC under its own name
+      if (xserviceStates.contains(serviceState))
+         return null;
+
+      ServiceName rootServiceName = serviceState.getServiceNames().get(0);
+      if (exportedServices.contains(serviceState) || serviceIndex.containsService(serviceState) == false)
+         return rootServiceName;
 
+      BatchBuilder batchBuilder = serviceContainer.batchBuilder();
+      addService(batchBuilder, serviceState);
       try
       {
          batchBuilder.install();
-
-         // Register the name association. We do this here
-         // in case anything went wrong during the install
-         for (Entry<ServiceName, String> aux : associations.entrySet())
-         {
-            bundleState.addRegisteredService(serviceState);
-            registerNameAssociation(aux.getValue(), aux.getKey());
-         }
+         exportedServices.add(serviceState);
       }
       catch (ServiceRegistryException ex)
       {
-         log.error("Cannot register services: " + serviceNames, ex);
+         log.error("Cannot export service: " + rootServiceName, ex);
       }
+      return rootServiceName;
+   }
+
+   @Override
+   public void registerXService(ServiceName serviceName, String className)
+   {
+      if (serviceName == null)
+         throw new IllegalArgumentException("Null serviceName");
+      if (className == null)
+         throw new IllegalArgumentException("Null className");
+
+      // An explicit registration retries a lookup that found no xservice
+      xserviceLookups.remove(className, Boolean.FALSE);
+      bridgeXService(serviceName, className);
+   }
 
-      // Call the newly added ListenerHook.added() method
-      if (serviceValue instanceof ListenerHook)
+   /**
+    * Bridge the xservice with the given name if it is installed.
+    * @return True if the xservice is installed
+    */
+   private boolean bridgeXService(ServiceName serviceName, String className)
+   {
+      XServiceListener listener = xserviceListeners.get(serviceName);
+      if (listener != null && listener.isRegistered())
+         return true;
+
+      ServiceController<?> controller = serviceContainer.getService(serviceName);
+      if (controller == null)
+         return false;
+
+      if (listener == null)
       {
-         ListenerHook listenerHook = (ListenerHook)serviceValue;
-         listenerHook.added(listenerInfos);
+         listener = new XServiceListener(serviceName, className);
+         XServiceListener previous = xserviceListeners.putIfAbsent(serviceName, listener);
+         if (previous != null)
+            listener = previous;
+         else
+            controller.addListener(listener);
       }
 
-      // This event is synchronously delivered after the service has been registered with the Framework.
-      eventsPlugin.fireServiceEvent(bundleState, ServiceEvent.REGISTERED, serviceState);
+      // Bridge the xservice immediately if its value is already available
+      listener.registerServiceState(controller);
+      return true;
+   }
+
+   /**
+    * Discover an xservice that was installed with the xservice prefix. The MSC container is
+    * only asked once per class name, until the xservice is removed or registered explicitly.
+    */
+   private void discoverXService(String className)
+   {
+      if (xserviceLookups.containsKey(className))
+         return;
+
+      ServiceName serviceName = ServiceName.of(ModuleContext.XSERVICE_PREFIX, className);
+      xserviceLookups.put(className, Boolean.valueOf(bridgeXService(serviceName, className)));
+   }
+
+   private void addServicesInternal(AbstractBundle bundleState, List<ServiceState> serviceStates)
+   {
+      for (ServiceState serviceState : serviceStates)
+         bundleState.addRegisteredService(serviceState);
+
+      serviceIndex.addServices(serviceStates);
+      for (ServiceState serviceState : serviceStates)
+      {
+         propertyIndex.addService(serviceState);
+         hookRegistry.addService(serviceState);
+      }
+   }
 
-      return serviceState;
+   private void addServiceInternal(AbstractBundle bundleState, ServiceState serviceState)
+   {
+      bundleState.addRegisteredService(serviceState);
+      serviceIndex.addService(serviceState);
+      propertyIndex.addService(serviceState);
+      hookRegistry.addService(serviceState);
    }
 
    @Override
@@ -248,7 +419,7 @@ public class ServiceManagerPluginImpl extends AbstractPlugin implements ServiceM
    {
       Filter filter = null;
       if (filterStr != null)
-         filter = FrameworkUtil.createFilter(filterStr);
+         filter = CompiledFilter.compile(filterStr);
 
       List<ServiceState> result = getServiceReferencesInternal(bundleState, clazz, filter, checkAssignable);
       result = processFindHooks(bundleState, clazz, filterStr, checkAssignable, result);
@@ -260,78 +431,45 @@ public class ServiceManagerPluginImpl extends AbstractPlugin implements ServiceM
       if (bundleState == null)
          throw new IllegalArgumentException("Null bundleState");
 
-      List<ServiceName> serviceNames;
+      // The index returns an unmodifiable snapshot in ascending ranking order
+      List<ServiceState> serviceStates = null;
+
+      // Narrow a filter-only lookup by the indexed service properties
+      if (clazz == null)
+         serviceStates = propertyIndex.getCandidates(filter);
+
+      // Discover an xservice that was installed with the xservice prefix
       if (clazz != null)
-      {
-         serviceNames = serviceNameMap.get(clazz);
-         if (serviceNames == null)
-            serviceNames = new ArrayList<ServiceName>();
-
-         // Add potentially registered xservcie
-         ServiceName xserviceName = ServiceName.of(ModuleContext.XSERVICE_PREFIX, clazz);
-         ServiceController<?> xservice = serviceContainer.getService(xserviceName);
-         if (xservice != null)
-            serviceNames.add(xserviceName);
-      }
-      else
-      {
-         // [MSC-9] Add ability to query the ServiceContainer
-         Set<ServiceName> allServiceNames = new HashSet<ServiceName>();
-         for (List<ServiceName> auxList : serviceNameMap.values())
-         {
-            for (ServiceName auxName : auxList)
-            {
-               if (auxName.toString().startsWith("jbosgi-service"))
-                  allServiceNames.add(auxName);
-            }
-         }
-         serviceNames = new ArrayList<ServiceName>(allServiceNames);
-      }
+         discoverXService(clazz);
+
+      if (serviceStates == null)
+         serviceStates = serviceIndex.getServices(clazz);
 
-      if (serviceNames.isEmpty())
+      if (serviceStates.isEmpty())
          return Collections.emptyList();
 
+      checkAssignable &= (clazz != null);
+      checkAssignable &= (bundleState.getBundleId() != 0);
+      if (filter == null && checkAssignable == false)
+         return serviceStates;
+
       if (filter == null)
          filter = NoFilter.INSTANCE;
 
+      // Filtering the sorted snapshot preserves the order
       List<ServiceState> result = new ArrayList<ServiceState>();
-      for (ServiceName serviceName : serviceNames)
+      for (ServiceState serviceState : serviceStates)
       {
-         ServiceController<?> controller = serviceContainer.getService(serviceName);
-         if (controller == null)
-            throw new IllegalStateException("Cannot obtain service for: " + serviceName);
-
-         Object value = controller.getValue();
-
-         // Create the ServiceState on demand for an XService instance
-         // [TODO] This should be done eagerly to keep the serviceId constant
-         // [TODO] service events for XService lifecycle changes
-         // [MSC-17] Canonical ServiceName string representation
-         if (value instanceof ServiceState == false && serviceName.toString().contains(ModuleContext.XSERVICE_PREFIX))
-         {
-            long serviceId = getNextServiceId();
-            Bundle bundle = packageAdmin.getBundle(value.getClass());
-            AbstractBundle owner = AbstractBundle.assertBundleState(bundle);
-            value = new ServiceState(owner, serviceId, new ServiceName[] { serviceName }, new String[] { clazz }, value, null);
-         }
-
-         ServiceState serviceState = (ServiceState)value;
          if (filter.match(serviceState) == false)
             continue;
 
          Object rawValue = serviceState.getRawValue();
-
-         checkAssignable &= (clazz != null);
-         checkAssignable &= (bundleState.getBundleId() != 0);
-         checkAssignable &= !(rawValue instanceof ServiceFactory);
-         if (checkAssignable == false || serviceState.isAssignableTo(bundleState, clazz))
+         if (checkAssignable == false || rawValue instanceof ServiceFactory || serviceState.isAssignableTo(bundleState, clazz))
          {
             result.add(serviceState);
          }
       }
 
-      // Sort the result
-      Collections.sort(result, ServiceReferenceComparator.getInstance());
       return Collections.unmodifiableList(result);
    }
 
@@ -344,17 +482,13 @@ public class ServiceManagerPluginImpl extends AbstractPlugin implements ServiceM
 
       // Add the given service ref to the list of used services
       bundleState.addServiceInUse(serviceState);
-      serviceState.addUsingBundle(bundleState);
 
       Object value = serviceState.getScopedValue(bundleState);
 
       // If the factory returned an invalid value
       // restore the service usage counts
       if (value == null)
-      {
          bundleState.removeServiceInUse(serviceState);
-         serviceState.removeUsingBundle(bundleState);
-      }
 
       return value;
    }
@@ -365,9 +499,6 @@ public class ServiceManagerPluginImpl extends AbstractPlugin implements ServiceM
       serviceState.ungetScopedValue(bundleState);
 
       int useCount = bundleState.removeServiceInUse(serviceState);
-      if (useCount == 0)
-         serviceState.removeUsingBundle(bundleState);
-
       return useCount >= 0;
    }
 
@@ -377,50 +508,50 @@ public class ServiceManagerPluginImpl extends AbstractPlugin implements ServiceM
       return bundleState.getServicesInUseInternal();
    }
 
-   private void registerNameAssociation(String className, ServiceName serviceName)
+   @Override
+   public Set<AbstractBundle> getUsingBundles(ServiceState serviceState)
    {
-      synchronized (serviceNameMap)
-      {
-         List<ServiceName> names = serviceNameMap.get(className);
-         if (names == null)
-         {
-            names = new CopyOnWriteArrayList<ServiceName>();
-            serviceNameMap.put(className, names);
-         }
-         names.add(serviceName);
-      }
+      return serviceState.getUsingBundlesInternal();
    }
 
-   private boolean unregisterNameAssociation(String className, ServiceName serviceName)
+   @Override
+   public <T> List<T> getServiceHooks(Class<T> hookType)
    {
-      boolean removed = false;
-      List<ServiceName> names = serviceNameMap.get(className);
-      if (names != null)
-      {
-         removed = names.remove(serviceName);
-         if (names.isEmpty())
-            serviceNameMap.remove(className);
-      }
-      return removed;
+      return hookRegistry.getHooks(hookType);
    }
 
    @Override
-   public Set<AbstractBundle> getUsingBundles(ServiceState serviceState)
+   public void clearAssignableCache(AbstractRevision revision)
    {
-      return serviceState.getUsingBundlesInternal();
+      // Only visit the services that cached a result for the revision and the services it registered
+      for (ServiceState serviceState : revision.getAssignableCacheServices())
+         serviceState.clearAssignableCache(revision);
+      for (ServiceState serviceState : revision.getBundleState().getRegisteredServicesInternal())
+         serviceState.clearAssignableCache(revision);
+   }
+
+   @Override
+   public void updateService(ServiceState serviceState)
+   {
+      serviceIndex.updateService(serviceState);
+      propertyIndex.updateService(serviceState);
+      hookRegistry.updateService(serviceState);
    }
 
    @Override
    public void unregisterService(ServiceState serviceState)
    {
-      List<ServiceName> serviceNames = serviceState.getServiceNames();
-      log.debug("Unregister service: " + serviceNames);
+      if (log.isDebugEnabled())
+         log.debug("Unregister service: " + serviceState);
 
       AbstractBundle serviceOwner = serviceState.getServiceOwner();
 
       // This event is synchronously delivered before the service has completed unregistering.
       eventsPlugin.fireServiceEvent(serviceOwner, ServiceEvent.UNREGISTERING, serviceState);
 
+      // Remove from the service hooks
+      hookRegistry.removeService(serviceState);
+
       // Remove from using bundles
       for (AbstractBundle bundleState : serviceState.getUsingBundlesInternal())
       {
@@ -430,19 +561,23 @@ public class ServiceManagerPluginImpl extends AbstractPlugin implements ServiceM
 
       // Remove from owner bundle
       serviceOwner.removeRegisteredService(serviceState);
+      serviceState.clearAssignableCache(serviceOwner.getCurrentRevision());
 
-      // Unregister name associations
-      String[] clazzes = (String[])serviceState.getProperty(Constants.OBJECTCLASS);
-      for (ServiceName serviceName : serviceNames)
+      // Remove from the service index
+      serviceIndex.removeService(serviceState);
+      propertyIndex.removeService(serviceState);
+
+      // A bridged xservice is only removed from the OSGi registry, its MSC service is not owned by the bundle
+      boolean exported;
+      synchronized (this)
       {
-         for (String clazz : clazzes)
-         {
-            unregisterNameAssociation(clazz, serviceName);
-         }
+         exported = exportedServices.remove(serviceState);
       }
+      if (xserviceStates.remove(serviceState) || exported == false)
+         return;
 
       // Remove from controller
-      ServiceName rootServiceName = serviceNames.get(0);
+      ServiceName rootServiceName = serviceState.getServiceNames().get(0);
       try
       {
          ServiceController<?> controller = serviceContainer.getService(rootServiceName);
@@ -465,23 +600,17 @@ public class ServiceManagerPluginImpl extends AbstractPlugin implements ServiceM
     */
    private List<ServiceState> processFindHooks(AbstractBundle bundle, String clazz, String filterStr, boolean checkAssignable, List<ServiceState> serviceStates)
    {
-      BundleContext context = bundle.getBundleContext();
-      List<ServiceState> hookRefs = getServiceReferencesInternal(bundle, FindHook.class.getName(), null, true);
-      if (hookRefs.isEmpty())
+      // The order in which the find hooks are called is the reverse compareTo ordering of
+      // their ServiceReferences. That is, the service with the highest ranking number must be called first.
+      List<FindHook> hooks = hookRegistry.getHooks(FindHook.class);
+      if (hooks.isEmpty())
          return serviceStates;
 
       // Event and Find Hooks can not be used to hide the services from the framework.
       if (clazz != null && clazz.startsWith(FindHook.class.getPackage().getName()))
          return serviceStates;
 
-      // The order in which the find hooks are called is the reverse compareTo ordering of
-      // their ServiceReferences. That is, the service with the highest ranking number must be called first.
-      List<ServiceReference> sortedHookRefs = new ArrayList<ServiceReference>(hookRefs);
-      Collections.reverse(sortedHookRefs);
-
-      List<FindHook> hooks = new ArrayList<FindHook>();
-      for (ServiceReference hookRef : sortedHookRefs)
-         hooks.add((FindHook)context.getService(hookRef));
+      BundleContext context = bundle.getBundleContext();
 
       Collection<ServiceReference> hookParam = new ArrayList<ServiceReference>();
       for (ServiceState aux : serviceStates)
@@ -509,4 +638,98 @@ public class ServiceManagerPluginImpl extends AbstractPlugin implements ServiceM
 
       return result;
    }
-}
\ No newline at end of file
+
+   /**
+    * Bridges an xservice into the OSGi service registry.
+    * 
+    * The {@link ServiceState} is created once, when the MSC service value becomes available, 
+    * and is unregistered when the MSC service goes down. The owner of the bridged service is the
+    * bundle that defines the class of the service value. The MSC service itself is never removed 
+    * by the OSGi registry.
+    */
+   class XServiceListener extends AbstractServiceListener<Object>
+   {
+      private ServiceName serviceName;
+      private String className;
+      private AtomicReference<ServiceState> serviceStateRef = new AtomicReference<ServiceState>();
+
+      XServiceListener(ServiceName serviceName, String className)
+      {
+         this.serviceName = serviceName;
+         this.className = className;
+      }
+
+      boolean isRegistered()
+      {
+         ServiceState serviceState = serviceStateRef.get();
+         return serviceState != null && serviceState.isUnregistered() == false;
+      }
+
+      @Override
+      public void serviceStarted(ServiceController<? extends Object> controller)
+      {
+         registerServiceState(controller);
+      }
+
+      @Override
+      public void serviceStopping(ServiceController<? extends Object> controller)
+      {
+         unregisterServiceState();
+      }
+
+      @Override
+      public void serviceRemoved(ServiceController<? extends Object> controller)
+      {
+         unregisterServiceState();
+         controller.removeListener(this);
+         xserviceListeners.remove(serviceName, this);
+         xserviceLookups.remove(className);
+      }
+
+      synchronized void registerServiceState(ServiceController<? extends Object> controller)
+      {
+         if (isRegistered() || controller.getState() != State.UP)
+            return;
+
+         Object value = controller.getValue();
+         Bundle bundle = packageAdmin.getBundle(value.getClass());
+         AbstractBundle owner = (bundle != null ? AbstractBundle.assertBundleState(bundle) : getBundleManager().getSystemBundle());
+         long serviceId = getNextServiceId();
+         ServiceState serviceState;
+         try
+         {
+            serviceState = new ServiceState(owner, serviceId, new ServiceName[] { serviceName }, new String[] { className }, value, null);
+         }
+         catch (RuntimeException ex)
+         {
+            log.error("Cannot register xservice: " + serviceName, ex);
+            return;
+         }
+
+         log.debug("Register xservice: " + serviceName);
+         serviceStateRef.set(serviceState);
+         xserviceStates.add(serviceState);
+         addServiceInternal(owner, serviceState);
+
+         // This event is synchronously delivered after the service has been registered with the Framework.
+         eventsPlugin.fireServiceEvent(owner, ServiceEvent.REGISTERED, serviceState);
+      }
+
+      synchronized void unregisterServiceState()
+      {
+         ServiceState serviceState = serviceStateRef.getAndSet(null);
+         if (serviceState == null || serviceState.isUnregistered())
+            return;
+
+         log.debug("Unregister xservice: " + serviceName);
+         try
+         {
+            serviceState.unregister();
+         }
+         catch (IllegalStateException ex)
+         {
+            // The service was unregistered concurrently
+         }
+      }
+   }
+}
@@ -0,0 +1,255 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.osgi.framework.plugin.internal;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jboss.osgi.framework.bundle.ServiceReferenceComparator;
+import org.jboss.osgi.framework.bundle.ServiceState;
+import org.jboss.osgi.framework.util.CompiledFilter;
+import org.osgi.framework.Constants;
+import org.osgi.framework.Filter;
+
+/**
+ * A secondary index of registered services by the values of a configurable set of service properties.
+ *
+ * The index is used to narrow the candidate services for a filter-only lookup. Only the equality and
+ * presence terms of a top level conjunction are used. The candidates must still be matched against the
+ * full filter.
+ *
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+final class ServicePropertyIndex
+{
+   // The objectClass key is served by the class index
+   private static final String OBJECTCLASS_KEY = Constants.OBJECTCLASS.toLowerCase();
+
+   // The index of registered services by objectClass
+   private final ServiceIndex classIndex;
+   // Maps the lower case property key to its value index
+   private final Map<String, KeyIndex> keyIndexes = new HashMap<String, KeyIndex>();
+   // The property values each service was indexed with
+   private final Map<ServiceState, Map<String, Object>> indexedValues = new IdentityHashMap<ServiceState, Map<String, Object>>();
+
+   ServicePropertyIndex(ServiceIndex classIndex, Collection<String> keys)
+   {
+      if (classIndex == null)
+         throw new IllegalArgumentException("Null classIndex");
+      if (keys == null)
+         throw new IllegalArgumentException("Null keys");
+
+      this.classIndex = classIndex;
+      for (String key : keys)
+      {
+         key = key.trim().toLowerCase();
+         if (key.length() > 0 && key.equals(OBJECTCLASS_KEY) == false)
+            keyIndexes.put(key, new KeyIndex());
+      }
+   }
+
+   Set<String> getIndexedKeys()
+   {
+      return Collections.unmodifiableSet(keyIndexes.keySet());
+   }
+
+   synchronized void addService(ServiceState serviceState)
+   {
+      if (keyIndexes.isEmpty())
+         return;
+
+      Map<String, Object> values = new HashMap<String, Object>();
+      for (Map.Entry<String, KeyIndex> entry : keyIndexes.entrySet())
+      {
+         Object value = serviceState.getProperty(entry.getKey());
+         if (value != null)
+         {
+            entry.getValue().add(serviceState, value);
+            values.put(entry.getKey(), value);
+         }
+      }
+      indexedValues.put(serviceState, values);
+   }
+
+   synchronized void removeService(ServiceState serviceState)
+   {
+      Map<String, Object> values = indexedValues.remove(serviceState);
+      if (values == null)
+         return;
+
+      for (Map.Entry<String, Object> entry : values.entrySet())
+      {
+         KeyIndex keyIndex = keyIndexes.get(entry.getKey());
+         keyIndex.remove(serviceState, entry.getValue());
+      }
+   }
+
+   synchronized void updateService(ServiceState serviceState)
+   {
+      if (indexedValues.containsKey(serviceState))
+      {
+         removeService(serviceState);
+         addService(serviceState);
+      }
+   }
+
+   /**
+    * Get the candidate services for the given filter in ascending ranking order.
+    * @return The candidates or null if the index cannot narrow the search
+    */
+   List<ServiceState> getCandidates(Filter filter)
+   {
+      if (filter instanceof CompiledFilter == false)
+         return null;
+
+      Collection<ServiceState> candidates = null;
+      for (String[] term : ((CompiledFilter)filter).getRequiredTerms())
+      {
+         String key = term[0];
+         String value = term[1];
+         Collection<ServiceState> termCandidates = null;
+         if (key.equals(OBJECTCLASS_KEY))
+         {
+            if (value != null)
+               termCandidates = classIndex.getServices(value);
+         }
+         else
+         {
+            KeyIndex keyIndex = keyIndexes.get(key);
+            if (keyIndex != null)
+               termCandidates = keyIndex.getCandidates(value);
+         }
+
+         if (termCandidates != null && (candidates == null || termCandidates.size() < candidates.size()))
+            candidates = termCandidates;
+      }
+
+      if (candidates == null)
+         return null;
+
+      if (candidates instanceof List)
+         return (List<ServiceState>)candidates;
+
+      List<ServiceState> result = new ArrayList<ServiceState>(candidates);
+      Collections.sort(result, ServiceReferenceComparator.getInstance());
+      return result;
+   }
+
+   /**
+    * The services indexed under a single property key.
+    */
+   static class KeyIndex
+   {
+      // Maps a string value to the services that have it
+      private final Map<String, Set<ServiceState>> valueMap = new ConcurrentHashMap<String, Set<ServiceState>>();
+      // The services that have the property
+      private final Set<ServiceState> present = newServiceSet();
+      // The services that have a value which cannot be indexed by string
+      private final Set<ServiceState> unindexed = newServiceSet();
+
+      Collection<ServiceState> getCandidates(String value)
+      {
+         if (value == null)
+            return present;
+
+         Set<ServiceState> matches = valueMap.get(value);
+         if (matches == null)
+            return unindexed;
+         if (unindexed.isEmpty())
+            return matches;
+
+         Set<ServiceState> result = new HashSet<ServiceState>(matches);
+         result.addAll(unindexed);
+         return result;
+      }
+
+      void add(ServiceState serviceState, Object value)
+      {
+         present.add(serviceState);
+         for (Object element : getElements(value))
+         {
+            if (element instanceof String)
+            {
+               Set<ServiceState> matches = valueMap.get(element);
+               if (matches == null)
+               {
+                  matches = newServiceSet();
+                  valueMap.put((String)element, matches);
+               }
+               matches.add(serviceState);
+            }
+            else
+            {
+               unindexed.add(serviceState);
+            }
+         }
+      }
+
+      void remove(ServiceState serviceState, Object value)
+      {
+         present.remove(serviceState);
+         unindexed.remove(serviceState);
+         for (Object element : getElements(value))
+         {
+            Set<ServiceState> matches = (element instanceof String ? valueMap.get(element) : null);
+            if (matches != null)
+            {
+               matches.remove(serviceState);
+               if (matches.isEmpty())
+                  valueMap.remove(element);
+            }
+         }
+      }
+
+      private static Collection<?> getElements(Object value)
+      {
+         if (value instanceof Collection)
+            return (Collection<?>)value;
+
+         if (value.getClass().isArray())
+         {
+            int length = Array.getLength(value);
+            List<Object> result = new ArrayList<Object>(length);
+            for (int i = 0; i < length; i++)
+               result.add(Array.get(value, i));
+            return result;
+         }
+
+         return Collections.singleton(value);
+      }
+
+      private static Set<ServiceState> newServiceSet()
+      {
+         return Collections.newSetFromMap(new ConcurrentHashMap<ServiceState, Boolean>());
+      }
+   }
+}
@@ -23,7 +23,6 @@ package org.jboss.osgi.framework.plugin.internal;
 
 import java.util.Collection;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 import org.jboss.logging.Logger;
 import org.jboss.osgi.framework.bundle.AbstractBundle;
@@ -33,6 +32,7 @@ import org.jboss.osgi.framework.bundle.HostBundle;
 import org.jboss.osgi.framework.bundle.SystemBundle;
 import org.jboss.osgi.framework.plugin.AbstractPlugin;
 import org.jboss.osgi.framework.plugin.FrameworkEventsPlugin;
+import org.jboss.osgi.framework.plugin.FrameworkExecutorPlugin;
 import org.jboss.osgi.framework.plugin.StartLevelPlugin;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
@@ -50,7 +50,7 @@ public class StartLevelPluginImpl extends AbstractPlugin implements StartLevelPl
    final Logger log = Logger.getLogger(StartLevelPluginImpl.class);
 
    private final FrameworkEventsPlugin eventsPlugin;
-   private Executor executor = Executors.newSingleThreadExecutor();
+   private final Executor executor;
    private int initialBundleStartLevel = 1; // Synchronized on this
    private ServiceRegistration registration;
    private int startLevel = 0; // Synchronized on this
@@ -59,6 +59,7 @@ public class StartLevelPluginImpl extends AbstractPlugin implements StartLevelPl
    {
       super(bundleManager);
       eventsPlugin = getPlugin(FrameworkEventsPlugin.class);
+      executor = getPlugin(FrameworkExecutorPlugin.class).createSerialExecutor("StartLevel");
    }
 
    @Override
@@ -233,6 +234,20 @@ public class StartLevelPluginImpl extends AbstractPlugin implements StartLevelPl
     */
    @Override
    public synchronized void increaseStartLevel(int sl)
+   {
+      // Deliver the bundle events of the start level change in one batch
+      eventsPlugin.beginBundleEventBatch();
+      try
+      {
+         increaseStartLevelInternal(sl);
+      }
+      finally
+      {
+         eventsPlugin.endBundleEventBatch();
+      }
+   }
+
+   private void increaseStartLevelInternal(int sl)
    {
       Collection<AbstractBundle> bundles = getBundleManager().getBundles();
       while (startLevel < sl)
@@ -274,6 +289,20 @@ public class StartLevelPluginImpl extends AbstractPlugin implements StartLevelPl
     */
    @Override
    public synchronized void decreaseStartLevel(int sl)
+   {
+      // Deliver the bundle events of the start level change in one batch
+      eventsPlugin.beginBundleEventBatch();
+      try
+      {
+         decreaseStartLevelInternal(sl);
+      }
+      finally
+      {
+         eventsPlugin.endBundleEventBatch();
+      }
+   }
+
+   private void decreaseStartLevelInternal(int sl)
    {
       Collection<AbstractBundle> bundles = getBundleManager().getBundles();
       while (startLevel > sl)
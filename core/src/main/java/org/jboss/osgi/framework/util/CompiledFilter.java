@@ -0,0 +1,823 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.osgi.framework.util;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jboss.osgi.framework.bundle.ServiceReferenceWrapper;
+import org.jboss.osgi.framework.bundle.ServiceState;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * A filter that is parsed once into a matcher for lower case property maps.
+ *
+ * The filter string is validated by {@link FrameworkUtil#createFilter(String)}, which also
+ * provides the normalized string representation and case sensitive matching. Values are compared
+ * with the same semantics as the filter returned by {@link FrameworkUtil}, but numbers, booleans
+ * and values of {@link Comparable} types are converted only once.
+ *
+ * Compiled filters are immutable and shared through a bounded cache keyed by filter string.
+ * When the cache is full, the least recently used entry is evicted.
+ *
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+public final class CompiledFilter implements Filter
+{
+   // The maximum number of cached filters
+   private static final int MAX_CACHE_SIZE = 1024;
+
+   // The shared cache of compiled filters in access order, synchronized on itself
+   private static final Map<String, CompiledFilter> filterCache = new LinkedHashMap<String, CompiledFilter>(16, 0.75f, true)
+   {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CompiledFilter> eldest)
+      {
+         return size() > MAX_CACHE_SIZE;
+      }
+   };
+
+   private static final int EQUAL = 1;
+   private static final int APPROX = 2;
+   private static final int GREATER = 3;
+   private static final int LESS = 4;
+   private static final int SUBSTRING = 5;
+
+   // The filter that provides validation and the normalized string
+   private final Filter delegate;
+   // The root of the compiled filter
+   private final Node root;
+   // The equality and presence terms that must be satisfied for the filter to match
+   private final List<String[]> requiredTerms;
+   // The lower case keys of all terms
+   private final Set<String> referencedKeys;
+
+   private CompiledFilter(Filter delegate)
+   {
+      this.delegate = delegate;
+      this.root = new Parser(delegate.toString()).parse();
+
+      List<String[]> terms = new ArrayList<String[]>();
+      if (root instanceof And)
+      {
+         for (Node node : ((And)root).operands)
+            addRequiredTerm(terms, node);
+      }
+      else
+      {
+         addRequiredTerm(terms, root);
+      }
+      this.requiredTerms = Collections.unmodifiableList(terms);
+
+      Set<String> keys = new HashSet<String>();
+      addReferencedKeys(keys, root);
+      this.referencedKeys = Collections.unmodifiableSet(keys);
+   }
+
+   /**
+    * Get the compiled filter for the given filter string.
+    * @throws InvalidSyntaxException If the filter string contains an invalid filter
+    */
+   public static CompiledFilter compile(String filterstr) throws InvalidSyntaxException
+   {
+      if (filterstr == null)
+         throw new IllegalArgumentException("Null filter");
+
+      CompiledFilter result;
+      synchronized (filterCache)
+      {
+         result = filterCache.get(filterstr);
+      }
+      if (result == null)
+      {
+         // Compile outside the lock, a concurrent compile of the same string is harmless
+         result = new CompiledFilter(FrameworkUtil.createFilter(filterstr));
+         synchronized (filterCache)
+         {
+            filterCache.put(filterstr, result);
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Get the equality and presence terms of a top level conjunction, which must all be
+    * satisfied for the filter to match. Each term is a lower case key and a value, which
+    * is null for a presence term.
+    */
+   public List<String[]> getRequiredTerms()
+   {
+      return requiredTerms;
+   }
+
+   /**
+    * Get the lower case keys of all terms in this filter.
+    */
+   public Set<String> getReferencedKeys()
+   {
+      return referencedKeys;
+   }
+
+   /**
+    * True if any of the given lower case keys is referenced by this filter.
+    */
+   public boolean referencesAny(Collection<String> keys)
+   {
+      for (String key : keys)
+      {
+         if (referencedKeys.contains(key))
+            return true;
+      }
+      return false;
+   }
+
+   /**
+    * Match the filter against a map of properties with lower case keys.
+    */
+   public boolean matchProperties(Map<String, ?> properties)
+   {
+      return root.match(properties);
+   }
+
+   @Override
+   public boolean match(ServiceReference reference)
+   {
+      if (reference instanceof ServiceState || reference instanceof ServiceReferenceWrapper)
+      {
+         ServiceState serviceState = ServiceState.assertServiceState(reference);
+         return root.match(serviceState.getPropertiesInternal());
+      }
+
+      Map<String, Object> properties = new HashMap<String, Object>();
+      String[] keys = reference.getPropertyKeys();
+      if (keys != null)
+      {
+         for (String key : keys)
+            properties.put(key.toLowerCase(), reference.getProperty(key));
+      }
+      return root.match(properties);
+   }
+
+   @Override
+   @SuppressWarnings("rawtypes")
+   public boolean match(Dictionary dictionary)
+   {
+      Map<String, Object> properties = new HashMap<String, Object>();
+      if (dictionary != null)
+      {
+         Enumeration keys = dictionary.keys();
+         while (keys.hasMoreElements())
+         {
+            Object key = keys.nextElement();
+            if (key instanceof String)
+               properties.put(((String)key).toLowerCase(), dictionary.get(key));
+         }
+      }
+      return root.match(properties);
+   }
+
+   @Override
+   @SuppressWarnings("rawtypes")
+   public boolean matchCase(Dictionary dictionary)
+   {
+      return delegate.matchCase(dictionary);
+   }
+
+   @Override
+   public boolean equals(Object obj)
+   {
+      if (obj == this)
+         return true;
+      if (obj instanceof Filter == false)
+         return false;
+      return toString().equals(obj.toString());
+   }
+
+   @Override
+   public int hashCode()
+   {
+      return toString().hashCode();
+   }
+
+   @Override
+   public String toString()
+   {
+      return delegate.toString();
+   }
+
+   private static void addRequiredTerm(List<String[]> terms, Node node)
+   {
+      if (node instanceof Present)
+      {
+         terms.add(new String[] { ((Present)node).key, null });
+      }
+      else if (node instanceof Compare && ((Compare)node).operation == EQUAL)
+      {
+         Compare compare = (Compare)node;
+         terms.add(new String[] { compare.key, compare.value });
+      }
+   }
+
+   private static void addReferencedKeys(Set<String> keys, Node node)
+   {
+      if (node instanceof And)
+      {
+         for (Node aux : ((And)node).operands)
+            addReferencedKeys(keys, aux);
+      }
+      else if (node instanceof Or)
+      {
+         for (Node aux : ((Or)node).operands)
+            addReferencedKeys(keys, aux);
+      }
+      else if (node instanceof Not)
+      {
+         addReferencedKeys(keys, ((Not)node).operand);
+      }
+      else if (node instanceof Present)
+      {
+         keys.add(((Present)node).key);
+      }
+      else if (node instanceof Compare)
+      {
+         keys.add(((Compare)node).key);
+      }
+   }
+
+   /**
+    * Map a string for an APPROX (~=) comparison. This removes white spaces.
+    */
+   private static String approxString(String input)
+   {
+      StringBuffer sb = new StringBuffer(input.length());
+      for (int i = 0; i < input.length(); i++)
+      {
+         char ch = input.charAt(i);
+         if (Character.isWhitespace(ch) == false)
+            sb.append(ch);
+      }
+      return sb.toString();
+   }
+
+   private static abstract class Node
+   {
+      abstract boolean match(Map<String, ?> properties);
+   }
+
+   private static class And extends Node
+   {
+      final Node[] operands;
+
+      And(Node[] operands)
+      {
+         this.operands = operands;
+      }
+
+      @Override
+      boolean match(Map<String, ?> properties)
+      {
+         for (Node node : operands)
+         {
+            if (node.match(properties) == false)
+               return false;
+         }
+         return true;
+      }
+   }
+
+   private static class Or extends Node
+   {
+      final Node[] operands;
+
+      Or(Node[] operands)
+      {
+         this.operands = operands;
+      }
+
+      @Override
+      boolean match(Map<String, ?> properties)
+      {
+         for (Node node : operands)
+         {
+            if (node.match(properties))
+               return true;
+         }
+         return false;
+      }
+   }
+
+   private static class Not extends Node
+   {
+      final Node operand;
+
+      Not(Node operand)
+      {
+         this.operand = operand;
+      }
+
+      @Override
+      boolean match(Map<String, ?> properties)
+      {
+         return operand.match(properties) == false;
+      }
+   }
+
+   private static class Present extends Node
+   {
+      final String key;
+
+      Present(String key)
+      {
+         this.key = key;
+      }
+
+      @Override
+      boolean match(Map<String, ?> properties)
+      {
+         return properties.get(key) != null;
+      }
+   }
+
+   /**
+    * A comparison of a property value with a filter value, which is converted
+    * to the type of the property value only once.
+    */
+   private static class Compare extends Node
+   {
+      // Marks a value that cannot be converted
+      private static final Object NO_VALUE = new Object();
+
+      final int operation;
+      final String key;
+      final String value;
+      final String[] substrings;
+
+      private final String approxValue;
+      private final Object intValue;
+      private final Object longValue;
+      private final Object byteValue;
+      private final Object shortValue;
+      private final Object floatValue;
+      private final Object doubleValue;
+      private final boolean booleanValue;
+      private final Map<Class<?>, Object> typedValues = new ConcurrentHashMap<Class<?>, Object>();
+
+      Compare(int operation, String key, String value, String[] substrings)
+      {
+         this.operation = operation;
+         this.key = key;
+         this.value = value;
+         this.substrings = substrings;
+
+         String trimmed = (value != null ? value.trim() : null);
+         this.approxValue = (value != null ? approxString(value) : null);
+         this.intValue = parseNumber(Integer.class, trimmed);
+         this.longValue = parseNumber(Long.class, trimmed);
+         this.byteValue = parseNumber(Byte.class, trimmed);
+         this.shortValue = parseNumber(Short.class, trimmed);
+         this.floatValue = parseNumber(Float.class, trimmed);
+         this.doubleValue = parseNumber(Double.class, trimmed);
+         this.booleanValue = (trimmed != null ? Boolean.valueOf(trimmed).booleanValue() : false);
+      }
+
+      private static Object parseNumber(Class<?> type, String trimmed)
+      {
+         if (trimmed == null)
+            return NO_VALUE;
+         try
+         {
+            if (type == Integer.class)
+               return Integer.valueOf(trimmed);
+            if (type == Long.class)
+               return Long.valueOf(trimmed);
+            if (type == Byte.class)
+               return Byte.valueOf(trimmed);
+            if (type == Short.class)
+               return Short.valueOf(trimmed);
+            if (type == Float.class)
+               return Float.valueOf(trimmed);
+            return Double.valueOf(trimmed);
+         }
+         catch (IllegalArgumentException ex)
+         {
+            return NO_VALUE;
+         }
+      }
+
+      @Override
+      boolean match(Map<String, ?> properties)
+      {
+         return compare(properties.get(key));
+      }
+
+      private boolean compare(Object propValue)
+      {
+         if (propValue == null)
+            return false;
+
+         if (propValue instanceof String)
+            return compareString((String)propValue);
+
+         if (propValue.getClass().isArray())
+         {
+            int length = Array.getLength(propValue);
+            for (int i = 0; i < length; i++)
+            {
+               if (compare(Array.get(propValue, i)))
+                  return true;
+            }
+            return false;
+         }
+
+         if (propValue instanceof Collection)
+         {
+            for (Object element : (Collection<?>)propValue)
+            {
+               if (compare(element))
+                  return true;
+            }
+            return false;
+         }
+
+         // Only strings support substring comparisons
+         if (operation == SUBSTRING)
+            return false;
+
+         if (propValue instanceof Integer)
+            return compareNumber(propValue, intValue);
+         if (propValue instanceof Long)
+            return compareNumber(propValue, longValue);
+         if (propValue instanceof Byte)
+            return compareNumber(propValue, byteValue);
+         if (propValue instanceof Short)
+            return compareNumber(propValue, shortValue);
+         if (propValue instanceof Float)
+            return compareNumber(propValue, floatValue);
+         if (propValue instanceof Double)
+            return compareNumber(propValue, doubleValue);
+         if (propValue instanceof Character)
+            return compareCharacter(((Character)propValue).charValue());
+         if (propValue instanceof Boolean)
+            return ((Boolean)propValue).booleanValue() == booleanValue;
+
+         Object typedValue = getTypedValue(propValue.getClass());
+         if (typedValue == NO_VALUE)
+            return false;
+
+         try
+         {
+            if (propValue instanceof Comparable)
+            {
+               @SuppressWarnings("unchecked")
+               int result = ((Comparable<Object>)propValue).compareTo(typedValue);
+               return compareResult(result);
+            }
+            return propValue.equals(typedValue);
+         }
+         catch (Exception ex)
+         {
+            return false;
+         }
+      }
+
+      private boolean compareString(String string)
+      {
+         switch (operation)
+         {
+            case SUBSTRING:
+               return compareSubstring(string);
+            case EQUAL:
+               return string.equals(value);
+            case APPROX:
+               return approxString(string).equalsIgnoreCase(approxValue);
+            case GREATER:
+               return string.compareTo(value) >= 0;
+            case LESS:
+               return string.compareTo(value) <= 0;
+         }
+         return false;
+      }
+
+      private boolean compareSubstring(String string)
+      {
+         int pos = 0;
+         for (int i = 0, size = substrings.length; i < size; i++)
+         {
+            String substr = substrings[i];
+            if (i + 1 < size)
+            {
+               if (substr == null)
+               {
+                  String substr2 = substrings[i + 1];
+                  if (substr2 == null)
+                     continue;
+
+                  int index = string.indexOf(substr2, pos);
+                  if (index == -1)
+                     return false;
+
+                  pos = index + substr2.length();
+                  if (i + 2 < size)
+                     i++;
+               }
+               else
+               {
+                  int len = substr.length();
+                  if (string.regionMatches(pos, substr, 0, len) == false)
+                     return false;
+
+                  pos += len;
+               }
+            }
+            else
+            {
+               if (substr == null)
+                  return true;
+
+               return string.endsWith(substr);
+            }
+         }
+         return true;
+      }
+
+      @SuppressWarnings({ "rawtypes", "unchecked" })
+      private boolean compareNumber(Object propValue, Object filterValue)
+      {
+         if (filterValue == NO_VALUE)
+            return false;
+
+         // Float and Double compareTo have the semantics of Float.compare and Double.compare
+         int result = ((Comparable)propValue).compareTo(filterValue);
+         return compareResult(result);
+      }
+
+      private boolean compareCharacter(char charval)
+      {
+         String trimmed = value.trim();
+         if (trimmed.length() == 0)
+            return false;
+
+         char charval2 = trimmed.charAt(0);
+         switch (operation)
+         {
+            case EQUAL:
+               return charval == charval2;
+            case APPROX:
+               return (charval == charval2) || (Character.toUpperCase(charval) == Character.toUpperCase(charval2))
+                     || (Character.toLowerCase(charval) == Character.toLowerCase(charval2));
+            case GREATER:
+               return charval >= charval2;
+            case LESS:
+               return charval <= charval2;
+         }
+         return false;
+      }
+
+      private boolean compareResult(int result)
+      {
+         switch (operation)
+         {
+            case APPROX:
+            case EQUAL:
+               return result == 0;
+            case GREATER:
+               return result >= 0;
+            case LESS:
+               return result <= 0;
+         }
+         return false;
+      }
+
+      /**
+       * Convert the filter value to the given type through its public String constructor.
+       */
+      private Object getTypedValue(Class<?> type)
+      {
+         Object result = typedValues.get(type);
+         if (result == null)
+         {
+            result = NO_VALUE;
+            try
+            {
+               Constructor<?> ctor = type.getConstructor(String.class);
+               result = ctor.newInstance(value.trim());
+            }
+            catch (Exception ex)
+            {
+               // The filter value cannot be converted
+            }
+            typedValues.put(type, result);
+         }
+         return result;
+      }
+   }
+
+   /**
+    * Parses a normalized filter string into a tree of nodes.
+    */
+   private static class Parser
+   {
+      private final String filterstr;
+      private final char[] chars;
+      private int pos;
+
+      Parser(String filterstr)
+      {
+         this.filterstr = filterstr;
+         this.chars = filterstr.toCharArray();
+      }
+
+      Node parse()
+      {
+         Node result = parseFilter();
+         if (pos != chars.length)
+            throw new IllegalStateException("Unexpected characters in filter: " + filterstr);
+         return result;
+      }
+
+      private Node parseFilter()
+      {
+         skipWhiteSpace();
+         expect('(');
+         skipWhiteSpace();
+
+         Node result;
+         switch (chars[pos])
+         {
+            case '&':
+               pos++;
+               result = new And(parseFilterList());
+               break;
+            case '|':
+               pos++;
+               result = new Or(parseFilterList());
+               break;
+            case '!':
+               pos++;
+               result = new Not(parseFilter());
+               break;
+            default:
+               result = parseItem();
+         }
+
+         skipWhiteSpace();
+         expect(')');
+         skipWhiteSpace();
+         return result;
+      }
+
+      private Node[] parseFilterList()
+      {
+         List<Node> operands = new ArrayList<Node>();
+         skipWhiteSpace();
+         while (chars[pos] == '(')
+         {
+            operands.add(parseFilter());
+            skipWhiteSpace();
+         }
+         return operands.toArray(new Node[operands.size()]);
+      }
+
+      private Node parseItem()
+      {
+         String key = parseAttr().toLowerCase();
+         skipWhiteSpace();
+         switch (chars[pos])
+         {
+            case '~':
+               pos++;
+               expect('=');
+               return new Compare(APPROX, key, parseValue(), null);
+            case '>':
+               pos++;
+               expect('=');
+               return new Compare(GREATER, key, parseValue(), null);
+            case '<':
+               pos++;
+               expect('=');
+               return new Compare(LESS, key, parseValue(), null);
+            case '=':
+               pos++;
+               if (chars[pos] == '*' && chars[pos + 1] == ')')
+               {
+                  pos++;
+                  return new Present(key);
+               }
+               Object value = parseSubstring();
+               if (value instanceof String)
+                  return new Compare(EQUAL, key, (String)value, null);
+               return new Compare(SUBSTRING, key, null, (String[])value);
+         }
+         throw new IllegalStateException("Invalid operator in filter: " + filterstr);
+      }
+
+      private String parseAttr()
+      {
+         skipWhiteSpace();
+         int begin = pos;
+         int end = pos;
+         char ch = chars[pos];
+         while (ch != '~' && ch != '<' && ch != '>' && ch != '=' && ch != '(' && ch != ')')
+         {
+            pos++;
+            if (Character.isWhitespace(ch) == false)
+               end = pos;
+            ch = chars[pos];
+         }
+         return new String(chars, begin, end - begin);
+      }
+
+      private String parseValue()
+      {
+         StringBuffer sb = new StringBuffer();
+         while (chars[pos] != ')')
+         {
+            char ch = chars[pos++];
+            if (ch == '\\')
+               ch = chars[pos++];
+            sb.append(ch);
+         }
+         return sb.toString();
+      }
+
+      private Object parseSubstring()
+      {
+         StringBuffer sb = new StringBuffer();
+         List<String> operands = new ArrayList<String>();
+         while (chars[pos] != ')')
+         {
+            char ch = chars[pos++];
+            if (ch == '*')
+            {
+               if (sb.length() > 0)
+                  operands.add(sb.toString());
+               sb.setLength(0);
+               operands.add(null);
+               continue;
+            }
+            if (ch == '\\')
+               ch = chars[pos++];
+            sb.append(ch);
+         }
+         if (sb.length() > 0)
+            operands.add(sb.toString());
+
+         int size = operands.size();
+         if (size == 0)
+            return "";
+         if (size == 1 && operands.get(0) != null)
+            return operands.get(0);
+
+         return operands.toArray(new String[size]);
+      }
+
+      private void expect(char ch)
+      {
+         if (chars[pos] != ch)
+            throw new IllegalStateException("Expected '" + ch + "' at " + pos + " in filter: " + filterstr);
+         pos++;
+      }
+
+      private void skipWhiteSpace()
+      {
+         while (pos < chars.length && Character.isWhitespace(chars[pos]))
+            pos++;
+      }
+   }
+}
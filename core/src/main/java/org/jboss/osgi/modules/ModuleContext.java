@@ -43,6 +43,14 @@ public interface ModuleContext
     */
    ServiceName getServiceName(Class<?> service);
 
+   /**
+    * Export the service that a bundle registered under the given class, so that the module can depend on it.
+    * In lightweight mode the MSC service is installed on first use, otherwise it exists already.
+    * The value of the MSC service is the OSGi service registration, not the service object.
+    * @return The MSC service name, or null if no bundle registered such a service
+    */
+   ServiceName exportService(Class<?> service);
+
    ServiceContainer getServiceContainer();
 
    Module getModule();
@@ -0,0 +1,179 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.osgi.framework.bundle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.util.Collections;
+
+import org.jboss.modules.ModuleIdentifier;
+import org.jboss.osgi.framework.bundle.AbstractBundle;
+import org.jboss.osgi.framework.bundle.PackageExporterIndex;
+import org.jboss.osgi.framework.plugin.ModuleManagerPlugin;
+import org.jboss.osgi.resolver.XModule;
+import org.jboss.osgi.testing.OSGiFrameworkTest;
+import org.jboss.osgi.testing.OSGiManifestBuilder;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.Asset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+
+/**
+ * Test that the {@link PackageExporterIndex} follows the bundle lifecycle.
+ *
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+public class PackageExporterIndexTestCase extends OSGiFrameworkTest
+{
+   private static final String HOST_PACKAGE = "org.jboss.test.osgi.framework.bundle.index.host";
+   private static final String FRAGMENT_PACKAGE = "org.jboss.test.osgi.framework.bundle.index.fragment";
+
+   @Test
+   public void testInstallResolveUninstall() throws Exception
+   {
+      PackageExporterIndex index = getPackageExporterIndex();
+      long stamp = index.getPackageStamp(HOST_PACKAGE);
+
+      // An installed bundle declares the export, but no module exports it yet
+      Bundle host = installBundle(createHostBundle("index-host1"));
+      XModule hostModule = AbstractBundle.assertBundleState(host).getResolverModule();
+      assertEquals(Collections.singleton(hostModule), index.getDeclaringModules(HOST_PACKAGE));
+      assertTrue("No exporting module", index.getExportingModules(HOST_PACKAGE).isEmpty());
+      assertTrue("Stamp changed", index.getPackageStamp(HOST_PACKAGE) > stamp);
+      stamp = index.getPackageStamp(HOST_PACKAGE);
+
+      // The resolved bundle exports the package through its module
+      host.start();
+      ModuleIdentifier identifier = AbstractBundle.assertBundleState(host).getCurrentRevision().getModuleIdentifier();
+      assertEquals(Collections.singleton(identifier), index.getExportingModules(HOST_PACKAGE));
+      assertTrue("Stamp changed", index.getPackageStamp(HOST_PACKAGE) > stamp);
+
+      // The uninstalled bundle is removed from both sides of the index
+      host.uninstall();
+      assertTrue("No declaring module", index.getDeclaringModules(HOST_PACKAGE).isEmpty());
+      assertTrue("No exporting module", index.getExportingModules(HOST_PACKAGE).isEmpty());
+   }
+
+   @Test
+   public void testAttachedFragment() throws Exception
+   {
+      PackageExporterIndex index = getPackageExporterIndex();
+
+      Bundle host = installBundle(createHostBundle("index-host2"));
+      Bundle fragment = installBundle(createFragmentBundle("index-fragment2", "index-host2"));
+      XModule fragModule = AbstractBundle.assertBundleState(fragment).getResolverModule();
+      assertEquals(Collections.singleton(fragModule), index.getDeclaringModules(FRAGMENT_PACKAGE));
+      assertTrue("No exporting module", index.getExportingModules(FRAGMENT_PACKAGE).isEmpty());
+
+      // The package of the attached fragment is exported through the host module
+      host.start();
+      ModuleIdentifier identifier = AbstractBundle.assertBundleState(host).getCurrentRevision().getModuleIdentifier();
+      assertEquals(Collections.singleton(identifier), index.getExportingModules(HOST_PACKAGE));
+      assertEquals(Collections.singleton(identifier), index.getExportingModules(FRAGMENT_PACKAGE));
+
+      // Uninstalling the host removes the packages of the fragment too
+      host.uninstall();
+      assertTrue("No exporting module", index.getExportingModules(HOST_PACKAGE).isEmpty());
+      assertTrue("No exporting module", index.getExportingModules(FRAGMENT_PACKAGE).isEmpty());
+      assertEquals(Collections.singleton(fragModule), index.getDeclaringModules(FRAGMENT_PACKAGE));
+
+      fragment.uninstall();
+      assertTrue("No declaring module", index.getDeclaringModules(FRAGMENT_PACKAGE).isEmpty());
+   }
+
+   @Test
+   public void testRefreshAttachesFragment() throws Exception
+   {
+      PackageExporterIndex index = getPackageExporterIndex();
+
+      Bundle host = installBundle(createHostBundle("index-host3"));
+      host.start();
+      ModuleIdentifier identifier = AbstractBundle.assertBundleState(host).getCurrentRevision().getModuleIdentifier();
+      assertEquals(Collections.singleton(identifier), index.getExportingModules(HOST_PACKAGE));
+
+      // The fragment does not attach to the already resolved host
+      Bundle fragment = installBundle(createFragmentBundle("index-fragment3", "index-host3"));
+      assertTrue("No exporting module", index.getExportingModules(FRAGMENT_PACKAGE).isEmpty());
+      long stamp = index.getPackageStamp(FRAGMENT_PACKAGE);
+
+      // Refreshing the host attaches the fragment and indexes its package under the new host module
+      refreshPackages(new Bundle[] { host });
+      assertBundleState(Bundle.ACTIVE, host.getState());
+      identifier = AbstractBundle.assertBundleState(host).getCurrentRevision().getModuleIdentifier();
+      assertEquals(Collections.singleton(identifier), index.getExportingModules(HOST_PACKAGE));
+      assertEquals(Collections.singleton(identifier), index.getExportingModules(FRAGMENT_PACKAGE));
+      assertTrue("Stamp changed", index.getPackageStamp(FRAGMENT_PACKAGE) > stamp);
+
+      host.uninstall();
+      fragment.uninstall();
+      assertTrue("No exporting module", index.getExportingModules(HOST_PACKAGE).isEmpty());
+      assertTrue("No exporting module", index.getExportingModules(FRAGMENT_PACKAGE).isEmpty());
+      assertTrue("No declaring module", index.getDeclaringModules(HOST_PACKAGE).isEmpty());
+      assertTrue("No declaring module", index.getDeclaringModules(FRAGMENT_PACKAGE).isEmpty());
+   }
+
+   private PackageExporterIndex getPackageExporterIndex()
+   {
+      return AbstractBundle.assertBundleState(getFramework()).getBundleManager().getPlugin(ModuleManagerPlugin.class).getPackageExporterIndex();
+   }
+
+   private JavaArchive createHostBundle(String name)
+   {
+      final JavaArchive archive = ShrinkWrap.create(JavaArchive.class, name);
+      archive.setManifest(new Asset()
+      {
+         @Override
+         public InputStream openStream()
+         {
+            OSGiManifestBuilder builder = OSGiManifestBuilder.newInstance();
+            builder.addBundleSymbolicName(archive.getName());
+            builder.addBundleManifestVersion(2);
+            builder.addExportPackages(HOST_PACKAGE);
+            return builder.openStream();
+         }
+      });
+      return archive;
+   }
+
+   private JavaArchive createFragmentBundle(String name, final String hostName)
+   {
+      final JavaArchive archive = ShrinkWrap.create(JavaArchive.class, name);
+      archive.setManifest(new Asset()
+      {
+         @Override
+         public InputStream openStream()
+         {
+            OSGiManifestBuilder builder = OSGiManifestBuilder.newInstance();
+            builder.addBundleSymbolicName(archive.getName());
+            builder.addBundleManifestVersion(2);
+            builder.addExportPackages(FRAGMENT_PACKAGE);
+            builder.addFragmentHost(hostName);
+            return builder.openStream();
+         }
+      });
+      return archive;
+   }
+}
@@ -0,0 +1,446 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.osgi.framework.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.osgi.framework.bundle.AbstractBundle;
+import org.jboss.osgi.framework.plugin.EventQueueStatistics;
+import org.jboss.osgi.framework.plugin.FrameworkEventsPlugin;
+import org.jboss.osgi.testing.OSGiFrameworkTest;
+import org.jboss.osgi.testing.OSGiManifestBuilder;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.Asset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.framework.FrameworkListener;
+import org.osgi.framework.launch.Framework;
+
+/**
+ * Test the per listener queues of asynchronous events.
+ *
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+public class AsyncEventDispatchTestCase extends OSGiFrameworkTest
+{
+   private static final int[] BUNDLE_EVENT_TYPES = new int[] { BundleEvent.INSTALLED, BundleEvent.RESOLVED, BundleEvent.STARTED, BundleEvent.STOPPED, BundleEvent.UNRESOLVED };
+
+   @BeforeClass
+   public static void beforeClass()
+   {
+      // prevent framework creation
+   }
+
+   @Test(timeout = 10000)
+   public void testOrdering() throws Exception
+   {
+      Framework framework = createFramework(null, null);
+      try
+      {
+         Bundle bundle = installBundle(createTestBundle("bundle1"));
+         BlockingListener listener = new BlockingListener("ordering", 100);
+         listener.release.countDown();
+         framework.getBundleContext().addBundleListener(listener);
+
+         List<Integer> expected = new ArrayList<Integer>();
+         for (int i = 0; i < 100; i++)
+         {
+            int type = BUNDLE_EVENT_TYPES[i % BUNDLE_EVENT_TYPES.length];
+            expected.add(type);
+            getEventsPlugin(framework).fireBundleEvent(bundle, type);
+         }
+
+         // The listener receives the events in the order they were fired
+         assertTrue("All events delivered", listener.delivered.await(5, TimeUnit.SECONDS));
+         assertEquals(expected, listener.getTypes());
+      }
+      finally
+      {
+         stopFramework(framework);
+      }
+   }
+
+   @Test(timeout = 10000)
+   public void testOverflowDropOldest() throws Exception
+   {
+      Framework framework = createFramework("4", "drop-oldest");
+      try
+      {
+         Bundle bundle = installBundle(createTestBundle("bundle1"));
+         BlockingListener listener = new BlockingListener("dropOldest", 5);
+         framework.getBundleContext().addBundleListener(listener);
+
+         // The first event blocks the delivery
+         getEventsPlugin(framework).fireBundleEvent(bundle, BundleEvent.STARTED);
+         assertTrue("Delivery started", listener.entered.await(5, TimeUnit.SECONDS));
+
+         // Four events fit into the queue, the five oldest are dropped
+         for (int i = 0; i < 9; i++)
+            getEventsPlugin(framework).fireBundleEvent(bundle, i < 8 ? BundleEvent.STARTED : BundleEvent.STOPPED);
+
+         EventQueueStatistics stats = getQueueStatistics(framework, listener).get(0);
+         assertEquals(4, stats.getDepth());
+         assertEquals(4, stats.getMaxDepth());
+         assertEquals(5, stats.getDroppedCount());
+         assertEquals(0, stats.getCoalescedCount());
+
+         listener.release.countDown();
+         assertTrue("Pending events delivered", listener.delivered.await(5, TimeUnit.SECONDS));
+         assertEquals(BundleEvent.STOPPED, listener.getTypes().get(4).intValue());
+      }
+      finally
+      {
+         stopFramework(framework);
+      }
+   }
+
+   @Test(timeout = 10000)
+   public void testOverflowCoalesce() throws Exception
+   {
+      Framework framework = createFramework("4", "coalesce");
+      try
+      {
+         BlockingListener coalesceListener = new BlockingListener("coalesce", 5);
+         framework.getBundleContext().addFrameworkListener(coalesceListener);
+
+         // A pending PACKAGES_REFRESHED is replaced by a later one
+         getEventsPlugin(framework).fireFrameworkEvent(framework, FrameworkEvent.PACKAGES_REFRESHED, null);
+         assertTrue("Delivery started", coalesceListener.entered.await(5, TimeUnit.SECONDS));
+         for (int i = 0; i < 9; i++)
+            getEventsPlugin(framework).fireFrameworkEvent(framework, FrameworkEvent.PACKAGES_REFRESHED, null);
+
+         EventQueueStatistics stats = getQueueStatistics(framework, coalesceListener).get(0);
+         assertEquals(0, stats.getDroppedCount());
+         assertEquals(5, stats.getCoalescedCount());
+
+         coalesceListener.release.countDown();
+         assertTrue("Pending events delivered", coalesceListener.delivered.await(5, TimeUnit.SECONDS));
+      }
+      finally
+      {
+         stopFramework(framework);
+      }
+   }
+
+   @Test(timeout = 10000)
+   public void testOverflowCoalesceKeepsEventsWithoutKey() throws Exception
+   {
+      Framework framework = createFramework("4", "coalesce");
+      try
+      {
+         BlockingListener listener = new BlockingListener("keep", 5);
+         framework.getBundleContext().addFrameworkListener(listener);
+
+         getEventsPlugin(framework).fireFrameworkEvent(framework, FrameworkEvent.INFO, null);
+         assertTrue("Delivery started", listener.entered.await(5, TimeUnit.SECONDS));
+         for (int i = 0; i < 3; i++)
+            getEventsPlugin(framework).fireFrameworkEvent(framework, FrameworkEvent.INFO, null);
+         getEventsPlugin(framework).fireFrameworkEvent(framework, FrameworkEvent.STARTLEVEL_CHANGED, null);
+
+         // An event without a coalesce key drops the pending event that has one
+         getEventsPlugin(framework).fireFrameworkEvent(framework, FrameworkEvent.INFO, null);
+         EventQueueStatistics stats = getQueueStatistics(framework, listener).get(0);
+         assertEquals(4, stats.getDepth());
+         assertEquals(1, stats.getDroppedCount());
+
+         listener.release.countDown();
+         assertTrue("Pending events delivered", listener.delivered.await(5, TimeUnit.SECONDS));
+         assertEquals(Collections.nCopies(5, FrameworkEvent.INFO), listener.getTypes());
+      }
+      finally
+      {
+         stopFramework(framework);
+      }
+   }
+
+   @Test(timeout = 10000)
+   public void testOverflowBlockIsDefault() throws Exception
+   {
+      Framework framework = createFramework("2", null);
+      try
+      {
+         final Bundle bundle = installBundle(createTestBundle("bundle1"));
+         BlockingListener listener = new BlockingListener("block", 4);
+         framework.getBundleContext().addBundleListener(listener);
+
+         getEventsPlugin(framework).fireBundleEvent(bundle, BundleEvent.STARTED);
+         assertTrue("Delivery started", listener.entered.await(5, TimeUnit.SECONDS));
+         for (int i = 0; i < 2; i++)
+            getEventsPlugin(framework).fireBundleEvent(bundle, BundleEvent.STOPPED);
+
+         // The dispatching thread waits for space in the full queue
+         final Framework fw = framework;
+         Thread thread = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               getEventsPlugin(fw).fireBundleEvent(bundle, BundleEvent.UPDATED);
+            }
+         };
+         thread.start();
+         thread.join(200);
+         assertTrue("Dispatching thread waits", thread.isAlive());
+
+         listener.release.countDown();
+         thread.join(5000);
+         assertTrue("All events delivered", listener.delivered.await(5, TimeUnit.SECONDS));
+         assertEquals(Arrays.asList(BundleEvent.STARTED, BundleEvent.STOPPED, BundleEvent.STOPPED, BundleEvent.UPDATED), listener.getTypes());
+         assertEquals(0, getQueueStatistics(framework, listener).get(0).getDroppedCount());
+      }
+      finally
+      {
+         stopFramework(framework);
+      }
+   }
+
+   @Test(timeout = 10000)
+   public void testRemoveListener() throws Exception
+   {
+      Framework framework = createFramework(null, null);
+      try
+      {
+         Bundle bundle = installBundle(createTestBundle("bundle1"));
+         BlockingListener listener = new BlockingListener("remove", 1);
+         BundleContext context = framework.getBundleContext();
+         context.addBundleListener(listener);
+
+         getEventsPlugin(framework).fireBundleEvent(bundle, BundleEvent.STARTED);
+         assertTrue("Delivery started", listener.entered.await(5, TimeUnit.SECONDS));
+         for (int i = 0; i < 3; i++)
+            getEventsPlugin(framework).fireBundleEvent(bundle, BundleEvent.STOPPED);
+         assertEquals(3, getQueueStatistics(framework, listener).get(0).getDepth());
+
+         // The pending events are discarded with the queue
+         context.removeBundleListener(listener);
+         assertEquals(0, getQueueStatistics(framework, listener).size());
+
+         listener.release.countDown();
+         Thread.sleep(200);
+         assertEquals(Collections.singletonList(BundleEvent.STARTED), listener.getTypes());
+      }
+      finally
+      {
+         stopFramework(framework);
+      }
+   }
+
+   @Test(timeout = 10000)
+   public void testQueuePerKind() throws Exception
+   {
+      Framework framework = createFramework(null, null);
+      try
+      {
+         Bundle bundle = installBundle(createTestBundle("bundle1"));
+         BlockingListener listener = new BlockingListener("perKind", 3);
+         BundleContext context = framework.getBundleContext();
+         context.addBundleListener(listener);
+         context.addFrameworkListener(listener);
+
+         getEventsPlugin(framework).fireBundleEvent(bundle, BundleEvent.STARTED);
+         assertTrue("Delivery started", listener.entered.await(5, TimeUnit.SECONDS));
+         for (int i = 0; i < 2; i++)
+            getEventsPlugin(framework).fireBundleEvent(bundle, BundleEvent.STOPPED);
+
+         // Removing the framework listener keeps the pending bundle events
+         context.removeFrameworkListener(listener);
+         assertEquals(2, getQueueStatistics(framework, listener).get(0).getDepth());
+
+         listener.release.countDown();
+         assertTrue("Pending events delivered", listener.delivered.await(5, TimeUnit.SECONDS));
+         assertEquals(Arrays.asList(BundleEvent.STARTED, BundleEvent.STOPPED, BundleEvent.STOPPED), listener.getTypes());
+      }
+      finally
+      {
+         stopFramework(framework);
+      }
+   }
+
+   @Test(timeout = 10000)
+   public void testQueuePerBundle() throws Exception
+   {
+      Framework framework = createFramework(null, null);
+      try
+      {
+         Bundle bundle = installBundle(createTestBundle("bundle1"));
+         bundle.start();
+
+         // The same listener added by two bundles gets one queue per bundle
+         BlockingListener listener = new BlockingListener("perBundle", 2);
+         listener.release.countDown();
+         framework.getBundleContext().addBundleListener(listener);
+         bundle.getBundleContext().addBundleListener(listener);
+
+         getEventsPlugin(framework).fireBundleEvent(bundle, BundleEvent.UPDATED);
+         assertTrue("Events delivered", listener.delivered.await(5, TimeUnit.SECONDS));
+         assertEquals(2, getQueueStatistics(framework, listener).size());
+
+         // Removing the listener of one bundle keeps the other queue
+         bundle.getBundleContext().removeBundleListener(listener);
+         assertEquals(1, getQueueStatistics(framework, listener).size());
+      }
+      finally
+      {
+         stopFramework(framework);
+      }
+   }
+
+   private Framework createFramework(String capacity, String overflow) throws Exception
+   {
+      String prevCapacity = setProperty(FrameworkEventsPlugin.PROP_JBOSS_OSGI_EVENTS_QUEUE_CAPACITY, capacity);
+      String prevOverflow = setProperty(FrameworkEventsPlugin.PROP_JBOSS_OSGI_EVENTS_OVERFLOW, overflow);
+      try
+      {
+         Framework framework = createFramework();
+         framework.start();
+         return framework;
+      }
+      finally
+      {
+         setProperty(FrameworkEventsPlugin.PROP_JBOSS_OSGI_EVENTS_QUEUE_CAPACITY, prevCapacity);
+         setProperty(FrameworkEventsPlugin.PROP_JBOSS_OSGI_EVENTS_OVERFLOW, prevOverflow);
+      }
+   }
+
+   private static String setProperty(String key, String value)
+   {
+      return (value != null ? System.setProperty(key, value) : System.clearProperty(key));
+   }
+
+   private void stopFramework(Framework framework) throws Exception
+   {
+      framework.stop();
+      framework.waitForStop(2000);
+   }
+
+   private FrameworkEventsPlugin getEventsPlugin(Framework framework)
+   {
+      return AbstractBundle.assertBundleState(framework).getBundleManager().getPlugin(FrameworkEventsPlugin.class);
+   }
+
+   private List<EventQueueStatistics> getQueueStatistics(Framework framework, Object listener)
+   {
+      List<EventQueueStatistics> result = new ArrayList<EventQueueStatistics>();
+      for (EventQueueStatistics stats : getEventsPlugin(framework).getStatistics().getQueueStatistics())
+      {
+         if (stats.getName().startsWith(listener.toString() + " in "))
+            result.add(stats);
+      }
+      return result;
+   }
+
+   private JavaArchive createTestBundle(String name)
+   {
+      final JavaArchive archive = ShrinkWrap.create(JavaArchive.class, name);
+      archive.setManifest(new Asset()
+      {
+         @Override
+         public InputStream openStream()
+         {
+            OSGiManifestBuilder builder = OSGiManifestBuilder.newInstance();
+            builder.addBundleSymbolicName(archive.getName());
+            builder.addBundleManifestVersion(2);
+            builder.addImportPackages("org.osgi.framework");
+            return builder.openStream();
+         }
+      });
+      return archive;
+   }
+
+   /**
+    * An asynchronous listener that blocks on the first event until it gets released.
+    */
+   static class BlockingListener implements BundleListener, FrameworkListener
+   {
+      private final String name;
+      private final List<Integer> types = new ArrayList<Integer>();
+      private final CountDownLatch entered = new CountDownLatch(1);
+      private final CountDownLatch release = new CountDownLatch(1);
+      private final CountDownLatch delivered;
+
+      BlockingListener(String name, int expected)
+      {
+         this.name = name;
+         this.delivered = new CountDownLatch(expected);
+      }
+
+      @Override
+      public void bundleChanged(BundleEvent event)
+      {
+         received(event.getType());
+      }
+
+      @Override
+      public void frameworkEvent(FrameworkEvent event)
+      {
+         received(event.getType());
+      }
+
+      private void received(int type)
+      {
+         entered.countDown();
+         try
+         {
+            release.await(5, TimeUnit.SECONDS);
+         }
+         catch (InterruptedException ex)
+         {
+            Thread.currentThread().interrupt();
+         }
+         synchronized (types)
+         {
+            types.add(type);
+         }
+         delivered.countDown();
+      }
+
+      List<Integer> getTypes()
+      {
+         synchronized (types)
+         {
+            return new ArrayList<Integer>(types);
+         }
+      }
+
+      @Override
+      public String toString()
+      {
+         return "BlockingListener[" + name + "]";
+      }
+   }
+}
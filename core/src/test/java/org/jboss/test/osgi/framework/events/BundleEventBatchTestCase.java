@@ -0,0 +1,234 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.osgi.framework.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.osgi.framework.bundle.AbstractBundle;
+import org.jboss.osgi.framework.plugin.FrameworkEventsPlugin;
+import org.jboss.osgi.testing.OSGiFrameworkTest;
+import org.jboss.osgi.testing.OSGiManifestBuilder;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.Asset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.framework.FrameworkListener;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.packageadmin.PackageAdmin;
+
+/**
+ * Test the batched delivery of asynchronous bundle events.
+ *
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+public class BundleEventBatchTestCase extends OSGiFrameworkTest
+{
+   // The names of the bundle event types, indexed by their bit position
+   private static final String[] BUNDLE_EVENT_NAMES = new String[] { "INSTALLED", "STARTED", "STOPPED", "UPDATED", "UNINSTALLED", "RESOLVED",
+         "UNRESOLVED", "STARTING", "STOPPING", "LAZY_ACTIVATION" };
+
+   @Test
+   public void testPackagesRefreshedAfterBatch() throws Exception
+   {
+      Bundle bundle = installBundle(createTestBundle("batch1"));
+      try
+      {
+         bundle.start();
+
+         // The same listener receives the bundle events and the framework events
+         RecordingListener listener = new RecordingListener("UNRESOLVED", "PACKAGES_REFRESHED");
+         BundleContext context = getFramework().getBundleContext();
+         context.addBundleListener(listener);
+         context.addFrameworkListener(listener);
+         try
+         {
+            ServiceReference sref = context.getServiceReference(PackageAdmin.class.getName());
+            PackageAdmin packageAdmin = (PackageAdmin)context.getService(sref);
+            packageAdmin.refreshPackages(new Bundle[] { bundle });
+            assertTrue("UNRESOLVED and PACKAGES_REFRESHED delivered", listener.done.await(10, TimeUnit.SECONDS));
+
+            // Bundle events and framework events are queued separately, only the order within each kind is defined
+            List<String> events = listener.getEvents();
+            assertEquals(1, Collections.frequency(events, "PACKAGES_REFRESHED"));
+         }
+         finally
+         {
+            context.removeBundleListener(listener);
+            context.removeFrameworkListener(listener);
+         }
+      }
+      finally
+      {
+         bundle.uninstall();
+      }
+   }
+
+   @Test
+   public void testNestedBatches() throws Exception
+   {
+      Bundle bundle = installBundle(createTestBundle("batch2"));
+      try
+      {
+         RecordingListener listener = new RecordingListener("UPDATED");
+         BundleContext context = getFramework().getBundleContext();
+         context.addBundleListener(listener);
+         try
+         {
+            FrameworkEventsPlugin eventsPlugin = getEventsPlugin();
+            eventsPlugin.beginBundleEventBatch();
+            try
+            {
+               eventsPlugin.fireBundleEvent(bundle, BundleEvent.RESOLVED);
+               eventsPlugin.beginBundleEventBatch();
+               try
+               {
+                  eventsPlugin.fireBundleEvent(bundle, BundleEvent.STARTED);
+               }
+               finally
+               {
+                  eventsPlugin.endBundleEventBatch();
+               }
+
+               // The events are held back until the outermost batch ends
+               eventsPlugin.fireBundleEvent(bundle, BundleEvent.STOPPED);
+               Thread.sleep(200);
+               assertEquals(0, listener.getEvents().size());
+               eventsPlugin.fireBundleEvent(bundle, BundleEvent.UPDATED);
+            }
+            finally
+            {
+               eventsPlugin.endBundleEventBatch();
+            }
+
+            assertTrue("Batch delivered", listener.done.await(10, TimeUnit.SECONDS));
+            assertEquals(Arrays.asList("RESOLVED", "STARTED", "STOPPED", "UPDATED"), listener.getEvents());
+
+            // An unbalanced end is rejected
+            try
+            {
+               eventsPlugin.endBundleEventBatch();
+               fail("IllegalStateException expected");
+            }
+            catch (IllegalStateException ex)
+            {
+               // expected
+            }
+         }
+         finally
+         {
+            context.removeBundleListener(listener);
+         }
+      }
+      finally
+      {
+         bundle.uninstall();
+      }
+   }
+
+   private FrameworkEventsPlugin getEventsPlugin()
+   {
+      return AbstractBundle.assertBundleState(getFramework()).getBundleManager().getPlugin(FrameworkEventsPlugin.class);
+   }
+
+   private JavaArchive createTestBundle(String name)
+   {
+      final JavaArchive archive = ShrinkWrap.create(JavaArchive.class, name);
+      archive.setManifest(new Asset()
+      {
+         @Override
+         public InputStream openStream()
+         {
+            OSGiManifestBuilder builder = OSGiManifestBuilder.newInstance();
+            builder.addBundleSymbolicName(archive.getName());
+            builder.addBundleManifestVersion(2);
+            builder.addImportPackages("org.osgi.framework");
+            return builder.openStream();
+         }
+      });
+      return archive;
+   }
+
+   /**
+    * An asynchronous listener that records the event names until each of the given events has arrived.
+    */
+   static class RecordingListener implements BundleListener, FrameworkListener
+   {
+      private final List<String> awaited;
+      private final List<String> events = new ArrayList<String>();
+      private final CountDownLatch done;
+
+      RecordingListener(String... awaited)
+      {
+         this.awaited = new ArrayList<String>(Arrays.asList(awaited));
+         this.done = new CountDownLatch(awaited.length);
+      }
+
+      @Override
+      public void bundleChanged(BundleEvent event)
+      {
+         record(BUNDLE_EVENT_NAMES[Integer.numberOfTrailingZeros(event.getType())]);
+      }
+
+      @Override
+      public void frameworkEvent(FrameworkEvent event)
+      {
+         if (event.getType() == FrameworkEvent.PACKAGES_REFRESHED)
+            record("PACKAGES_REFRESHED");
+      }
+
+      private void record(String name)
+      {
+         boolean arrived;
+         synchronized (events)
+         {
+            events.add(name);
+            arrived = awaited.remove(name);
+         }
+         if (arrived)
+            done.countDown();
+      }
+
+      List<String> getEvents()
+      {
+         synchronized (events)
+         {
+            return new ArrayList<String>(events);
+         }
+      }
+   }
+}
@@ -0,0 +1,61 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.osgi.framework.events;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.jboss.osgi.framework.plugin.EventDispatchStatistics;
+import org.junit.Test;
+
+/**
+ * Test the {@link EventDispatchStatistics}.
+ *
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+public class EventDispatchStatisticsTestCase
+{
+   private static final long MILLIS = 1000000L;
+
+   @Test
+   public void testRecord() throws Exception
+   {
+      EventDispatchStatistics stats = new EventDispatchStatistics("test");
+      assertFalse(stats.record(50000L, 100 * MILLIS));
+      assertFalse(stats.record(5 * MILLIS, 100 * MILLIS));
+      assertTrue("First slow dispatch", stats.record(200 * MILLIS, 100 * MILLIS));
+      assertFalse("Second slow dispatch", stats.record(2000 * MILLIS, 100 * MILLIS));
+
+      assertEquals(4, stats.getEventCount());
+      assertEquals(2, stats.getSlowCount());
+      assertEquals(2000 * 1000, stats.getMaxTime());
+      assertArrayEquals(new long[] { 1, 0, 1, 0, 1, 1 }, stats.getHistogram());
+
+      stats.reset();
+      assertEquals(0, stats.getEventCount());
+      assertEquals(0, stats.getAverageTime());
+      assertArrayEquals(new long[6], stats.getHistogram());
+   }
+}
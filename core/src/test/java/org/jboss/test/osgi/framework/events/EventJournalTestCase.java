@@ -0,0 +1,261 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.osgi.framework.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.spi.LoggingEvent;
+import org.jboss.osgi.framework.bundle.AbstractBundle;
+import org.jboss.osgi.framework.plugin.EventJournalRecord;
+import org.jboss.osgi.framework.plugin.EventJournalRecord.Category;
+import org.jboss.osgi.framework.plugin.FrameworkEventsPlugin;
+import org.jboss.osgi.framework.plugin.internal.FrameworkEventsPluginImpl;
+import org.jboss.osgi.testing.OSGiFrameworkTest;
+import org.jboss.osgi.testing.OSGiManifestBuilder;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.Asset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.framework.launch.Framework;
+
+/**
+ * Test the journal of the most recent events.
+ *
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+public class EventJournalTestCase extends OSGiFrameworkTest
+{
+   @BeforeClass
+   public static void beforeClass()
+   {
+      // prevent framework creation
+   }
+
+   @Test
+   public void testGetEventJournal() throws Exception
+   {
+      Framework framework = createFramework(null, null);
+      try
+      {
+         Bundle bundle = installBundle(createTestBundle("bundle1"));
+         bundle.start();
+         bundle.stop();
+
+         // The bundle events are recorded in the order they were fired
+         List<Integer> types = new ArrayList<Integer>();
+         for (EventJournalRecord record : getEventsPlugin(framework).getEventJournal(bundle))
+         {
+            assertEquals(bundle.getBundleId(), record.getBundleId());
+            if (record.getCategory() == Category.BUNDLE)
+               types.add(record.getType());
+         }
+         assertTrue("INSTALLED recorded", types.indexOf(BundleEvent.INSTALLED) >= 0);
+         assertTrue("RESOLVED after INSTALLED", types.indexOf(BundleEvent.RESOLVED) > types.indexOf(BundleEvent.INSTALLED));
+         assertTrue("STARTED after RESOLVED", types.indexOf(BundleEvent.STARTED) > types.indexOf(BundleEvent.RESOLVED));
+         assertTrue("STOPPED after STARTED", types.indexOf(BundleEvent.STOPPED) > types.indexOf(BundleEvent.STARTED));
+
+         // All events are returned in sequence order
+         List<EventJournalRecord> records = getEventsPlugin(framework).getEventJournal(null);
+         assertTrue("All events", records.size() >= types.size());
+         for (int i = 1; i < records.size(); i++)
+            assertTrue("Sequence order", records.get(i - 1).getSequence() < records.get(i).getSequence());
+      }
+      finally
+      {
+         stopFramework(framework);
+      }
+   }
+
+   @Test
+   public void testEventWithoutBundle() throws Exception
+   {
+      Framework framework = createFramework(null, null);
+      try
+      {
+         try
+         {
+            getEventsPlugin(framework).fireFrameworkEvent(null, FrameworkEvent.WARNING, null);
+            fail("IllegalArgumentException expected");
+         }
+         catch (IllegalArgumentException ex)
+         {
+            // expected
+         }
+
+         // The event is recorded with bundle id -1
+         List<EventJournalRecord> records = getEventsPlugin(framework).getEventJournal(null);
+         EventJournalRecord record = records.get(records.size() - 1);
+         assertEquals(Category.FRAMEWORK, record.getCategory());
+         assertEquals(FrameworkEvent.WARNING, record.getType());
+         assertEquals(-1, record.getBundleId());
+      }
+      finally
+      {
+         stopFramework(framework);
+      }
+   }
+
+   @Test
+   public void testJournalSize() throws Exception
+   {
+      Framework framework = createFramework("4", null);
+      try
+      {
+         Bundle bundle = installBundle(createTestBundle("bundle1"));
+         for (int i = 0; i < 10; i++)
+            getEventsPlugin(framework).fireFrameworkEvent(bundle, FrameworkEvent.INFO, null);
+
+         // Only the four most recent events are kept
+         List<EventJournalRecord> records = getEventsPlugin(framework).getEventJournal(null);
+         assertEquals(4, records.size());
+         for (EventJournalRecord record : records)
+            assertEquals(FrameworkEvent.INFO, record.getType());
+      }
+      finally
+      {
+         stopFramework(framework);
+      }
+   }
+
+   @Test
+   public void testDumpOnError() throws Exception
+   {
+      Framework framework = createFramework(null, "true");
+      CapturingAppender appender = new CapturingAppender();
+      org.apache.log4j.Logger logger = org.apache.log4j.Logger.getLogger(FrameworkEventsPluginImpl.class);
+      logger.addAppender(appender);
+      try
+      {
+         Bundle bundle = installBundle(createTestBundle("bundle1"));
+         getEventsPlugin(framework).fireFrameworkEvent(bundle, FrameworkEvent.WARNING, null);
+         assertEquals(0, appender.getJournalDumps().size());
+
+         // The journal is logged when an ERROR is fired, it includes the ERROR itself
+         getEventsPlugin(framework).fireFrameworkEvent(bundle, FrameworkEvent.ERROR, new Exception("test error"));
+         List<String> dumps = appender.getJournalDumps();
+         assertEquals(1, dumps.size());
+         assertTrue(dumps.get(0), dumps.get(0).contains("FRAMEWORK"));
+         assertTrue(dumps.get(0), dumps.get(0).contains("bundle=" + bundle.getBundleId()));
+      }
+      finally
+      {
+         logger.removeAppender(appender);
+         stopFramework(framework);
+      }
+   }
+
+   private Framework createFramework(String size, String dump) throws Exception
+   {
+      String prevSize = setProperty(FrameworkEventsPlugin.PROP_JBOSS_OSGI_EVENTS_JOURNAL_SIZE, size);
+      String prevDump = setProperty(FrameworkEventsPlugin.PROP_JBOSS_OSGI_EVENTS_JOURNAL_DUMP, dump);
+      try
+      {
+         Framework framework = createFramework();
+         framework.start();
+         return framework;
+      }
+      finally
+      {
+         setProperty(FrameworkEventsPlugin.PROP_JBOSS_OSGI_EVENTS_JOURNAL_SIZE, prevSize);
+         setProperty(FrameworkEventsPlugin.PROP_JBOSS_OSGI_EVENTS_JOURNAL_DUMP, prevDump);
+      }
+   }
+
+   private static String setProperty(String key, String value)
+   {
+      return (value != null ? System.setProperty(key, value) : System.clearProperty(key));
+   }
+
+   private void stopFramework(Framework framework) throws Exception
+   {
+      framework.stop();
+      framework.waitForStop(2000);
+   }
+
+   private FrameworkEventsPlugin getEventsPlugin(Framework framework)
+   {
+      return AbstractBundle.assertBundleState(framework).getBundleManager().getPlugin(FrameworkEventsPlugin.class);
+   }
+
+   private JavaArchive createTestBundle(String name)
+   {
+      final JavaArchive archive = ShrinkWrap.create(JavaArchive.class, name);
+      archive.setManifest(new Asset()
+      {
+         @Override
+         public InputStream openStream()
+         {
+            OSGiManifestBuilder builder = OSGiManifestBuilder.newInstance();
+            builder.addBundleSymbolicName(archive.getName());
+            builder.addBundleManifestVersion(2);
+            builder.addImportPackages("org.osgi.framework");
+            return builder.openStream();
+         }
+      });
+      return archive;
+   }
+
+   /**
+    * Collects the logged event journal dumps.
+    */
+   static class CapturingAppender extends AppenderSkeleton
+   {
+      private final List<String> journalDumps = new ArrayList<String>();
+
+      @Override
+      protected synchronized void append(LoggingEvent event)
+      {
+         String message = String.valueOf(event.getMessage());
+         if (event.getLevel() == Level.WARN && message.startsWith("Event journal"))
+            journalDumps.add(message);
+      }
+
+      synchronized List<String> getJournalDumps()
+      {
+         return new ArrayList<String>(journalDumps);
+      }
+
+      @Override
+      public boolean requiresLayout()
+      {
+         return false;
+      }
+
+      @Override
+      public void close()
+      {
+      }
+   }
+}
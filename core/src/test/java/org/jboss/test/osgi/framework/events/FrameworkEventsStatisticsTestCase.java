@@ -0,0 +1,158 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.osgi.framework.events;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jboss.osgi.framework.bundle.AbstractBundle;
+import org.jboss.osgi.framework.plugin.EventDispatchStatistics;
+import org.jboss.osgi.framework.plugin.FrameworkEventsPlugin;
+import org.jboss.osgi.framework.plugin.FrameworkEventsStatisticsMXBean;
+import org.jboss.osgi.testing.OSGiFrameworkTest;
+import org.jboss.osgi.testing.OSGiManifestBuilder;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.Asset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.framework.FrameworkListener;
+import org.osgi.framework.SynchronousBundleListener;
+
+/**
+ * Test the event dispatch statistics of the {@link FrameworkEventsPlugin}.
+ *
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+public class FrameworkEventsStatisticsTestCase extends OSGiFrameworkTest
+{
+   @Test
+   public void testListenerKinds() throws Exception
+   {
+      Bundle bundle = installBundle(createTestBundle("stats1"));
+      try
+      {
+         bundle.start();
+
+         // The same listener object is measured per kind of listener
+         StatsListener listener = new StatsListener();
+         BundleContext context = bundle.getBundleContext();
+         context.addBundleListener(listener);
+         context.addFrameworkListener(listener);
+         getEventsPlugin().fireBundleEvent(bundle, BundleEvent.UPDATED);
+
+         List<EventDispatchStatistics> listenerStats = getListenerStatistics();
+         assertEquals(2, listenerStats.size());
+         for (EventDispatchStatistics stats : listenerStats)
+         {
+            if (stats.getName().contains("(BUNDLE)"))
+               assertEquals(1, stats.getEventCount());
+            else
+               assertEquals(0, stats.getEventCount());
+         }
+         assertEquals(1, getBundleStatistics(bundle).size());
+
+         // Removing the framework listener keeps the bundle listener statistics
+         context.removeFrameworkListener(listener);
+         assertEquals(1, getListenerStatistics().size());
+      }
+      finally
+      {
+         bundle.uninstall();
+      }
+
+      // The statistics of the uninstalled bundle are discarded
+      assertEquals(0, getListenerStatistics().size());
+      assertEquals(0, getBundleStatistics(bundle).size());
+   }
+
+   private FrameworkEventsStatisticsMXBean getStatistics()
+   {
+      FrameworkEventsPlugin eventsPlugin = getEventsPlugin();
+      return eventsPlugin.getStatistics();
+   }
+
+   private FrameworkEventsPlugin getEventsPlugin()
+   {
+      return AbstractBundle.assertBundleState(getFramework()).getBundleManager().getPlugin(FrameworkEventsPlugin.class);
+   }
+
+   private List<EventDispatchStatistics> getListenerStatistics()
+   {
+      List<EventDispatchStatistics> result = new ArrayList<EventDispatchStatistics>();
+      for (EventDispatchStatistics stats : getStatistics().getListenerStatistics())
+      {
+         if (stats.getName().startsWith(StatsListener.class.getName() + "@"))
+            result.add(stats);
+      }
+      return result;
+   }
+
+   private List<EventDispatchStatistics> getBundleStatistics(Bundle bundle)
+   {
+      List<EventDispatchStatistics> result = new ArrayList<EventDispatchStatistics>();
+      for (EventDispatchStatistics stats : getStatistics().getBundleStatistics())
+      {
+         if (stats.getName().equals(bundle.toString()))
+            result.add(stats);
+      }
+      return result;
+   }
+
+   private JavaArchive createTestBundle(String name)
+   {
+      final JavaArchive archive = ShrinkWrap.create(JavaArchive.class, name);
+      archive.setManifest(new Asset()
+      {
+         @Override
+         public InputStream openStream()
+         {
+            OSGiManifestBuilder builder = OSGiManifestBuilder.newInstance();
+            builder.addBundleSymbolicName(archive.getName());
+            builder.addBundleManifestVersion(2);
+            builder.addImportPackages("org.osgi.framework");
+            return builder.openStream();
+         }
+      });
+      return archive;
+   }
+
+   static class StatsListener implements SynchronousBundleListener, FrameworkListener
+   {
+      @Override
+      public void bundleChanged(BundleEvent event)
+      {
+      }
+
+      @Override
+      public void frameworkEvent(FrameworkEvent event)
+      {
+      }
+   }
+}
@@ -0,0 +1,223 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.osgi.framework.executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jboss.osgi.framework.bundle.AbstractBundle;
+import org.jboss.osgi.framework.plugin.FrameworkExecutorPlugin;
+import org.jboss.osgi.testing.OSGiFrameworkTest;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.launch.Framework;
+
+/**
+ * Test the bounded framework executor.
+ *
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+public class FrameworkExecutorTestCase extends OSGiFrameworkTest
+{
+   @BeforeClass
+   public static void beforeClass()
+   {
+      // prevent framework creation
+   }
+
+   @Test(timeout = 10000)
+   public void testBoundedPool() throws Exception
+   {
+      Framework framework = createFramework("2", "2");
+      try
+      {
+         FrameworkExecutorPlugin plugin = getExecutorPlugin(framework);
+         Executor executor = plugin.getExecutor();
+
+         // Two tasks occupy the two threads
+         final CountDownLatch entered = new CountDownLatch(2);
+         final CountDownLatch release = new CountDownLatch(1);
+         for (int i = 0; i < 2; i++)
+            executor.execute(new BlockingTask(entered, release));
+         assertTrue("Tasks running", entered.await(5, TimeUnit.SECONDS));
+         assertEquals(2, plugin.getActiveTaskCount());
+
+         // The queue takes two more tasks, the next one runs on the caller's thread
+         final CountDownLatch queued = new CountDownLatch(2);
+         for (int i = 0; i < 2; i++)
+            executor.execute(new BlockingTask(queued, null));
+         final AtomicReference<Thread> overflowThread = new AtomicReference<Thread>();
+         executor.execute(new Runnable()
+         {
+            @Override
+            public void run()
+            {
+               overflowThread.set(Thread.currentThread());
+            }
+         });
+         assertSame(Thread.currentThread(), overflowThread.get());
+         assertEquals(2, queued.getCount());
+
+         // The queued tasks run when the threads are released
+         release.countDown();
+         assertTrue("Queued tasks run", queued.await(5, TimeUnit.SECONDS));
+      }
+      finally
+      {
+         stopFramework(framework);
+      }
+   }
+
+   @Test(timeout = 10000)
+   public void testStopWithFullQueue() throws Exception
+   {
+      Framework framework = createFramework("2", "2");
+      Executor executor = getExecutorPlugin(framework).getExecutor();
+
+      // Occupy the two threads and fill the queue
+      final CountDownLatch entered = new CountDownLatch(2);
+      final CountDownLatch release = new CountDownLatch(1);
+      for (int i = 0; i < 2; i++)
+         executor.execute(new BlockingTask(entered, release));
+      assertTrue("Tasks running", entered.await(5, TimeUnit.SECONDS));
+      for (int i = 0; i < 2; i++)
+         executor.execute(new BlockingTask(null, null));
+
+      // The stop does not fail and runs on its own thread
+      framework.stop();
+      release.countDown();
+      framework.waitForStop(5000);
+      assertEquals(Bundle.RESOLVED, framework.getState());
+   }
+
+   @Test(timeout = 10000)
+   public void testRejectAfterStop() throws Exception
+   {
+      Framework framework = createFramework("2", "2");
+      FrameworkExecutorPlugin plugin = getExecutorPlugin(framework);
+      stopFramework(framework);
+      long submitted = plugin.getSubmittedTaskCount();
+      try
+      {
+         plugin.getExecutor().execute(new BlockingTask(null, null));
+         fail("RejectedExecutionException expected");
+      }
+      catch (RejectedExecutionException ex)
+      {
+         // expected
+      }
+      try
+      {
+         plugin.createSerialExecutor("serial").execute(new BlockingTask(null, null));
+         fail("RejectedExecutionException expected");
+      }
+      catch (RejectedExecutionException ex)
+      {
+         // expected
+      }
+      assertEquals(submitted, plugin.getSubmittedTaskCount());
+
+      // The executor accepts tasks again when the framework is restarted
+      framework.start();
+      try
+      {
+         CountDownLatch done = new CountDownLatch(1);
+         getExecutorPlugin(framework).getExecutor().execute(new BlockingTask(done, null));
+         assertTrue("Task run after restart", done.await(5, TimeUnit.SECONDS));
+      }
+      finally
+      {
+         stopFramework(framework);
+      }
+   }
+
+   private Framework createFramework(String threads, String capacity) throws Exception
+   {
+      String prevThreads = setProperty(FrameworkExecutorPlugin.PROP_JBOSS_OSGI_EXECUTOR_THREADS, threads);
+      String prevCapacity = setProperty(FrameworkExecutorPlugin.PROP_JBOSS_OSGI_EXECUTOR_QUEUE_CAPACITY, capacity);
+      try
+      {
+         Framework framework = createFramework();
+         framework.start();
+         return framework;
+      }
+      finally
+      {
+         setProperty(FrameworkExecutorPlugin.PROP_JBOSS_OSGI_EXECUTOR_THREADS, prevThreads);
+         setProperty(FrameworkExecutorPlugin.PROP_JBOSS_OSGI_EXECUTOR_QUEUE_CAPACITY, prevCapacity);
+      }
+   }
+
+   private static String setProperty(String key, String value)
+   {
+      return (value != null ? System.setProperty(key, value) : System.clearProperty(key));
+   }
+
+   private void stopFramework(Framework framework) throws Exception
+   {
+      framework.stop();
+      framework.waitForStop(2000);
+   }
+
+   private FrameworkExecutorPlugin getExecutorPlugin(Framework framework)
+   {
+      return AbstractBundle.assertBundleState(framework).getBundleManager().getPlugin(FrameworkExecutorPlugin.class);
+   }
+
+   static class BlockingTask implements Runnable
+   {
+      private final CountDownLatch entered;
+      private final CountDownLatch release;
+
+      BlockingTask(CountDownLatch entered, CountDownLatch release)
+      {
+         this.entered = entered;
+         this.release = release;
+      }
+
+      @Override
+      public void run()
+      {
+         if (entered != null)
+            entered.countDown();
+         try
+         {
+            if (release != null)
+               release.await(5, TimeUnit.SECONDS);
+         }
+         catch (InterruptedException ex)
+         {
+            Thread.currentThread().interrupt();
+         }
+      }
+   }
+}
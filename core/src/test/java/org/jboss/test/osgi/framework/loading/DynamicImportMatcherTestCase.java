@@ -0,0 +1,79 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.osgi.framework.loading;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.jboss.osgi.framework.loading.DynamicImportMatcher;
+import org.junit.Test;
+
+/**
+ * Test the compiled DynamicImport-Package patterns.
+ *
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+public class DynamicImportMatcherTestCase
+{
+   @Test
+   public void testMatchAll() throws Exception
+   {
+      DynamicImportMatcher matcher = DynamicImportMatcher.compile(Arrays.asList("org.foo", "*"));
+      assertTrue(matcher.matchesClass("org.bar.Bar"));
+      assertTrue(matcher.matchesClass("Bar"));
+   }
+
+   @Test
+   public void testExactPackage() throws Exception
+   {
+      DynamicImportMatcher matcher = DynamicImportMatcher.compile(Arrays.asList("org.osgi.service.log"));
+      assertTrue(matcher.matchesClass("org.osgi.service.log.LogService"));
+      assertFalse(matcher.matchesClass("org.osgi.service.log.sub.LogService"));
+      assertFalse(matcher.matchesClass("org.osgi.service.logger.LogService"));
+      assertFalse(matcher.matchesClass("org.osgi.service.LogService"));
+      assertFalse(matcher.matchesClass("LogService"));
+   }
+
+   @Test
+   public void testWildcardPackage() throws Exception
+   {
+      DynamicImportMatcher matcher = DynamicImportMatcher.compile(Arrays.asList("org.foo.*", "org.bar"));
+      assertTrue(matcher.matchesClass("org.foo.Foo"));
+      assertTrue(matcher.matchesClass("org.foo.sub.Foo"));
+      assertFalse(matcher.matchesClass("org.foobar.Foo"));
+      assertFalse(matcher.matchesClass("org.Foo"));
+      assertTrue(matcher.matchesClass("org.bar.Bar"));
+      assertFalse(matcher.matchesClass("org.bar.sub.Bar"));
+   }
+
+   @Test
+   public void testNoPatterns() throws Exception
+   {
+      DynamicImportMatcher matcher = DynamicImportMatcher.compile(Collections.<String> emptyList());
+      assertTrue(matcher.isEmpty());
+      assertFalse(matcher.matchesClass("org.foo.Foo"));
+   }
+}
@@ -0,0 +1,170 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.osgi.framework.loading;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+
+import org.jboss.osgi.testing.OSGiFrameworkTest;
+import org.jboss.osgi.testing.OSGiManifestBuilder;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.Asset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.jboss.test.osgi.framework.loading.subB.SimpleService;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+
+/**
+ * Test that a cached dynamic class loading miss does not hide a new exporter.
+ *
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+public class DynamicImportMissCacheTestCase extends OSGiFrameworkTest
+{
+   private static final String MISSING_PACKAGE = "org.jboss.test.osgi.framework.loading.missing";
+
+   @Test
+   public void testMissInvalidatedByResolvedExporter() throws Exception
+   {
+      Bundle importer = installBundle(getImporter());
+      Bundle exporter = installBundle(getExporter());
+      try
+      {
+         // The exporter cannot resolve, the class is not found
+         assertLoadClassFail(importer, SimpleService.class.getName());
+         assertLoadClassFail(importer, SimpleService.class.getName());
+         assertBundleState(Bundle.INSTALLED, exporter.getState());
+
+         // The exporter resolves when its missing import becomes available
+         Bundle provider = installBundle(getProvider());
+         try
+         {
+            assertTrue("Exporter resolved", getPackageAdmin().resolveBundles(new Bundle[] { exporter }));
+            assertBundleState(Bundle.RESOLVED, exporter.getState());
+
+            // The cached miss does not hide the new exporter
+            assertLoadClass(importer, SimpleService.class.getName(), exporter);
+         }
+         finally
+         {
+            provider.uninstall();
+         }
+      }
+      finally
+      {
+         importer.uninstall();
+         exporter.uninstall();
+      }
+   }
+
+   @Test
+   public void testMissWithInstalledExporter() throws Exception
+   {
+      Bundle importer = installBundle(getImporter());
+      Bundle exporter = installBundle(getExporter());
+      try
+      {
+         // The exporter cannot resolve yet, the miss must not be cached
+         assertLoadClassFail(importer, SimpleService.class.getName());
+         assertBundleState(Bundle.INSTALLED, exporter.getState());
+
+         // The dynamic load resolves the exporter once its missing import becomes available
+         Bundle provider = installBundle(getProvider());
+         try
+         {
+            assertLoadClass(importer, SimpleService.class.getName(), exporter);
+            assertBundleState(Bundle.RESOLVED, exporter.getState());
+         }
+         finally
+         {
+            provider.uninstall();
+         }
+      }
+      finally
+      {
+         importer.uninstall();
+         exporter.uninstall();
+      }
+   }
+
+   private JavaArchive getImporter()
+   {
+      // Bundle-SymbolicName: miss-cache-importer
+      // DynamicImport-Package: org.jboss.test.osgi.framework.loading.subB
+      final JavaArchive archive = ShrinkWrap.create(JavaArchive.class, "miss-cache-importer");
+      archive.setManifest(new Asset()
+      {
+         public InputStream openStream()
+         {
+            OSGiManifestBuilder builder = OSGiManifestBuilder.newInstance();
+            builder.addBundleManifestVersion(2);
+            builder.addBundleSymbolicName(archive.getName());
+            builder.addDynamicImportPackages(SimpleService.class.getPackage().getName());
+            return builder.openStream();
+         }
+      });
+      return archive;
+   }
+
+   private JavaArchive getExporter()
+   {
+      // Bundle-SymbolicName: miss-cache-exporter
+      // Export-Package: org.jboss.test.osgi.framework.loading.subB
+      // Import-Package: org.osgi.framework, org.jboss.test.osgi.framework.loading.missing
+      final JavaArchive archive = ShrinkWrap.create(JavaArchive.class, "miss-cache-exporter");
+      archive.addClasses(SimpleService.class);
+      archive.setManifest(new Asset()
+      {
+         public InputStream openStream()
+         {
+            OSGiManifestBuilder builder = OSGiManifestBuilder.newInstance();
+            builder.addBundleManifestVersion(2);
+            builder.addBundleSymbolicName(archive.getName());
+            builder.addExportPackages(SimpleService.class);
+            builder.addImportPackages("org.osgi.framework", MISSING_PACKAGE);
+            return builder.openStream();
+         }
+      });
+      return archive;
+   }
+
+   private JavaArchive getProvider()
+   {
+      // Bundle-SymbolicName: miss-cache-provider
+      // Export-Package: org.jboss.test.osgi.framework.loading.missing
+      final JavaArchive archive = ShrinkWrap.create(JavaArchive.class, "miss-cache-provider");
+      archive.setManifest(new Asset()
+      {
+         public InputStream openStream()
+         {
+            OSGiManifestBuilder builder = OSGiManifestBuilder.newInstance();
+            builder.addBundleManifestVersion(2);
+            builder.addBundleSymbolicName(archive.getName());
+            builder.addExportPackages(MISSING_PACKAGE);
+            return builder.openStream();
+         }
+      });
+      return archive;
+   }
+}
@@ -21,10 +21,13 @@
  */
 package org.jboss.test.osgi.framework.loading;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.util.Collection;
 
@@ -92,6 +95,13 @@ public class VirtualFileResourceLoaderTestCase
       ResourceLoader loader = new VirtualFileResourceLoader(rootFile);
       ClassSpec result = loader.getClassSpec(SimpleActivator.class.getName());
       assertNotNull("ClassSpec not null", result);
+
+      byte[] expected = readBytes(getClass().getResourceAsStream("subA/SimpleActivator.class"));
+      assertArrayEquals(expected, result.getBytes());
+
+      // The size of an archive entry is known without reading it
+      Resource resource = loader.getResource(SimpleActivator.class.getName().replace('.', '/') + ".class");
+      assertEquals(expected.length, resource.getSize());
    }
 
    @Test
@@ -100,6 +110,7 @@ public class VirtualFileResourceLoaderTestCase
       ResourceLoader loader = new VirtualFileResourceLoader(rootFile);
       PackageSpec result = loader.getPackageSpec(SimpleActivator.class.getPackage().getName());
       assertNotNull("PackageSpec not null", result);
+      assertSame(result, loader.getPackageSpec(SimpleActivator.class.getPackage().getName()));
    }
 
    @Test
@@ -117,6 +128,24 @@ public class VirtualFileResourceLoaderTestCase
 
       result = loader.getResource("/log4j.xml");
       assertNotNull("Resource not null", result);
+      assertEquals(readBytes(result.openStream()).length, result.getSize());
+   }
+
+   private static byte[] readBytes(InputStream is) throws Exception
+   {
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      try
+      {
+         byte[] buffer = new byte[1024];
+         int read;
+         while ((read = is.read(buffer)) > 0)
+            os.write(buffer, 0, read);
+      }
+      finally
+      {
+         is.close();
+      }
+      return os.toByteArray();
    }
 
 
@@ -0,0 +1,150 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.osgi.framework.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Dictionary;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.List;
+
+import org.jboss.osgi.framework.util.CompiledFilter;
+import org.junit.Test;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.Version;
+
+/**
+ * Test that the compiled filter matches like the filter from {@link FrameworkUtil}.
+ *
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+public class CompiledFilterTestCase
+{
+   private static final String[] FILTERS = new String[] {
+      "(a=b)", "(A=b)", "(a=B)", "(a=*)", "(a=b*)", "(a=*b)", "(a=*b*)", "(a=b*d*f)", "(a=\\*)",
+      "(a~=B)", "(a~= b )", "(a>=b)", "(a<=b)", "(!(a=b))", "(&(a=b)(c=d))", "(|(a=x)(c=d))",
+      "(num=10)", "(num= 10 )", "(num>=5)", "(num<=5)", "(num~=10)", "(num=abc)", "(num=1*)",
+      "(long=10)", "(double>=1.5)", "(float=2.5)", "(bool=true)", "(bool=TRUE)", "(char=x)", "(char= x)", "(char=x )", "(char~=X)",
+      "(version>=1.0)", "(version=1.2.3)", "(version=notaversion)",
+      "(array=x)", "(array=y*)", "(ints=2)", "(list=z)",
+      " ( & ( a = b ) ( c = d ) ) " };
+
+   @Test
+   public void testMatchLikeFrameworkUtil() throws Exception
+   {
+      Dictionary<String, Object> props = new Hashtable<String, Object>();
+      props.put("a", "b");
+      props.put("c", "d");
+      props.put("num", new Integer(10));
+      props.put("long", new Long(10));
+      props.put("double", new Double(2.5));
+      props.put("float", new Float(2.5));
+      props.put("bool", Boolean.TRUE);
+      props.put("char", new Character('x'));
+      props.put("version", new Version("1.2.3"));
+      props.put("array", new String[] { "x", "yy" });
+      props.put("ints", new int[] { 1, 2, 3 });
+      props.put("list", Arrays.asList("z"));
+      assertMatch(props);
+
+      props = new Hashtable<String, Object>();
+      props.put("A", "bcdef");
+      props.put("num", "10");
+      props.put("version", "1.2.3");
+      assertMatch(props);
+
+      assertMatch(new Hashtable<String, Object>());
+   }
+
+   @Test
+   public void testFilterCache() throws Exception
+   {
+      CompiledFilter filter = CompiledFilter.compile("(a=b)");
+      assertSame(filter, CompiledFilter.compile("(a=b)"));
+      assertEquals(FrameworkUtil.createFilter("(a=b)"), filter);
+      assertEquals("(a=b)", filter.toString());
+   }
+
+   @Test
+   public void testFilterCacheEvictsLeastRecentlyUsed() throws Exception
+   {
+      CompiledFilter filter = CompiledFilter.compile("(lru=0)");
+      for (int i = 1; i <= 2048; i++)
+      {
+         // Keep the first filter recently used while the cache overflows
+         assertSame(filter, CompiledFilter.compile("(lru=0)"));
+         CompiledFilter.compile("(lru=" + i + ")");
+      }
+      assertSame(filter, CompiledFilter.compile("(lru=0)"));
+   }
+
+   @Test
+   public void testRequiredTerms() throws Exception
+   {
+      List<String[]> terms = CompiledFilter.compile("(&(A=b)(c=*)(d=e*)(|(f=g)(h=i))(j>=1))").getRequiredTerms();
+      assertEquals(2, terms.size());
+      assertEquals(Arrays.asList("a", "b"), Arrays.asList(terms.get(0)));
+      assertEquals(Arrays.asList("c", null), Arrays.asList(terms.get(1)));
+   }
+
+   @Test
+   public void testReferencedKeys() throws Exception
+   {
+      CompiledFilter filter = CompiledFilter.compile("(&(A=b)(!(c=*))(|(d>=1)(e~=f)))");
+      assertEquals(new HashSet<String>(Arrays.asList("a", "c", "d", "e")), filter.getReferencedKeys());
+      assertTrue(filter.referencesAny(Arrays.asList("x", "d")));
+      assertFalse(filter.referencesAny(Arrays.asList("x", "counter")));
+   }
+
+   @Test
+   public void testInvalidSyntax() throws Exception
+   {
+      try
+      {
+         CompiledFilter.compile("(a=b");
+         fail("InvalidSyntaxException expected");
+      }
+      catch (InvalidSyntaxException ex)
+      {
+         // expected
+      }
+   }
+
+   private void assertMatch(Dictionary<String, Object> props) throws Exception
+   {
+      for (String filterstr : FILTERS)
+      {
+         Filter expected = FrameworkUtil.createFilter(filterstr);
+         CompiledFilter filter = CompiledFilter.compile(filterstr);
+         assertEquals(filterstr + " " + props, expected.match(props), filter.match(props));
+      }
+   }
+}
@@ -0,0 +1,236 @@
+/*
+* JBoss, Home of Professional Open Source
+* Copyright 2009, Red Hat Middleware LLC, and individual contributors
+* as indicated by the @author tags. See the copyright.txt file in the
+* distribution for a full listing of individual contributors.
+*
+* This is free software; you can redistribute it and/or modify it
+* under the terms of the GNU Lesser General Public License as
+* published by the Free Software Foundation; either version 2.1 of
+* the License, or (at your option) any later version.
+*
+* This software is distributed in the hope that it will be useful,
+* but WITHOUT ANY WARRANTY; without even the implied warranty of
+* MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+* Lesser General Public License for more details.
+*
+* You should have received a copy of the GNU Lesser General Public
+* License along with this software; if not, write to the Free
+* Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+* 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jboss.test.osgi.framework.xservice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.InputStream;
+
+import org.jboss.msc.service.ServiceContainer;
+import org.jboss.msc.service.ServiceName;
+import org.jboss.osgi.framework.bundle.AbstractBundle;
+import org.jboss.osgi.framework.bundle.ServiceState;
+import org.jboss.osgi.framework.plugin.ServiceManagerPlugin;
+import org.jboss.osgi.testing.OSGiFrameworkTest;
+import org.jboss.osgi.testing.OSGiManifestBuilder;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.Asset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.jboss.test.osgi.framework.xservice.bundleB.BundleActivatorB;
+import org.jboss.test.osgi.framework.xservice.bundleB.BundleServiceB;
+import org.jboss.test.osgi.framework.xservice.moduleA.ModuleActivatorA;
+import org.jboss.test.osgi.framework.xservice.moduleA.ModuleServiceA;
+import org.jboss.test.osgi.framework.xservice.moduleD.ModuleActivatorD;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.framework.launch.Framework;
+
+/**
+ * Test that services are exported to MSC on demand in lightweight mode.
+ *
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+public class LightweightServiceTestCase extends OSGiFrameworkTest
+{
+   @BeforeClass
+   public static void beforeClass()
+   {
+      // prevent framework creation
+   }
+
+   @Test
+   public void testRegisterLookupAndExport() throws Exception
+   {
+      Framework framework = createLightweightFramework();
+      try
+      {
+         BundleContext context = framework.getBundleContext();
+         Runnable service = new Runnable()
+         {
+            public void run()
+            {
+            }
+         };
+         ServiceRegistration sreg = context.registerService(Runnable.class.getName(), service, null);
+         ServiceReference sref = context.getServiceReference(Runnable.class.getName());
+         assertNotNull("Service ref not null", sref);
+         assertEquals(sreg.getReference(), sref);
+         assertSame(service, context.getService(sref));
+
+         // The service is not installed in MSC at registration time
+         ServiceManagerPlugin serviceManager = getServiceManager(framework);
+         ServiceContainer serviceContainer = serviceManager.getServiceContainer();
+         ServiceState serviceState = ServiceState.assertServiceState(sref);
+         ServiceName rootName = serviceState.getServiceNames().get(0);
+         assertNull("MSC service null", serviceContainer.getService(rootName));
+
+         // The service is installed in MSC when it gets exported
+         assertEquals(rootName, serviceManager.exportService(serviceState));
+         assertNotNull("MSC service not null", serviceContainer.getService(rootName));
+         assertEquals(rootName, serviceManager.exportService(serviceState));
+
+         // The exported service is removed from MSC when it gets unregistered
+         sreg.unregister();
+         for (int i = 0; serviceContainer.getService(rootName) != null && i < 50; i++)
+            Thread.sleep(100);
+         assertNull("MSC service null", serviceContainer.getService(rootName));
+      }
+      finally
+      {
+         stopFramework(framework);
+      }
+   }
+
+   @Test
+   public void testModuleDependsOnBundle() throws Exception
+   {
+      Framework framework = createLightweightFramework();
+      try
+      {
+         Bundle bundleB = installBundle(getBundleB());
+         bundleB.start();
+         assertBundleState(Bundle.ACTIVE, bundleB.getState());
+
+         // The module activator explicitly exports the bundle service to MSC
+         Bundle moduleDS = installBundle(getModuleDS());
+         moduleDS.start();
+         assertBundleState(Bundle.ACTIVE, moduleDS.getState());
+
+         BundleContext context = bundleB.getBundleContext();
+         ServiceReference sref = context.getServiceReference(BundleServiceB.class.getName());
+         ServiceName rootName = ServiceState.assertServiceState(sref).getServiceNames().get(0);
+         assertNotNull("MSC service not null", getServiceManager(framework).getServiceContainer().getService(rootName));
+
+         moduleDS.uninstall();
+         bundleB.uninstall();
+      }
+      finally
+      {
+         stopFramework(framework);
+      }
+   }
+
+   @Test
+   public void testXServiceNotExported() throws Exception
+   {
+      Framework framework = createLightweightFramework();
+      try
+      {
+         Bundle moduleAS = installBundle(getModuleAS());
+         moduleAS.start();
+         assertBundleState(Bundle.ACTIVE, moduleAS.getState());
+
+         // The MSC services are started asynchronously
+         BundleContext context = moduleAS.getBundleContext();
+         ServiceReference sref = context.getServiceReference(ModuleServiceA.class.getName());
+         for (int i = 0; sref == null && i < 50; i++)
+         {
+            Thread.sleep(100);
+            sref = context.getServiceReference(ModuleServiceA.class.getName());
+         }
+         assertNotNull("Service ref not null", sref);
+
+         // A bridged xservice already lives in MSC
+         ServiceState serviceState = ServiceState.assertServiceState(sref);
+         assertNull("Bridged xservice not exported", getServiceManager(framework).exportService(serviceState));
+
+         moduleAS.uninstall();
+      }
+      finally
+      {
+         stopFramework(framework);
+      }
+   }
+
+   private Framework createLightweightFramework() throws Exception
+   {
+      String previous = System.setProperty(ServiceManagerPlugin.PROP_JBOSS_OSGI_SERVICE_LIGHTWEIGHT, "true");
+      try
+      {
+         Framework framework = createFramework();
+         framework.start();
+         return framework;
+      }
+      finally
+      {
+         if (previous != null)
+            System.setProperty(ServiceManagerPlugin.PROP_JBOSS_OSGI_SERVICE_LIGHTWEIGHT, previous);
+         else
+            System.clearProperty(ServiceManagerPlugin.PROP_JBOSS_OSGI_SERVICE_LIGHTWEIGHT);
+      }
+   }
+
+   private void stopFramework(Framework framework) throws Exception
+   {
+      framework.stop();
+      framework.waitForStop(2000);
+   }
+
+   private ServiceManagerPlugin getServiceManager(Framework framework)
+   {
+      return AbstractBundle.assertBundleState(framework).getBundleManager().getPlugin(ServiceManagerPlugin.class);
+   }
+
+   private JavaArchive getBundleB()
+   {
+      final JavaArchive archive = ShrinkWrap.create(JavaArchive.class, "xservice.bundleB");
+      archive.addClasses(BundleActivatorB.class, BundleServiceB.class);
+      archive.setManifest(new Asset()
+      {
+         public InputStream openStream()
+         {
+            OSGiManifestBuilder builder = OSGiManifestBuilder.newInstance();
+            builder.addBundleManifestVersion(2);
+            builder.addBundleSymbolicName(archive.getName());
+            builder.addBundleVersion("1.0.0");
+            builder.addBundleActivator(BundleActivatorB.class);
+            builder.addExportPackages(BundleServiceB.class);
+            return builder.openStream();
+         }
+      });
+      return archive;
+   }
+
+   private JavaArchive getModuleAS()
+   {
+      JavaArchive archive = ShrinkWrap.create(JavaArchive.class, "moduleAS");
+      archive.addManifestResource(getResourceFile("xservice/moduleAS/META-INF/jbosgi-xservice.properties"));
+      archive.addClasses(ModuleActivatorA.class, ModuleServiceA.class);
+      return archive;
+   }
+
+   private JavaArchive getModuleDS()
+   {
+      JavaArchive archive = ShrinkWrap.create(JavaArchive.class, "moduleDS");
+      archive.addManifestResource(getResourceFile("xservice/moduleDS/META-INF/jbosgi-xservice.properties"));
+      archive.addClasses(ModuleActivatorD.class);
+      return archive;
+   }
+}
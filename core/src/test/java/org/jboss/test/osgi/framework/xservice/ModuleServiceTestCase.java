@@ -23,11 +23,25 @@ package org.jboss.test.osgi.framework.xservice;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
+import org.jboss.msc.service.BatchBuilder;
+import org.jboss.msc.service.Service;
+import org.jboss.msc.service.ServiceContainer;
+import org.jboss.msc.service.ServiceController;
+import org.jboss.msc.service.ServiceController.Mode;
+import org.jboss.msc.service.ServiceName;
+import org.jboss.msc.service.StartContext;
+import org.jboss.msc.service.StartException;
+import org.jboss.msc.service.StopContext;
+import org.jboss.osgi.framework.bundle.AbstractBundle;
+import org.jboss.osgi.framework.bundle.BundleManager;
+import org.jboss.osgi.framework.plugin.ServiceManagerPlugin;
+import org.jboss.osgi.modules.ModuleContext;
 import org.jboss.osgi.testing.OSGiFrameworkTest;
 import org.jboss.osgi.testing.OSGiManifestBuilder;
 import org.jboss.shrinkwrap.api.ShrinkWrap;
@@ -41,6 +55,7 @@ import org.jboss.test.osgi.framework.xservice.moduleA.ModuleActivatorA;
 import org.jboss.test.osgi.framework.xservice.moduleA.ModuleServiceA;
 import org.jboss.test.osgi.framework.xservice.moduleB.ModuleActivatorB;
 import org.jboss.test.osgi.framework.xservice.moduleB.ModuleServiceB;
+import org.jboss.test.osgi.framework.xservice.moduleC.ModuleActivatorC;
 import org.junit.Test;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
@@ -159,6 +174,147 @@ public class ModuleServiceTestCase extends OSGiFrameworkTest
       }
    }
 
+   @Test
+   public void testXServiceInstalledOutsideStart() throws Exception
+   {
+      ServiceContainer serviceContainer = getServiceContainer();
+      String className = "org.jboss.test.osgi.framework.xservice.OutsideService";
+      ServiceName serviceName = ServiceName.of(ModuleContext.XSERVICE_PREFIX, className);
+
+      // Install an xservice that is not installed by a module activator
+      BatchBuilder batchBuilder = serviceContainer.batchBuilder();
+      batchBuilder.addService(serviceName, new ValueService("outside")).setInitialMode(Mode.AUTOMATIC);
+      batchBuilder.install();
+      ServiceController<?> controller = serviceContainer.getService(serviceName);
+      try
+      {
+         // The xservice is discovered by its prefix
+         BundleContext context = getFramework().getBundleContext();
+         ServiceReference sref = awaitServiceReference(context, className);
+         assertNotNull("Service ref not null", sref);
+         assertEquals("outside", context.getService(sref));
+
+         // The bridged service has a stable reference
+         assertEquals(sref, context.getServiceReference(className));
+         assertEquals(1, context.getServiceReferences(className, null).length);
+      }
+      finally
+      {
+         controller.setMode(Mode.REMOVE);
+      }
+   }
+
+   @Test
+   public void testXServiceRegisteredAfterMiss() throws Exception
+   {
+      ServiceContainer serviceContainer = getServiceContainer();
+      String className = "org.jboss.test.osgi.framework.xservice.LateService";
+      ServiceName serviceName = ServiceName.of(ModuleContext.XSERVICE_PREFIX, className);
+
+      // The lookup miss is cached
+      BundleContext context = getFramework().getBundleContext();
+      assertNull("Service ref null", context.getServiceReference(className));
+
+      BatchBuilder batchBuilder = serviceContainer.batchBuilder();
+      batchBuilder.addService(serviceName, new ValueService("late")).setInitialMode(Mode.AUTOMATIC);
+      batchBuilder.install();
+      ServiceController<?> controller = serviceContainer.getService(serviceName);
+      try
+      {
+         // An explicit registration bridges the xservice after the miss
+         BundleManager bundleManager = AbstractBundle.assertBundleState(getFramework()).getBundleManager();
+         bundleManager.getPlugin(ServiceManagerPlugin.class).registerXService(serviceName, className);
+         ServiceReference sref = awaitServiceReference(context, className);
+         assertNotNull("Service ref not null", sref);
+         assertEquals("late", context.getService(sref));
+      }
+      finally
+      {
+         controller.setMode(Mode.REMOVE);
+      }
+   }
+
+   @Test
+   public void testConsumerGetServiceName() throws Exception
+   {
+      Bundle moduleAS = installBundle(getModuleAS());
+      try
+      {
+         moduleAS.start();
+         BundleContext context = moduleAS.getBundleContext();
+         ServiceReference sref = awaitServiceReference(context, ModuleServiceA.class.getName());
+         assertNotNull("Service ref not null", sref);
+
+         // A consumer module that references the xservice does not bridge it again
+         Bundle moduleCS = installBundle(getModuleCS());
+         try
+         {
+            moduleCS.start();
+            assertBundleState(Bundle.ACTIVE, moduleCS.getState());
+            assertEquals(1, context.getServiceReferences(ModuleServiceA.class.getName(), null).length);
+            assertEquals(moduleAS, context.getServiceReference(ModuleServiceA.class.getName()).getBundle());
+
+            // Stopping the consumer does not remove the MSC service
+            moduleCS.stop();
+            ServiceName serviceName = ServiceName.of(ModuleContext.XSERVICE_PREFIX, ModuleServiceA.class.getName());
+            assertNotNull("MSC service not null", getServiceContainer().getService(serviceName));
+            assertEquals(sref, context.getServiceReference(ModuleServiceA.class.getName()));
+         }
+         finally
+         {
+            moduleCS.uninstall();
+         }
+      }
+      finally
+      {
+         moduleAS.uninstall();
+      }
+   }
+
+   private ServiceContainer getServiceContainer()
+   {
+      BundleManager bundleManager = AbstractBundle.assertBundleState(getFramework()).getBundleManager();
+      return bundleManager.getPlugin(ServiceManagerPlugin.class).getServiceContainer();
+   }
+
+   private ServiceReference awaitServiceReference(BundleContext context, String className) throws InterruptedException
+   {
+      // The MSC services are started asynchronously
+      ServiceReference sref = context.getServiceReference(className);
+      for (int i = 0; sref == null && i < 50; i++)
+      {
+         Thread.sleep(100);
+         sref = context.getServiceReference(className);
+      }
+      return sref;
+   }
+
+   static class ValueService implements Service<Object>
+   {
+      private final Object value;
+
+      ValueService(Object value)
+      {
+         this.value = value;
+      }
+
+      @Override
+      public Object getValue() throws IllegalStateException
+      {
+         return value;
+      }
+
+      @Override
+      public void start(StartContext context) throws StartException
+      {
+      }
+
+      @Override
+      public void stop(StopContext context)
+      {
+      }
+   }
+
    private String invokeService(Object service, String exp) throws NoSuchMethodException, IllegalAccessException, InvocationTargetException
    {
       Method method = service.getClass().getMethod("echo", new Class<?>[] { String.class });
@@ -221,6 +377,14 @@ public class ModuleServiceTestCase extends OSGiFrameworkTest
       return archive;
    }
 
+   private JavaArchive getModuleCS()
+   {
+      JavaArchive archive = ShrinkWrap.create(JavaArchive.class, "moduleCS");
+      archive.addManifestResource(getResourceFile("xservice/moduleCS/META-INF/jbosgi-xservice.properties"));
+      archive.addClasses(ModuleActivatorC.class);
+      return archive;
+   }
+
    private JavaArchive getModuleBS()
    {
       JavaArchive archive = ShrinkWrap.create(JavaArchive.class, "moduleBS");
@@ -0,0 +1,50 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2005, JBoss Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.test.osgi.framework.xservice.moduleC;
+
+import org.jboss.msc.service.ServiceName;
+import org.jboss.osgi.modules.ModuleActivator;
+import org.jboss.osgi.modules.ModuleContext;
+import org.jboss.test.osgi.framework.xservice.moduleA.ModuleServiceA;
+
+/**
+ * A module activator that references the xservice of another module.
+ *
+ * @author agent@local
+ * @since 18-Oct-2026
+ */
+public class ModuleActivatorC implements ModuleActivator
+{
+   @Override
+   public void start(ModuleContext context)
+   {
+      // Only reference the xservice, which is installed by moduleAS
+      ServiceName serviceName = context.getServiceName(ModuleServiceA.class);
+      if (context.getServiceContainer().getService(serviceName) == null)
+         throw new IllegalStateException("Cannot obtain xservice: " + serviceName);
+   }
+
+   @Override
+   public void stop(ModuleContext context)
+   {
+   }
+}
@@ -37,6 +37,9 @@ import java.util.Dictionary;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.jboss.osgi.testing.OSGiFrameworkTest;
 import org.junit.Test;
@@ -441,6 +444,114 @@ public class BundleContextTestCase extends OSGiFrameworkTest
       assertEquals(BundleEvent.UNINSTALLED, events.get(8).getType());
    }
    
+   @Test
+   public void testAddRemoveBundleListenerWhileFiring() throws Exception
+   {
+      // The listeners of an event are a snapshot taken when the event is fired
+      final BundleContext systemContext = getSystemContext();
+      final List<Integer> addedEvents = new CopyOnWriteArrayList<Integer>();
+      final BundleListener addedListener = new SynchronousBundleListener()
+      {
+         @Override
+         public void bundleChanged(BundleEvent event)
+         {
+            addedEvents.add(event.getType());
+         }
+      };
+      final List<Integer> removedEvents = new CopyOnWriteArrayList<Integer>();
+      BundleListener removedListener = new SynchronousBundleListener()
+      {
+         @Override
+         public void bundleChanged(BundleEvent event)
+         {
+            removedEvents.add(event.getType());
+            systemContext.addBundleListener(addedListener);
+            systemContext.removeBundleListener(this);
+         }
+      };
+      systemContext.addBundleListener(removedListener);
+      try
+      {
+         Bundle bundle = installBundle(assembleArchive("simple-bundle1", "/bundles/simple/simple-bundle1"));
+         bundle.start();
+         bundle.uninstall();
+
+         // The removed listener only saw the event it was removed in, the added listener only the later events
+         assertEquals(1, removedEvents.size());
+         assertEquals(BundleEvent.INSTALLED, removedEvents.get(0).intValue());
+         assertEquals(BundleEvent.RESOLVED, addedEvents.get(0).intValue());
+         assertEquals(BundleEvent.UNINSTALLED, addedEvents.get(addedEvents.size() - 1).intValue());
+      }
+      finally
+      {
+         systemContext.removeBundleListener(removedListener);
+         systemContext.removeBundleListener(addedListener);
+      }
+   }
+
+   @Test
+   public void testAsynchronousBundleListeners() throws Exception
+   {
+      // A slow listener must not delay the delivery to other listeners
+      final CountDownLatch release = new CountDownLatch(1);
+      final List<Integer> slowEvents = new CopyOnWriteArrayList<Integer>();
+      BundleListener slowListener = new BundleListener()
+      {
+         @Override
+         public void bundleChanged(BundleEvent event)
+         {
+            try
+            {
+               release.await(10, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException ex)
+            {
+               Thread.currentThread().interrupt();
+            }
+            slowEvents.add(event.getType());
+         }
+      };
+      final CountDownLatch uninstalled = new CountDownLatch(1);
+      final List<Integer> fastEvents = new CopyOnWriteArrayList<Integer>();
+      BundleListener fastListener = new BundleListener()
+      {
+         @Override
+         public void bundleChanged(BundleEvent event)
+         {
+            fastEvents.add(event.getType());
+            if (event.getType() == BundleEvent.UNINSTALLED)
+               uninstalled.countDown();
+         }
+      };
+      BundleContext systemContext = getSystemContext();
+      systemContext.addBundleListener(slowListener);
+      systemContext.addBundleListener(fastListener);
+      try
+      {
+         Bundle bundle = installBundle(assembleArchive("simple-bundle1", "/bundles/simple/simple-bundle1"));
+         bundle.start();
+         bundle.uninstall();
+
+         assertTrue("Fast listener not delayed", uninstalled.await(5, TimeUnit.SECONDS));
+         assertTrue("Slow listener still blocked: " + slowEvents, slowEvents.isEmpty());
+         assertEquals(BundleEvent.INSTALLED, fastEvents.get(0).intValue());
+         assertEquals(BundleEvent.UNINSTALLED, fastEvents.get(fastEvents.size() - 1).intValue());
+
+         // The slow listener receives the same events in the same order
+         release.countDown();
+         long timeout = System.currentTimeMillis() + 5000;
+         while (slowEvents.size() < fastEvents.size() && System.currentTimeMillis() < timeout)
+            Thread.sleep(50);
+         assertEquals(fastEvents, slowEvents);
+      }
+      finally
+      {
+         release.countDown();
+         systemContext.removeBundleListener(slowListener);
+         systemContext.removeBundleListener(fastListener);
+      }
+   }
+
    @Test
    public void testFrameworkListener() throws Exception
    {
@@ -26,6 +26,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
 
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Dictionary;
 import java.util.Hashtable;
 
@@ -703,4 +704,54 @@ public class GetServiceReferencesTestCase extends OSGiFrameworkTest
          bundle.uninstall();
       }
    }
+
+   @Test
+   public void testGetServiceReferencesIndexedProperty() throws Exception
+   {
+      Runnable runIt = new Runnable()
+      {
+         public void run()
+         {
+         }
+      };
+
+      BundleContext context = getFramework().getBundleContext();
+      Dictionary<String, Object> properties = new Hashtable<String, Object>();
+      properties.put(Constants.SERVICE_PID, "pid1");
+      ServiceRegistration sreg1 = context.registerService(Runnable.class.getName(), runIt, properties);
+      ServiceReference sref1 = sreg1.getReference();
+
+      properties = new Hashtable<String, Object>();
+      properties.put(Constants.SERVICE_PID, new String[] { "pid1", "pid2" });
+      ServiceRegistration sreg2 = context.registerService(Runnable.class.getName(), runIt, properties);
+      ServiceReference sref2 = sreg2.getReference();
+
+      properties = new Hashtable<String, Object>();
+      properties.put(Constants.SERVICE_PID, new Integer(1));
+      ServiceRegistration sreg3 = context.registerService(Runnable.class.getName(), runIt, properties);
+      ServiceReference sref3 = sreg3.getReference();
+
+      ServiceReference[] srefs = context.getServiceReferences(null, "(service.pid=pid1)");
+      assertEquals(2, srefs.length);
+      assertEquals(Arrays.asList(sref1, sref2), Arrays.asList(srefs[1], srefs[0]));
+      assertReferences(context, null, "(service.pid=pid2)", sref2);
+      assertReferences(context, null, "(service.pid=1)", sref3);
+      assertReferences(context, null, "(&(service.pid=pid2)(objectClass=" + Runnable.class.getName() + "))", sref2);
+      assertReferences(context, null, "(&(service.pid=*)(!(service.pid=pid1)))", sref3);
+      assertNoReferences(context, null, "(service.pid=pid3)");
+
+      properties = new Hashtable<String, Object>();
+      properties.put(Constants.SERVICE_PID, "pid3");
+      sreg1.setProperties(properties);
+
+      assertReferences(context, null, "(service.pid=pid1)", sref2);
+      assertReferences(context, null, "(service.pid=pid3)", sref1);
+
+      sreg2.unregister();
+      assertNoReferences(context, null, "(service.pid=pid2)");
+
+      sreg1.unregister();
+      sreg3.unregister();
+      assertNoReferences(context, null, "(service.pid=pid*)");
+   }
 }
@@ -28,6 +28,10 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.jboss.osgi.testing.OSGiFrameworkTest;
 import org.jboss.shrinkwrap.api.Archive;
 import org.jboss.test.osgi.framework.service.support.BrokenServiceFactory;
@@ -36,6 +40,7 @@ import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.FrameworkEvent;
 import org.osgi.framework.ServiceException;
+import org.osgi.framework.ServiceFactory;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
 
@@ -256,4 +261,95 @@ public class GetUnGetServiceTestCase extends OSGiFrameworkTest
          bundle1.uninstall();
       }
    }
+
+   @Test
+   public void testUseCountSymmetry() throws Exception
+   {
+      Archive<?> assembly1 = assembleArchive("simple-bundle1", "/bundles/simple/simple-bundle1");
+      Bundle bundle1 = installBundle(assembly1);
+      Archive<?> assembly2 = assembleArchive("simple-bundle2", "/bundles/simple/simple-bundle2");
+      Bundle bundle2 = installBundle(assembly2);
+      try
+      {
+         bundle1.start();
+         bundle2.start();
+         final BundleContext context1 = bundle1.getBundleContext();
+         final BundleContext context2 = bundle2.getBundleContext();
+
+         final AtomicInteger getCount = new AtomicInteger();
+         final AtomicInteger ungetCount = new AtomicInteger();
+         ServiceFactory factory = new ServiceFactory()
+         {
+            public Object getService(Bundle bundle, ServiceRegistration registration)
+            {
+               getCount.incrementAndGet();
+               return bundle.getSymbolicName();
+            }
+
+            public void ungetService(Bundle bundle, ServiceRegistration registration, Object service)
+            {
+               ungetCount.incrementAndGet();
+            }
+         };
+         ServiceRegistration sreg = context1.registerService(OBJCLASS, factory, null);
+         final ServiceReference sref = sreg.getReference();
+
+         // Get and unget the service concurrently from both bundles
+         final int iterations = 200;
+         final CountDownLatch latch = new CountDownLatch(4);
+         final AtomicInteger failures = new AtomicInteger();
+         for (int i = 0; i < 4; i++)
+         {
+            final BundleContext context = (i % 2 == 0 ? context1 : context2);
+            new Thread()
+            {
+               public void run()
+               {
+                  try
+                  {
+                     for (int j = 0; j < iterations; j++)
+                     {
+                        if (context.getService(sref) == null || context.ungetService(sref) == false)
+                           failures.incrementAndGet();
+                     }
+                  }
+                  finally
+                  {
+                     latch.countDown();
+                  }
+               }
+            }.start();
+         }
+         assertTrue("Threads finished", latch.await(30, TimeUnit.SECONDS));
+         assertEquals(0, failures.get());
+
+         // No bundle uses the service, on either side
+         assertNull(sref.getUsingBundles());
+         assertNull(bundle1.getServicesInUse());
+         assertNull(bundle2.getServicesInUse());
+         assertEquals(getCount.get(), ungetCount.get());
+         assertFalse(context1.ungetService(sref));
+
+         // A nested get is counted by both the bundle and the service
+         context2.getService(sref);
+         context2.getService(sref);
+         assertEquals(1, sref.getUsingBundles().length);
+         assertEquals(bundle2, sref.getUsingBundles()[0]);
+         assertEquals(1, bundle2.getServicesInUse().length);
+         assertTrue(context2.ungetService(sref));
+         assertEquals(1, sref.getUsingBundles().length);
+         assertEquals(1, bundle2.getServicesInUse().length);
+         assertTrue(context2.ungetService(sref));
+         assertNull(sref.getUsingBundles());
+         assertNull(bundle2.getServicesInUse());
+         assertEquals(getCount.get(), ungetCount.get());
+
+         sreg.unregister();
+      }
+      finally
+      {
+         bundle2.uninstall();
+         bundle1.uninstall();
+      }
+   }
 }
@@ -27,15 +27,20 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
 import java.util.Dictionary;
 import java.util.Hashtable;
+import java.util.List;
 
+import org.jboss.osgi.framework.bundle.BundleContextExt;
 import org.jboss.osgi.testing.OSGiFrameworkTest;
 import org.jboss.shrinkwrap.api.Archive;
 import org.junit.Test;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
 
@@ -337,6 +342,67 @@ public class RegisterServiceTestCase extends OSGiFrameworkTest
       }
    }
 
+   @Test
+   @SuppressWarnings("rawtypes")
+   public void testRegisterServices() throws Exception
+   {
+      Archive<?> assembly = assembleArchive("simple-bundle1", "/bundles/simple/simple-bundle1");
+      Bundle bundle = installBundle(assembly);
+      try
+      {
+         bundle.start();
+         BundleContext bundleContext = bundle.getBundleContext();
+         assertNotNull(bundleContext);
+
+         final List<ServiceReference> registered = new ArrayList<ServiceReference>();
+         ServiceListener listener = new ServiceListener()
+         {
+            public void serviceChanged(ServiceEvent event)
+            {
+               if (event.getType() == ServiceEvent.REGISTERED)
+                  registered.add(event.getServiceReference());
+            }
+         };
+         bundleContext.addServiceListener(listener, "(objectClass=" + OBJCLASS + ")");
+
+         BundleContextExt contextExt = (BundleContextExt)bundleContext;
+         try
+         {
+            String[][] clazzes = new String[][] { OBJCLASSES, new String[] { OBJCLASS } };
+            contextExt.registerServices(clazzes, new Object[] { bundleContext, new Object() }, null);
+            fail("Should not be here!");
+         }
+         catch (IllegalArgumentException t)
+         {
+            // expected
+         }
+         assertNull(bundleContext.getServiceReference(OBJCLASS));
+         assertEquals(0, registered.size());
+
+         Dictionary<String, Object> props = new Hashtable<String, Object>();
+         props.put("foo", "bar");
+         String[][] clazzes = new String[][] { OBJCLASSES, OBJCLASSES };
+         ServiceRegistration[] sregs = contextExt.registerServices(clazzes, new Object[] { bundleContext, bundleContext }, new Dictionary[] { null, props });
+         assertEquals(2, sregs.length);
+         assertEquals(2, registered.size());
+         assertEquals(sregs[0].getReference(), registered.get(0));
+         assertEquals(sregs[1].getReference(), registered.get(1));
+         assertEquals("bar", sregs[1].getReference().getProperty("foo"));
+
+         ServiceReference[] srefs = bundleContext.getServiceReferences(OBJCLASS, null);
+         assertNotNull(srefs);
+         assertEquals(2, srefs.length);
+
+         bundleContext.removeServiceListener(listener);
+         sregs[0].unregister();
+         sregs[1].unregister();
+      }
+      finally
+      {
+         bundle.uninstall();
+      }
+   }
+
    protected void assertObjectClass(String expected, ServiceReference reference)
    {
       assertObjectClass(new String[] { expected }, reference);
@@ -143,6 +143,55 @@ public class ServiceFactoryTestCase extends OSGiFrameworkTest
       }
    }
 
+   @Test
+   public void testGetServiceFactoryConcurrently() throws Exception
+   {
+      Archive<?> assembly = assembleArchive("simple1", "/bundles/simple/simple-bundle1");
+      Bundle bundle = installBundle(assembly);
+      try
+      {
+         bundle.start();
+         final BundleContext context = bundle.getBundleContext();
+         assertNotNull(context);
+
+         SimpleServiceFactory factory = new SimpleServiceFactory(context, null);
+         ServiceRegistration sreg = context.registerService(OBJCLASS, factory, null);
+         final ServiceReference sref = sreg.getReference();
+
+         final Object[] results = new Object[10];
+         Thread[] threads = new Thread[results.length];
+         for (int i = 0; i < threads.length; i++)
+         {
+            final int index = i;
+            threads[i] = new Thread()
+            {
+               public void run()
+               {
+                  results[index] = context.getService(sref);
+               }
+            };
+            threads[i].start();
+         }
+         for (Thread thread : threads)
+            thread.join();
+
+         for (Object actual : results)
+            assertEquals(context, actual);
+         assertEquals(1, factory.getCount);
+
+         for (int i = 0; i < results.length; i++)
+            assertTrue(context.ungetService(sref));
+         assertFalse(context.ungetService(sref));
+         assertEquals(1, factory.ungetCount);
+
+         sreg.unregister();
+      }
+      finally
+      {
+         bundle.uninstall();
+      }
+   }
+
    @Test
    public void testGetServiceException() throws Exception
    {
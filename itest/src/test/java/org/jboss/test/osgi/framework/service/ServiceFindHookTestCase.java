@@ -29,13 +29,20 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jboss.osgi.testing.OSGiFrameworkTest;
 import org.junit.Test;
+import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceFactory;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.framework.hooks.service.FindHook;
@@ -126,4 +133,91 @@ public class ServiceFindHookTestCase extends OSGiFrameworkTest
          registration.unregister();
       }
    }
+
+   @Test
+   public void testFindHookRanking() throws Exception
+   {
+      final BundleContext context = getFramework().getBundleContext();
+      final List<String> calls = new CopyOnWriteArrayList<String>();
+
+      Hashtable<String, Object> props = new Hashtable<String, Object>();
+      props.put(Constants.SERVICE_RANKING, new Integer(1));
+      ServiceRegistration regA = context.registerService(FindHook.class.getName(), new NamedFindHook("A", calls), props);
+      props.put(Constants.SERVICE_RANKING, new Integer(10));
+      ServiceRegistration regB = context.registerService(FindHook.class.getName(), new NamedFindHook("B", calls), props);
+      try
+      {
+         // The hook with the highest ranking is called first
+         context.getServiceReferences(Runnable.class.getName(), null);
+         assertEquals(Arrays.asList("B", "A"), calls);
+
+         // A modified ranking reorders the hooks
+         calls.clear();
+         props.put(Constants.SERVICE_RANKING, new Integer(20));
+         regA.setProperties(props);
+         context.getServiceReferences(Runnable.class.getName(), null);
+         assertEquals(Arrays.asList("A", "B"), calls);
+
+         // An unregistered hook is no longer called
+         calls.clear();
+         regB.unregister();
+         regB = null;
+         context.getServiceReferences(Runnable.class.getName(), null);
+         assertEquals(Arrays.asList("A"), calls);
+      }
+      finally
+      {
+         regA.unregister();
+         if (regB != null)
+            regB.unregister();
+      }
+   }
+
+   @Test
+   public void testFindHookFactory() throws Exception
+   {
+      final BundleContext context = getFramework().getBundleContext();
+      final List<String> calls = new CopyOnWriteArrayList<String>();
+      final AtomicInteger ungetCount = new AtomicInteger();
+
+      ServiceFactory factory = new ServiceFactory()
+      {
+         public Object getService(Bundle bundle, ServiceRegistration registration)
+         {
+            return new NamedFindHook("F", calls);
+         }
+
+         public void ungetService(Bundle bundle, ServiceRegistration registration, Object service)
+         {
+            ungetCount.incrementAndGet();
+         }
+      };
+
+      ServiceRegistration registration = context.registerService(FindHook.class.getName(), factory, null);
+      context.getServiceReferences(Runnable.class.getName(), null);
+      assertEquals(Arrays.asList("F"), calls);
+
+      // The hook instance is released when the hook is unregistered
+      registration.unregister();
+      assertEquals(1, ungetCount.get());
+   }
+
+   static class NamedFindHook implements FindHook
+   {
+      private final String name;
+      private final List<String> calls;
+
+      NamedFindHook(String name, List<String> calls)
+      {
+         this.name = name;
+         this.calls = calls;
+      }
+
+      @Override
+      @SuppressWarnings("rawtypes")
+      public void find(BundleContext context, String name, String filter, boolean all, Collection references)
+      {
+         calls.add(this.name);
+      }
+   }
 }
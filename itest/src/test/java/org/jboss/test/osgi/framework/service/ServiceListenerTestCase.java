@@ -21,9 +21,17 @@
 */
 package org.jboss.test.osgi.framework.service;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.jboss.osgi.testing.OSGiFrameworkTest;
 import org.jboss.shrinkwrap.api.Archive;
@@ -110,6 +118,46 @@ public class ServiceListenerTestCase extends OSGiFrameworkTest
       }
    }
 
+   @Test
+   public void testObjectClassFilterMultipleClasses() throws Exception
+   {
+      Archive<?> assembly = assembleArchive("simple1", "/bundles/simple/simple-bundle1");
+      Bundle bundle = installBundle(assembly);
+      try
+      {
+         bundle.start();
+         BundleContext context = bundle.getBundleContext();
+         assertNotNull(context);
+         assertNoServiceEvent();
+
+         String filter = "(&(" + Constants.OBJECTCLASS + "=" + Object.class.getName() + ")(foo=bar))";
+         context.addServiceListener(this, filter);
+
+         Hashtable<String, Object> props = new Hashtable<String, Object>();
+         props.put("foo", "bar");
+         String[] clazzes = new String[] { BundleContext.class.getName(), Object.class.getName() };
+         ServiceRegistration sreg = context.registerService(clazzes, context, props);
+         ServiceReference sref = sreg.getReference();
+
+         assertServiceEvent(ServiceEvent.REGISTERED, sref);
+
+         sreg.unregister();
+         assertServiceEvent(ServiceEvent.UNREGISTERING, sref);
+
+         context.removeServiceListener(this);
+
+         sreg = context.registerService(clazzes, context, props);
+         assertNoServiceEvent();
+
+         sreg.unregister();
+         assertNoServiceEvent();
+      }
+      finally
+      {
+         bundle.uninstall();
+      }
+   }
+
    @Test
    public void testModifyServiceProperties() throws Exception
    {
@@ -152,4 +200,126 @@ public class ServiceListenerTestCase extends OSGiFrameworkTest
          bundle.uninstall();
       }
    }
+
+   @Test
+   public void testAddRemoveWhileFiring() throws Exception
+   {
+      Archive<?> assembly = assembleArchive("simple1", "/bundles/simple/simple-bundle1");
+      Bundle bundle = installBundle(assembly);
+      try
+      {
+         bundle.start();
+         final BundleContext context = bundle.getBundleContext();
+
+         // The listeners of an event are a snapshot taken when the event is fired
+         final List<Integer> addedEvents = new CopyOnWriteArrayList<Integer>();
+         final ServiceListener addedListener = new ServiceListener()
+         {
+            public void serviceChanged(ServiceEvent event)
+            {
+               addedEvents.add(event.getType());
+            }
+         };
+         final List<Integer> removedEvents = new CopyOnWriteArrayList<Integer>();
+         ServiceListener removedListener = new ServiceListener()
+         {
+            public void serviceChanged(ServiceEvent event)
+            {
+               removedEvents.add(event.getType());
+               try
+               {
+                  context.addServiceListener(addedListener, "(objectClass=" + BundleContext.class.getName() + ")");
+               }
+               catch (Exception ex)
+               {
+                  throw new IllegalStateException(ex);
+               }
+               context.removeServiceListener(this);
+            }
+         };
+         context.addServiceListener(removedListener);
+
+         ServiceRegistration sreg = context.registerService(BundleContext.class.getName(), context, null);
+         sreg.unregister();
+
+         assertEquals(1, removedEvents.size());
+         assertEquals(ServiceEvent.REGISTERED, removedEvents.get(0).intValue());
+         assertEquals(1, addedEvents.size());
+         assertEquals(ServiceEvent.UNREGISTERING, addedEvents.get(0).intValue());
+      }
+      finally
+      {
+         bundle.uninstall();
+      }
+   }
+
+   @Test
+   public void testConcurrentAddRemove() throws Exception
+   {
+      Archive<?> assembly = assembleArchive("simple1", "/bundles/simple/simple-bundle1");
+      Bundle bundle = installBundle(assembly);
+      try
+      {
+         bundle.start();
+         final BundleContext context = bundle.getBundleContext();
+
+         // A stable listener receives every event while other listeners come and go
+         final AtomicInteger eventCount = new AtomicInteger();
+         ServiceListener stableListener = new ServiceListener()
+         {
+            public void serviceChanged(ServiceEvent event)
+            {
+               eventCount.incrementAndGet();
+            }
+         };
+         context.addServiceListener(stableListener, "(objectClass=" + BundleContext.class.getName() + ")");
+
+         final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+         final CountDownLatch done = new CountDownLatch(1);
+         Thread churn = new Thread()
+         {
+            public void run()
+            {
+               try
+               {
+                  while (done.getCount() > 0)
+                  {
+                     ServiceListener listener = new ServiceListener()
+                     {
+                        public void serviceChanged(ServiceEvent event)
+                        {
+                        }
+                     };
+                     context.addServiceListener(listener, "(objectClass=" + BundleContext.class.getName() + ")");
+                     context.addServiceListener(listener);
+                     context.removeServiceListener(listener);
+                  }
+               }
+               catch (Throwable th)
+               {
+                  failure.set(th);
+               }
+            }
+         };
+         churn.start();
+         try
+         {
+            for (int i = 0; i < 200; i++)
+               context.registerService(BundleContext.class.getName(), context, null).unregister();
+         }
+         finally
+         {
+            done.countDown();
+            churn.join(TimeUnit.SECONDS.toMillis(5));
+         }
+
+         assertNull("No failure: " + failure.get(), failure.get());
+         assertEquals(400, eventCount.get());
+         context.removeServiceListener(stableListener);
+      }
+      finally
+      {
+         bundle.uninstall();
+      }
+   }
 }
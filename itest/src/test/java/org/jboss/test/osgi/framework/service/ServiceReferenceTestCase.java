@@ -519,6 +519,55 @@ public class ServiceReferenceTestCase extends OSGiFrameworkTest
       }
    }
 
+   @Test
+   public void testIsAssignableToAfterRequesterResolves() throws Exception
+   {
+      Archive<?> assembly1 = assembleArchive("simple1", "/bundles/simple/simple-bundle1", A.class);
+      Bundle bundle1 = installBundle(assembly1);
+      try
+      {
+         bundle1.start();
+         BundleContext context1 = bundle1.getBundleContext();
+         ServiceRegistration sreg = context1.registerService(BundleContext.class.getName(), context1, null);
+         ServiceReference sref = sreg.getReference();
+
+         //Bundle-SymbolicName: service1
+         //Import-Package: org.jboss.test.osgi.framework.service.support.a
+         Archive<?> assembly2 = assembleArchive("service1", "/bundles/service/service-bundle1");
+         Bundle bundle2 = installBundle(assembly2);
+         try
+         {
+            // The requester cannot be resolved, so it has no wire to the package
+            assertTrue(sref.isAssignableTo(bundle2, A.class.getName()));
+            assertEquals(Bundle.INSTALLED, bundle2.getState());
+
+            //Bundle-SymbolicName: service2
+            //Export-Package: org.jboss.test.osgi.framework.service.support.a
+            Archive<?> assembly3 = assembleArchive("service2", "/bundles/service/service-bundle2", A.class);
+            Bundle bundle3 = installBundle(assembly3);
+            try
+            {
+               // The requester now resolves and gets A from another bundle than the owner
+               assertFalse(sref.isAssignableTo(bundle2, A.class.getName()));
+               assertEquals(Bundle.RESOLVED, bundle2.getState());
+               assertFalse(sref.isAssignableTo(bundle2, A.class.getName()));
+            }
+            finally
+            {
+               bundle3.uninstall();
+            }
+         }
+         finally
+         {
+            bundle2.uninstall();
+         }
+      }
+      finally
+      {
+         bundle1.uninstall();
+      }
+   }
+
    @Test
    public void testCompareTo() throws Exception
    {
@@ -672,6 +721,44 @@ public class ServiceReferenceTestCase extends OSGiFrameworkTest
       assertEquals(sref1, sref);
    }
 
+   @Test
+   public void testServiceReferenceOrderAfterModified() throws Exception
+   {
+      Runnable runIt = new Runnable()
+      {
+         public void run()
+         {
+         }
+      };
+
+      BundleContext context = getFramework().getBundleContext();
+      Hashtable<String, Object> props = new Hashtable<String, Object>();
+      props.put(Constants.SERVICE_RANKING, 10);
+      ServiceRegistration sreg1 = context.registerService(Runnable.class.getName(), runIt, props);
+      ServiceReference sref1 = sreg1.getReference();
+
+      props.put(Constants.SERVICE_RANKING, 20);
+      ServiceRegistration sreg2 = context.registerService(Runnable.class.getName(), runIt, props);
+      ServiceReference sref2 = sreg2.getReference();
+
+      ServiceReference sref = context.getServiceReference(Runnable.class.getName());
+      assertEquals(sref2, sref);
+
+      props.put(Constants.SERVICE_RANKING, 30);
+      sreg1.setProperties(props);
+
+      sref = context.getServiceReference(Runnable.class.getName());
+      assertEquals(sref1, sref);
+
+      ServiceReference[] srefs = context.getServiceReferences(Runnable.class.getName(), null);
+      assertEquals(2, srefs.length);
+      assertEquals(sref2, srefs[0]);
+      assertEquals(sref1, srefs[1]);
+
+      sreg1.unregister();
+      sreg2.unregister();
+   }
+
    protected void assertCompareTo(ServiceReference sref1, ServiceReference sref2) throws Exception
    {
       assertTrue(sref1 + " > " + sref2, sref1.compareTo(sref2) > 0);